@@ -0,0 +1,122 @@
+package me.tangye.utils.async;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 以同步的写法编排异步过程, 配合 {@link Promise#async(Body, me.tangye.utils.async.scheduler.PromiseScheduler)} 使用<br>
+ * java 21以上body运行在虚拟线程上, {@link #await(Promise)} 只会挂起虚拟线程, 不会占用系统线程,
+ * 因此可以同时存在大量的异步过程; 更低的版本以及android上退化为daemon线程池
+ * <pre>
+ *     Promise&lt;Order&gt; p = Promise.async(new Async.Body&lt;Order&gt;() {
+ *         public Order run() throws Exception {
+ *             User user = Async.await(api.fetchUser(id));
+ *             Cart cart = Async.await(api.fetchCart(user));
+ *             return Async.await(api.checkout(cart));
+ *         }
+ *     }, scheduler);
+ * </pre>
+ *
+ * @author tangye
+ */
+public final class Async {
+
+	private Async() {
+	}
+
+	/**
+	 * 等待Promise完成, 只能在body中或者其他非调度器线程上调用
+	 *
+	 * @param promise 任意Promise
+	 * @return Promise完成时，返回resolve之后的值
+	 * @throws InterruptedException async返回的Promise被取消时抛出
+	 * @throws Exception Promise被reject时, 抛出reject的异常
+	 * @see Promise#await()
+	 */
+	public static <T> T await(Promise<T> promise) throws Exception {
+		return promise.await();
+	}
+
+	/**
+	 * 等待Promise完成或者超时, 只能在body中或者其他非调度器线程上调用
+	 *
+	 * @param promise 任意Promise
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @return Promise完成时，返回resolve之后的值
+	 * @throws java.util.concurrent.TimeoutException 超时时Promise仍未完成
+	 * @throws InterruptedException async返回的Promise被取消时抛出
+	 * @throws Exception Promise被reject时, 抛出reject的异常
+	 * @see Promise#await(long, TimeUnit)
+	 */
+	public static <T> T await(Promise<T> promise, long timeout, TimeUnit unit) throws Exception {
+		return promise.await(timeout, unit);
+	}
+
+	/**
+	 * 当前运行环境是否支持虚拟线程
+	 * @return java 21以上返回true
+	 */
+	public static boolean isVirtual() {
+		return Runner.VIRTUAL != null;
+	}
+
+	/* start the body runner on a virtual thread, or on the fallback pool */
+	static void start(Runnable runnable) {
+		ThreadFactory virtual = Runner.VIRTUAL;
+		if (virtual != null) {
+			virtual.newThread(runnable).start();
+		} else {
+			Runner.POOL.execute(runnable);
+		}
+	}
+
+	/**
+	 * 异步过程的同步写法
+	 * @param <T> 结果类型
+	 */
+	public interface Body<T> {
+		/**
+		 * 在虚拟线程或者后台线程上执行
+		 * @return 结果, 可以是一个Thenable
+		 * @throws Exception 任何异常都将reject返回的Promise
+		 */
+		T run() throws Exception;
+	}
+
+	/* loaded on the first async call */
+	private static final class Runner {
+		static final ThreadFactory VIRTUAL = virtualFactory();
+		static final ExecutorService POOL = VIRTUAL != null ? null : new ThreadPoolExecutor(
+				0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+				new ThreadFactory() {
+					private final AtomicInteger count = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "promise-async-" + count.incrementAndGet());
+						t.setDaemon(true);
+						return t;
+					}
+				});
+
+		/* Thread.ofVirtual().name("promise-async-", 0).factory(), through reflection to stay on java 7 */
+		private static ThreadFactory virtualFactory() {
+			try {
+				Method ofVirtual = Thread.class.getMethod("ofVirtual");
+				Class<?> builder = Class.forName("java.lang.Thread$Builder");
+				Object b = ofVirtual.invoke(null);
+				b = builder.getMethod("name", String.class, long.class).invoke(b, "promise-async-", 0L);
+				return (ThreadFactory) builder.getMethod("factory").invoke(b);
+			} catch (Exception | LinkageError e) {
+				// before java 21, or virtual threads are a disabled preview feature
+				return null;
+			}
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package me.tangye.utils.async;
+
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Promise创建位置的调试采集策略<br>
+ * 采集调用栈是Promise创建时最昂贵的操作, 因此默认关闭<br>
+ * <ul>
+ *     <li>{@link #OFF} 不采集任何信息, Promise失败时不附加任何trace</li>
+ *     <li>{@link #sampled(int)} 每N个Promise采集一次调用栈, 其余的只记录处理过程的类型,
+ *     Promise失败时将按照传递顺序附加每一步的创建位置</li>
+ *     <li>{@link #ALWAYS} 每个Promise都采集调用栈</li>
+ * </ul>
+ * 可以通过 {@link #setDefault(CapturePolicy)} 全局设置,
+ * 或者通过 {@link PromiseScheduler#setCapturePolicy(CapturePolicy)} 针对某个调度器设置
+ *
+ * @author tangye
+ */
+public final class CapturePolicy {
+
+	/** 不采集 **/
+	public static final CapturePolicy OFF = new CapturePolicy(0);
+
+	/** 总是采集调用栈 **/
+	public static final CapturePolicy ALWAYS = new CapturePolicy(1);
+
+	private static volatile CapturePolicy defaultPolicy = OFF;
+
+	private final int rate;
+
+	/* sampling does not need an exact count, so no atomic here */
+	private int counter;
+
+	private CapturePolicy(int rate) {
+		this.rate = rate;
+	}
+
+	/**
+	 * 按照1/N的比例采集调用栈
+	 * @param rate N, 必须大于0
+	 * @return 采集策略
+	 */
+	public static CapturePolicy sampled(int rate) {
+		if (rate < 1) {
+			throw new IllegalArgumentException("rate should be greater than 0");
+		}
+		return rate == 1 ? ALWAYS : new CapturePolicy(rate);
+	}
+
+	/**
+	 * 设置全局默认的采集策略
+	 * @param policy 采集策略, 不能为null
+	 */
+	public static void setDefault(CapturePolicy policy) {
+		if (policy == null) {
+			throw new IllegalArgumentException("policy should not be null");
+		}
+		defaultPolicy = policy;
+	}
+
+	/**
+	 * 获取全局默认的采集策略
+	 * @return 默认为 {@link #OFF}
+	 */
+	public static CapturePolicy getDefault() {
+		return defaultPolicy;
+	}
+
+	/**
+	 * 记录一个Promise的创建位置
+	 * @param stage 创建Promise的Function或者Resolver
+	 * @return 采集到的调用栈, 或者stage的类型, 不采集时为null
+	 */
+	Object capture(Object stage) {
+		if (rate == 0 || stage == null) {
+			return null;
+		}
+		if (rate == 1 || ++counter % rate == 0) {
+			return new CreationSite(stage.getClass());
+		}
+		return stage.getClass();
+	}
+
+	/**
+	 * 将capture的结果转换为可以附加到异常上的trace
+	 * @param site capture的结果
+	 * @return trace, 没有时为null
+	 */
+	static Throwable trace(Object site) {
+		if (site instanceof Throwable) {
+			return (Throwable) site;
+		} else if (site instanceof Class) {
+			return new CreationSite(((Class<?>) site).getName());
+		}
+		return null;
+	}
+
+	/**
+	 * Promise的创建位置, 作为suppressed异常附加在Promise的失败结果上
+	 */
+	static final class CreationSite extends Throwable {
+
+		private static final long serialVersionUID = -2519635124715870442L;
+
+		/* a sampled site with the full stack trace */
+		CreationSite(Class<?> stage) {
+			super("promise created by " + stage.getName());
+			super.fillInStackTrace();
+			// drop the frames inside promise library, so the trace starts at the caller
+			StackTraceElement[] stack = getStackTrace();
+			int from = 0;
+			while (from < stack.length && isInternal(stack[from].getClassName())) {
+				from++;
+			}
+			if (from > 0 && from < stack.length) {
+				StackTraceElement[] trimmed = new StackTraceElement[stack.length - from];
+				System.arraycopy(stack, from, trimmed, 0, trimmed.length);
+				setStackTrace(trimmed);
+			}
+		}
+
+		/* a cheap site with only the stage identifier */
+		CreationSite(String stage) {
+			super("promise stage " + stage);
+		}
+
+		private static boolean isInternal(String className) {
+			return className.startsWith("me.tangye.utils.async.Promise")
+					|| className.startsWith("me.tangye.utils.async.CapturePolicy");
+		}
+
+		@Override
+		public synchronized Throwable fillInStackTrace() {
+			// stack trace is only filled explicitly for sampled sites
+			return this;
+		}
+	}
+}
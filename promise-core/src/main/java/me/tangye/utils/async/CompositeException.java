@@ -0,0 +1,32 @@
+package me.tangye.utils.async;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 多个异常的集合, 用于收集多个Promise的失败结果<br>
+ * cause为第一个异常
+ *
+ * @author tangye
+ * @see Promise#map(Iterable, me.tangye.utils.async.resolver.PromiseResolver, int, boolean, boolean, me.tangye.utils.async.scheduler.PromiseScheduler)
+ */
+public class CompositeException extends Exception {
+
+	private static final long serialVersionUID = -4016262711458230524L;
+
+	private final List<Exception> exceptions;
+
+	public CompositeException(List<? extends Exception> exceptions) {
+		super(exceptions.size() + " exceptions occurred", exceptions.isEmpty() ? null : exceptions.get(0));
+		this.exceptions = Collections.unmodifiableList(new ArrayList<Exception>(exceptions));
+	}
+
+	/**
+	 * 获取所有的异常
+	 * @return 按发生顺序排列的异常
+	 */
+	public List<Exception> getExceptions() {
+		return exceptions;
+	}
+}
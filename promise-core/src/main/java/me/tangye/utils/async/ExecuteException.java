@@ -1,5 +1,9 @@
 package me.tangye.utils.async;
 
+/**
+ * Promise内部异常对象, 用于对非RuntimeException进行Runtime改造, 再在resolver的reject中进行解包<br>
+ * 包装了cause的ExecuteException不填充调用栈, 真正有用的调用栈在cause上, 因此失败的链条不会反复付出填充调用栈的开销
+ */
 public final class ExecuteException extends RuntimeException {
 
 	private static final long serialVersionUID = 6037102241576792115L;
@@ -9,6 +13,7 @@ public final class ExecuteException extends RuntimeException {
 	 */
 	public ExecuteException() {
 		super();
+		super.fillInStackTrace();
 	}
 
 	/**
@@ -16,6 +21,7 @@ public final class ExecuteException extends RuntimeException {
 	 */
 	public ExecuteException(String detailMessage) {
 		super(detailMessage);
+		super.fillInStackTrace();
 	}
 
 	/**
@@ -32,4 +38,12 @@ public final class ExecuteException extends RuntimeException {
 		super(detailMessage, throwable);
 	}
 
+	/**
+	 * 只有没有cause的ExecuteException在构造时填充调用栈
+	 */
+	@Override
+	public synchronized Throwable fillInStackTrace() {
+		return this;
+	}
+
 }
@@ -0,0 +1,2873 @@
+package me.tangye.utils.async;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+import me.tangye.utils.async.resolver.BaseResolver;
+import me.tangye.utils.async.resolver.Deferred;
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.resolver.DoneResolver;
+import me.tangye.utils.async.resolver.ExceptionPromiseResolver;
+import me.tangye.utils.async.resolver.ExceptionResolver;
+import me.tangye.utils.async.resolver.FinalResolver;
+import me.tangye.utils.async.resolver.PromiseResolver;
+import me.tangye.utils.async.resolver.SimplePromiseResolver;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.HashedWheelTimer;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Promise异步模型，类似于Future 该模型本身也是一个 @{link Thenable}
+ * 
+ * @author tangye
+ *
+ * @param <D> 该Future模型的期望返回数据类型
+ */
+public class Promise<D> implements Thenable<D>, Cloneable {
+
+	/** 当前Promise的版本 **/
+	public static final String VERSION = "1.1.0";
+
+	/* state word of a pending promise which has no completion yet */
+	private static final Object PENDING = new Object();
+
+	/* state word of a promise resolved with null */
+	private static final Object NIL = new Object();
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Promise, Object> STATE =
+			AtomicReferenceFieldUpdater.newUpdater(Promise.class, Object.class, "state");
+
+	/*
+	 * the only state word of promise, updated by CAS only:
+	 * PENDING or the head of a completion stack when pending,
+	 * a Failure when rejected, NIL or the value itself when resolved,
+	 * a Link once it became an alias of another pending promise
+	 */
+	private volatile Object state;
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicReferenceFieldUpdater<Promise, Promise> UPSTREAM =
+			AtomicReferenceFieldUpdater.newUpdater(Promise.class, Promise.class, "upstream");
+
+	@SuppressWarnings("rawtypes")
+	private static final AtomicIntegerFieldUpdater<Promise> CONSUMERS =
+			AtomicIntegerFieldUpdater.newUpdater(Promise.class, "consumers");
+
+	/* the promise this one is waiting for, released once settled */
+	private volatile Promise<?> upstream;
+
+	/* number of completions registered while pending, cancellation goes upstream when it drops to zero */
+	private volatile int consumers;
+
+	/* consumers of a promise linked to another one, counted on the root instead */
+	private static final int LINKED = -1;
+
+	/* creation site captured by the scheduler's CapturePolicy, may be null */
+	private final Object site;
+
+	/* every run should be called in this scheduler */
+	protected final PromiseScheduler scheduler;
+
+	/* addSuppressed is only available since java 7 / android kitkat */
+	private static final boolean SUPPRESSION_SUPPORTED = supportsSuppression();
+
+	/**
+	 * 构造一个Promise对象，使用DirectFunction，来构造一个带参数的Runnable过程<br>
+	 * 该Function.run将在当前的线程的调度器中运行
+	 * 
+	 * @param function 提交的执行函数
+	 * @return Promise对象
+	 * @throws IllegalStateException
+	 *             当当前线程没有调度器时抛出
+	 * @see PromiseScheduler#current()
+	 */
+	public static <D> Promise<D> make(DirectFunction<D> function) {
+		return make(function, myScheduler());
+	}
+
+	/**
+	 * 构造一个Promise对象，使用PromiseFunction，来构造一个带参数的Runnable过程<br>
+	 * 该Function.run将在当前的线程的调度器中运行
+	 *
+	 * @param function 提交的执行函数
+	 * @return Promise对象
+	 * @throws IllegalStateException
+	 *             当当前线程没有调度器时抛出
+	 * @hide 请不要使用这个方法制造Promise
+	 */
+	public static <D> Promise<D> make(PromiseFunction<D> function) {
+		return make(function, myScheduler());
+	}
+
+	/**
+	 * 构造一个Promise对象，使用DirectFunction，来构造一个带参数的Runnable过程<br>
+	 * 该Function.run将在指定的调度器中运行
+	 * 
+	 * @param function 提交的执行函数
+	 * @param scheduler
+	 *            所有的异步过程，包括Then中的处理过程，运行在该调度器上
+	 * @return Promise对象
+	 */
+	public static <D> Promise<D> make(final DirectFunction<D> function,
+			PromiseScheduler scheduler) {
+		return new Promise<>(function, scheduler);
+	}
+
+	/**
+	 * 构造一个Promise对象，使用PromiseFunction，来构造一个带参数的Runnable过程<br>
+	 * 该Function.run将在指定的调度器中运行
+	 * 
+	 * @param function 提交的执行函数
+	 * @param scheduler
+	 *            所有的异步过程，包括Then中的处理过程，运行在该调度器上
+	 * @return Promise对象
+	 */
+	public static <D> Promise<D> make(final PromiseFunction<D> function,
+			PromiseScheduler scheduler) {
+		return new Promise<>(function, scheduler);
+	}
+
+	/**
+	 * 构造一个延迟执行的Promise, 在当前线程的调度器中运行
+	 *
+	 * @param function 提交的执行函数
+	 * @return Promise对象
+	 * @throws IllegalStateException 当当前线程没有调度器时抛出
+	 * @see #lazy(DirectFunction, PromiseScheduler)
+	 */
+	public static <D> Promise<D> lazy(DirectFunction<D> function) {
+		return lazy(function, myScheduler());
+	}
+
+	/**
+	 * 构造一个延迟执行的Promise<br>
+	 * 与make不同, function不会立即提交, 直到第一次then/await/clone或者被all/race等组合时才开始执行,
+	 * 没有消费者的Promise不会产生任何任务; 执行之前被取消时function不会执行
+	 *
+	 * @param function 提交的执行函数
+	 * @param scheduler 所有的异步过程，包括Then中的处理过程，运行在该调度器上
+	 * @return Promise对象
+	 */
+	public static <D> Promise<D> lazy(DirectFunction<D> function, PromiseScheduler scheduler) {
+		if (function == null) {
+			throw new IllegalArgumentException("function should not be null");
+		}
+		return new LazyPromise<>(function, scheduler);
+	}
+
+	private <Q> Promise(Function<Q> function, PromiseScheduler scheduler) {
+		this(function, scheduler, function);
+	}
+
+	/**
+	 * @param function 执行函数, 可以为null
+	 * @param scheduler 调度器
+	 * @param stage 产生该Promise的Function或者Resolver, 用于记录创建位置, 可以为null
+	 */
+	private <Q> Promise(Function<Q> function, PromiseScheduler scheduler, Object stage) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("scheduler should not be null");
+		}
+		this.state = PENDING;
+		this.scheduler = scheduler;
+		this.site = scheduler.getCapturePolicy().capture(stage);
+		if (function != null) {
+			if (!PromiseFunction.class.isInstance(function)
+					&& !DirectFunction.class.isInstance(function)) {
+				throw new IllegalArgumentException(
+						"function should only be DirectFunction Or PromiseFunction");
+			}
+			postResolve(function);
+		}
+	}
+
+	/**
+	 * 已经完成的Promise, 不会再被reject, 因此不需要采集创建位置
+	 * @param scheduler 调度器
+	 * @param outcome NIL或者值
+	 */
+	private Promise(PromiseScheduler scheduler, Object outcome) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("scheduler should not be null");
+		}
+		this.state = outcome;
+		this.scheduler = scheduler;
+		this.site = null;
+	}
+
+	/**
+	 * 获取当前线程的调度器
+	 * @return 当前线程的调度器
+	 * @throws IllegalStateException 当前线程没有调度器时抛出
+	 */
+	static PromiseScheduler myScheduler() {
+		PromiseScheduler scheduler = PromiseScheduler.current();
+		if (scheduler == null) {
+			throw new IllegalStateException(
+					"No PromiseScheduler on current thread, please specify one");
+		}
+		return scheduler;
+	}
+
+	/**
+	 * 获取Promise运行所在的调度器
+	 * @return 调度器
+	 */
+	public final PromiseScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * clone a Promise with the same scheduler
+	 * the promise being cloned will provide the result to the new promise,
+	 * the new promise will not run twice the internal function.
+	 * call p.clone() mean call Promise.resolve(p)
+	 * @see PromiseFactory
+	 * @see #clone(PromiseScheduler)
+	 * @return new Promise
+	 */
+	@SuppressWarnings({"unchecked", "CloneDoesntCallSuperClone"})
+	public Promise<D> clone() {
+		return clone(scheduler);
+	}
+
+	/**
+	 * clone a Promise with a new scheduler
+	 * @param scheduler new Promise scheduler
+	 * @return new Promise
+	 */
+	public Promise<D> clone(PromiseScheduler scheduler) {
+		return Promise.resolve(this, scheduler);
+	}
+
+	/* the function is only referenced by the posted runnable, it is gone once run */
+	private void postResolve(final Function<?> function) {
+		Runnable r = new Runnable() {
+			public void run() {
+				doResolve(function, null, scheduler, Promise.this);
+			}
+		};
+		runForScheduler(r, scheduler);
+	}
+
+	/**
+	 * 在指定调度器上执行Runnable, 如果当前已经在该调度器上, 则直接执行
+	 * @param r 要执行的Runnable
+	 * @param scheduler 指定的调度器
+	 */
+	public static void runForScheduler(Runnable r, PromiseScheduler scheduler) {
+		if (scheduler.inEventLoop()) {
+			r.run();
+		} else {
+			scheduler.execute(r);
+		}
+	}
+
+	/**
+	 * 使用一个新值完成当前Promise, 如果新值是一个Thenable, 则等待该Thenable的结果<br>
+	 * 可以在任意线程上调用, 但Promise以外的Thenable, 其getThen总是在调度器上执行
+	 * @param newValue 任意值
+	 */
+	private void resolveWith(Object newValue) {
+		if (state instanceof Link) {
+			root().resolveWith(newValue);
+			return;
+		}
+		try {
+			if (newValue == this)
+				throw new RuntimeException(
+						"A promise cannot be resolved with itself.");
+			// 同一个调度器上的Promise直接链接, 不再产生转发的then
+			if (newValue instanceof Promise && absorb((Promise<?>) newValue)) {
+				return;
+			}
+			// 产生迭代效果(recursively call ProcessResolver)
+			// 只要返回类型是一个Thenable, 比如Promise
+			if (newValue instanceof Promise) {
+				@SuppressWarnings("unchecked")
+				final Thenable<D> p = (Thenable<D>) newValue;
+				doResolve(p.getThen(), null, scheduler, this);
+			} else if (newValue instanceof Thenable) {
+				// 其他的Thenable不一定是线程安全的, 仍然在调度器上展开
+				@SuppressWarnings("unchecked")
+				final Thenable<D> p = (Thenable<D>) newValue;
+				runForScheduler(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							doResolve(p.getThen(), null, scheduler, Promise.this);
+						} catch (Exception e) {
+							rejectWith(e);
+						}
+					}
+				}, scheduler);
+			} else {
+				// 记录最终的结果
+				settle(newValue == null ? NIL : newValue);
+			}
+		} catch (Exception e) {
+			// 记录异常结果
+			rejectWith(e);
+		}
+	}
+
+	private void rejectWith(Exception e) {
+		if (isPending(state)) {
+			settle(new Failure(unwrap(e)));
+		}
+	}
+
+	private static boolean isPending(Object s) {
+		return s == PENDING || s instanceof Completion || s instanceof Link;
+	}
+
+	/**
+	 * 使用同一个调度器上的另一个Promise完成当前Promise, 而不是在它上面注册一个转发的then<br>
+	 * 已经完成的Promise直接复制结果; 还没有任何消费者的Promise成为当前Promise的别名,
+	 * 它的Completion被移到当前Promise上, 之后对它的所有操作都作用于当前Promise,
+	 * 因此递归地返回Promise的循环只会保留最外层的Promise, 中间的Promise都可以被回收
+	 * @param inner 当前Promise等待的Promise
+	 * @return 是否已经处理, 否则需要通过then等待
+	 */
+	private boolean absorb(Promise<?> inner) {
+		if (inner.scheduler != scheduler) {
+			return false;
+		}
+		inner = inner.root();
+		if (inner == this) {
+			throw new RuntimeException("A promise cannot be resolved with itself.");
+		}
+		Object s = inner.state;
+		if (!isPending(s)) {
+			settle(s);
+			return true;
+		}
+		if (inner.getClass() != Promise.class || !CONSUMERS.compareAndSet(inner, 0, LINKED)) {
+			return false;
+		}
+		for (;;) {
+			s = inner.state;
+			if (!isPending(s)) {
+				// settled before it could be linked
+				inner.consumers = 0;
+				settle(s);
+				return true;
+			}
+			if (STATE.compareAndSet(inner, s, new Link(this))) {
+				break;
+			}
+		}
+		// cancellation of this one now goes to whatever inner was waiting for
+		Promise<?> up = UPSTREAM.getAndSet(inner, null);
+		if (up != null) {
+			Promise<?> old = UPSTREAM.getAndSet(this, up);
+			if (old != null) {
+				old.release();
+			}
+			if (!isPending(state) && UPSTREAM.compareAndSet(this, up, null)) {
+				up.release();
+			}
+		}
+		if (s != PENDING) {
+			Completion reversed = null;
+			for (Completion c = (Completion) s; c != null; ) {
+				Completion next = c.next;
+				c.next = reversed;
+				reversed = c;
+				c = next;
+			}
+			while (reversed != null) {
+				Completion next = reversed.next;
+				reversed.next = null;
+				watch(reversed);
+				reversed = next;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 沿着链接找到真正持有状态的Promise, 并压缩经过的路径
+	 * @return 根Promise, 没有链接时就是当前Promise
+	 */
+	private Promise<?> root() {
+		Object s = state;
+		if (!(s instanceof Link)) {
+			return this;
+		}
+		Promise<?> root = ((Link) s).target;
+		for (Object t; (t = root.state) instanceof Link; ) {
+			root = ((Link) t).target;
+		}
+		Promise<?> p = this;
+		for (Object t; (t = p.state) instanceof Link && ((Link) t).target != root; ) {
+			p = ((Link) t).target;
+			((Link) t).target = root;
+		}
+		return root;
+	}
+
+	/* state word of the root, never a Link */
+	private Object current() {
+		Object s = state;
+		while (s instanceof Link) {
+			s = root().state;
+		}
+		return s;
+	}
+
+	/**
+	 * 通过CAS将状态字从pending改为最终结果, 并触发所有等待中的Completion
+	 * @param outcome NIL, 值或者Failure
+	 * @return 是否由本次调用完成
+	 */
+	private boolean settle(Object outcome) {
+		for (;;) {
+			Object s = state;
+			if (s instanceof Link) {
+				return root().settle(outcome);
+			}
+			if (!isPending(s)) {
+				return false;
+			}
+			if (STATE.compareAndSet(this, s, outcome)) {
+				if (upstream != null) {
+					// a pending upstream is only left behind by cancel or timeout
+					Promise<?> up = UPSTREAM.getAndSet(this, null);
+					if (up != null) {
+						up.release();
+					}
+				}
+				if (s != PENDING) {
+					finale((Completion) s);
+				}
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * 给exception赋值前，先进行解包, 并按照采集策略附加Promise的创建位置
+	 * @param e 任意locker传入的或者try catch的Exception
+	 * @return 解包的Exception
+     */
+	@SuppressWarnings("WeakerAccess")
+	protected Exception unwrap(Exception e) {
+		e = unwrapExecute(e);
+		if (SUPPRESSION_SUPPORTED && site != null) {
+			e.addSuppressed(CapturePolicy.trace(site));
+		}
+		return e;
+	}
+
+	/**
+	 * 解开所有的ExecuteException包装
+	 * @param e 任意Exception
+	 * @return 最内层的Exception
+	 */
+	static Exception unwrapExecute(Exception e) {
+		while (e instanceof ExecuteException && e.getCause() instanceof Exception) {
+			e = (Exception) e.getCause();
+		}
+		return e;
+	}
+
+	private static boolean supportsSuppression() {
+		try {
+			Throwable.class.getMethod("addSuppressed", Throwable.class);
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * 检查是否有未执行的Resolver对象<br>
+	 * 当上次任务完成后，将会检查被缓存在resolver对象栈中的Completion<br>
+	 * 按照注册顺序handle所有栈中的Completion<br>
+	 * 需要post的resolver不再各自post, 而是按顺序串成一个 {@link Drain}, 只post一次
+	 * @param head 完成时取下的Completion栈
+	 */
+	private void finale(Completion head) {
+		Completion reversed = null;
+		while (head != null) {
+			Completion next = head.next;
+			head.next = reversed;
+			reversed = head;
+			head = next;
+		}
+		boolean inline = scheduler.isInlineContinuations() && scheduler.inEventLoop();
+		Completion batch = null;
+		Completion tail = null;
+		while (reversed != null) {
+			Completion next = reversed.next;
+			reversed.next = null;
+			if (!inline && reversed instanceof CachedResolver) {
+				((CachedResolver<?>) reversed).bind(this);
+				if (tail == null) {
+					batch = reversed;
+				} else {
+					tail.next = reversed;
+				}
+				tail = reversed;
+			} else {
+				reversed.complete(this);
+			}
+			reversed = next;
+		}
+		if (batch == tail && batch != null) {
+			scheduler.execute((CachedResolver<?>) batch);
+		} else if (batch != null) {
+			scheduler.execute(new Drain(batch, scheduler));
+		}
+	}
+
+	/**
+	 * 注册一个Completion, Promise未完成时压入无锁栈, 否则立即触发<br>
+	 * 可以在任意线程调用
+	 * @param completion 等待结果的Completion
+	 */
+	private void handle(Completion completion) {
+		acquire(this).watch(completion);
+		demand();
+	}
+
+	/**
+	 * 出现消费者时调用, 延迟执行的Promise在第一次调用时开始执行
+	 */
+	void demand() {
+	}
+
+	/**
+	 * 作为消费者计数, 链接的Promise计数在根Promise上
+	 * @param p 被消费的Promise
+	 * @return 被计数的Promise, 或者已经完成的Promise
+	 */
+	private static Promise<?> acquire(Promise<?> p) {
+		for (;;) {
+			int n = p.consumers;
+			Object s = p.state;
+			if (s instanceof Link) {
+				p = p.root();
+			} else if (!isPending(s)) {
+				return p;
+			} else if (n == LINKED) {
+				// being linked right now
+				Thread.yield();
+			} else if (CONSUMERS.compareAndSet(p, n, n + 1)) {
+				return p;
+			}
+		}
+	}
+
+	/**
+	 * 注册一个Completion, 但不作为消费者计数, 用于Promise内部的清理工作
+	 * @param completion 等待结果的Completion
+	 */
+	private void watch(Completion completion) {
+		for (;;) {
+			Object s = state;
+			if (s instanceof Link) {
+				root().watch(completion);
+				return;
+			}
+			if (!isPending(s)) {
+				completion.complete(this);
+				return;
+			}
+			completion.next = s == PENDING ? null : (Completion) s;
+			if (STATE.compareAndSet(this, s, completion)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * 取消当前Promise, 未完成时以 {@link CancellationException} 失败<br>
+	 * 如果当前Promise在等待上一个Promise, 且上一个Promise的所有消费者都已经取消,
+	 * 取消将继续向上传递, 上游Function通过 {@link Locker#isCancelled()} 可以提前停止工作,
+	 * 通过 {@link Locker#postDelayed(Runnable, long)} 提交的Runnable也会被移除<br>
+	 * 可以在任意线程调用
+	 * @return 是否由本次调用取消
+	 */
+	public boolean cancel() {
+		return isPending(state)
+				&& settle(new Failure(unwrap(new CancellationException("promise is cancelled")), true));
+	}
+
+	/**
+	 * 是否已经被取消
+	 * @return 以CancellationException失败时返回true
+	 */
+	public final boolean isCancelled() {
+		Object s = current();
+		return s instanceof Failure && ((Failure) s).exception instanceof CancellationException;
+	}
+
+	/* cancelled, or failed by the withTimeout deadline, either way its producer should stop */
+	private boolean isAborted() {
+		Object s = current();
+		return s instanceof Failure && ((Failure) s).aborted;
+	}
+
+	/* whether not settled yet, for views handed out by this package */
+	final boolean isPending() {
+		return isPending(current());
+	}
+
+	/* a consumer is gone, cancel this one if it was the last */
+	private void release() {
+		Object s = state;
+		if (s instanceof Link) {
+			root().release();
+		} else if (isPending(s) && CONSUMERS.decrementAndGet(this) == 0) {
+			cancel();
+		}
+	}
+
+	/* wait for upstream as its consumer, release it at once if already settled */
+	private void link(Promise<?> up) {
+		if (state instanceof Link) {
+			root().link(up);
+			return;
+		}
+		acquire(up);
+		upstream = up;
+		if (!isPending(state) && UPSTREAM.compareAndSet(this, up, null)) {
+			up.release();
+		}
+	}
+
+	/* resolved value, only valid after settled */
+	@SuppressWarnings("unchecked")
+	private D value(Object s) {
+		return s == NIL ? null : (D) s;
+	}
+
+	@Override
+	public DirectFunction<D> getThen() {
+		return new DirectFunction<D>() {
+			@Override
+			public void run(final Locker<D> locker) {
+				Promise<Void> child = Promise.this.then(locker);
+				if (locker instanceof ScheduledLocker) {
+					((ScheduledLocker<D>) locker).adopt(child);
+				}
+			}
+		};
+	}
+
+	@Override
+	public <D1> Promise<D1> then(final DirectResolver<? super D, ? extends D1> resolver) {
+		return thenWith(resolver);
+	}
+
+	@Override
+	public <D1> Promise<D1> then(final PromiseResolver<? super D, ? extends D1> resolver) {
+		return thenWith(resolver);
+	}
+
+	/**
+	 * 已经完成的Promise不需要消费者计数, upstream以及Completion栈, resolver直接交给调度器
+	 * @param resolver DirectResolver或者PromiseResolver
+	 * @return resolver结果的Promise
+	 */
+	private <D1> Promise<D1> thenWith(BaseResolver<? super D, ?> resolver) {
+		Promise<D1> next = new Promise<>(null, scheduler, resolver);
+		CachedResolver<?> cached = new CachedResolver<>(resolver, next);
+		if (isPending(current())) {
+			next.upstream = this;
+			handle(cached);
+		} else {
+			cached.complete(this);
+		}
+		return next;
+	}
+
+	/**
+	 * 与 {@link #then(DirectResolver)} 相同, 但resolver直接在完成当前Promise的线程上执行, 不经过调度器,
+	 * 已经完成时立即在调用线程执行<br>
+	 * 用于把结果转交给外部的异步类型, 比如CompletableFuture, resolver应该很快返回并且不能阻塞;
+	 * 返回的Promise作为一个消费者, 被取消时释放当前Promise
+	 * @param resolver 结果处理器, 可能在任意线程执行
+	 * @return resolver结果的Promise
+	 */
+	public <D1> Promise<D1> onSettled(DirectResolver<? super D, ? extends D1> resolver) {
+		Promise<D1> next = new Promise<>(null, scheduler, resolver);
+		SettledHook hook = new SettledHook(new CachedResolver<>(resolver, next));
+		if (isPending(current())) {
+			next.upstream = this;
+			handle(hook);
+		} else {
+			hook.complete(this);
+		}
+		return next;
+	}
+
+	/**
+	 * 开始一个融合的同步处理链<br>
+	 * 链上连续的DirectResolver将在同一个continuation中执行, 只有最终的Promise会被生成
+	 * @see PromiseChain
+	 * @return 以当前Promise为起点的处理链
+	 */
+	public PromiseChain<D> fuse() {
+		return new PromiseChain<>(this);
+	}
+
+	@Override
+	public <D1> Promise<D1> cast() {
+		return then(new SimpleResolver<D, D1>() {
+			@Override
+			public D1 resolve(D newValue) {
+				//noinspection unchecked
+				return (D1) newValue;
+			}
+		});
+	}
+
+	/**
+	 * A short-hand for then(FinalResolver)<br>
+	 * 当Promise有结果时,触发
+	 *
+	 * @param finalResolver 最终结果处理器
+	 * @return 上一个Promise的延续(不改变任何传递内容)
+	 */
+	public Promise<D> finalResult(final FinalResolver<D> finalResolver) {
+		return then(finalResolver);
+	}
+
+	/**
+	 * A short-hand for then(DoneResolver)<br>
+	 * 当Promise有结果时,触发
+	 *
+	 * @param doneResolver 结果处理器
+	 * @return 上一个Promise的延续(不改变任何传递内容)
+     */
+	public Promise<D> done(final DoneResolver<D> doneResolver) {
+		return then(doneResolver);
+	}
+
+	/**
+	 * 捕获异常处理器
+	 * @deprecated 请参考
+	 * @see #exception(ExceptionResolver)
+	 * @param resolver 结果处理器
+	 * @param <E> 异常类型
+	 * @return 新的Promise
+	 */
+	@Deprecated
+	public <E extends Throwable> Promise<D> catchException(
+			final ExceptionResolver<D, E> resolver) {
+		return then(resolver);
+	}
+
+	/**
+	 * 捕获异常处理器
+	 * @deprecated 请参考
+	 * @see #exception(ExceptionPromiseResolver)
+	 * @param resolver 结果处理器
+	 * @param <E> 异常类型
+	 * @return 新的Promise
+	 */
+	@Deprecated
+	public <E extends Throwable> Promise<D> catchException(
+			final ExceptionPromiseResolver<D, E> resolver) {
+		return then(resolver);
+	}
+
+	/**
+	 * 只捕获type类型的异常, 其他异常以及正常结果传递到下一次Promise
+	 *
+	 * @param type 捕获的异常类型, 包括其子类
+	 * @param resolver 异常解析器, 只使用其onCatch
+	 * @return 新的Promise
+	 */
+	public <E extends Throwable> Promise<D> catchException(Class<E> type,
+			final ExceptionResolver<D, ? super E> resolver) {
+		return then(new CatchResolver<>(type, resolver));
+	}
+
+	/**
+	 * 只捕获type类型的异常, 其他异常以及正常结果传递到下一次Promise
+	 *
+	 * @param type 捕获的异常类型, 包括其子类
+	 * @param resolver 异常解析器, 只使用其onCatch
+	 * @return 新的Promise
+	 */
+	public <E extends Throwable> Promise<D> catchException(Class<E> type,
+			final ExceptionPromiseResolver<D, ? super E> resolver) {
+		return then(new CatchPromiseResolver<>(type, resolver));
+	}
+
+	/**
+	 * A short-hand for then(ExceptionResolver)<br>
+	 * 捕获指定的异常
+	 *
+	 * @param resolver 异常解析器
+	 * @return 新的Promise
+	 */
+	public <E extends Throwable> Promise<D> exception(
+			final ExceptionResolver<D, E> resolver) {
+		return then(resolver);
+	}
+
+	/**
+	 * A short-hand for then(ExceptionPromiseResolver)<br>
+	 * 捕获指定的异常
+	 *
+	 * @param resolver 异常解析器
+	 * @return 新的Promise
+	 */
+	public <E extends Throwable> Promise<D> exception(
+			final ExceptionPromiseResolver<D, E> resolver) {
+		return then(resolver);
+	}
+
+	/**
+	 * 将Promise方法转化为同步方法，阻塞住当前线程
+	 * 
+	 * @return Promise完成时，返回resolve之后的值
+	 * @throws IllegalStateException
+	 * 			   当前线程与Promise执行线程不能为同一个线程
+	 * @throws Exception
+	 *             当任何exception发生时，抛出excpetion异常
+	 * @deprecated 请使用 {@link #await()}
+	 */
+	@Deprecated
+	public final D sync() throws Exception {
+		return await();
+	}
+
+	/**
+	 * 阻塞当前线程, 直到Promise完成<br>
+	 * Promise已经完成时直接返回结果, 不会产生任何对象
+	 *
+	 * @return Promise完成时，返回resolve之后的值
+	 * @throws IllegalStateException
+	 * 			   Promise未完成, 并且当前线程就是Promise的调度器线程时抛出, 否则将会死锁
+	 * @throws InterruptedException 等待时线程被中断
+	 * @throws Exception Promise被reject时, 抛出reject的异常
+	 */
+	public final D await() throws Exception {
+		Object s = current();
+		if (isPending(s)) {
+			awaitAll(0, null, this);
+			s = current();
+		}
+		return result(s);
+	}
+
+	/**
+	 * 阻塞当前线程, 直到Promise完成或者超时
+	 *
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位
+	 * @return Promise完成时，返回resolve之后的值
+	 * @throws IllegalStateException
+	 * 			   Promise未完成, 并且当前线程就是Promise的调度器线程时抛出, 否则将会死锁
+	 * @throws TimeoutException 超时时Promise仍未完成
+	 * @throws InterruptedException 等待时线程被中断
+	 * @throws Exception Promise被reject时, 抛出reject的异常
+	 */
+	public final D await(long timeout, TimeUnit unit) throws Exception {
+		if (unit == null) {
+			throw new IllegalArgumentException("unit should not be null");
+		}
+		Object s = current();
+		if (isPending(s)) {
+			awaitAll(timeout, unit, this);
+			s = current();
+		}
+		return result(s);
+	}
+
+	/**
+	 * 阻塞当前线程, 直到所有Promise都完成, 任何一个Promise失败时立即抛出其异常
+	 *
+	 * @param promises 要等待的Promise
+	 * @return 所有Promise的结果, 顺序与参数一致
+	 * @throws Exception 第一个被发现的reject异常, 或者InterruptedException
+	 * @see #await()
+	 */
+	public static Object[] awaitAll(Promise<?>... promises) throws Exception {
+		return awaitAll(0, null, promises);
+	}
+
+	/**
+	 * 阻塞当前线程, 直到所有Promise都完成或者超时, 任何一个Promise失败时立即抛出其异常
+	 *
+	 * @param timeout 最长等待时间
+	 * @param unit 时间单位, 为null时表示不限时
+	 * @param promises 要等待的Promise
+	 * @return 所有Promise的结果, 顺序与参数一致
+	 * @throws TimeoutException 超时时仍有Promise未完成
+	 * @throws Exception 第一个被发现的reject异常, 或者InterruptedException
+	 * @see #await(long, TimeUnit)
+	 */
+	public static Object[] awaitAll(long timeout, TimeUnit unit, Promise<?>... promises)
+			throws Exception {
+		long deadline = unit == null ? 0 : System.nanoTime() + unit.toNanos(timeout);
+		Waiter[] waiters = null;
+		try {
+			for (;;) {
+				boolean pending = false;
+				for (Promise<?> p : promises) {
+					Object s = p.current();
+					if (s instanceof Failure) {
+						throw ((Failure) s).exception;
+					}
+					pending |= isPending(s);
+				}
+				if (!pending) {
+					break;
+				}
+				if (waiters == null) {
+					// register a waiter on every pending promise, just once
+					waiters = new Waiter[promises.length];
+					Thread current = Thread.currentThread();
+					for (int i = 0; i < promises.length; i++) {
+						Promise<?> p = promises[i];
+						if (isPending(p.current())) {
+							if (p.scheduler.inEventLoop()) {
+								throw new IllegalStateException("当前线程与Promise执行线程不能为同一个线程");
+							}
+							waiters[i] = new Waiter(current);
+							// not a consumer, a timed out or interrupted wait must not keep upstream alive
+							p.watch(waiters[i]);
+							p.demand();
+						}
+					}
+					continue;
+				}
+				if (unit == null) {
+					LockSupport.park(waiters);
+				} else {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						throw new TimeoutException("promise is not settled in " + timeout + " " + unit);
+					}
+					LockSupport.parkNanos(waiters, remaining);
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		} finally {
+			if (waiters != null) {
+				for (Waiter w : waiters) {
+					if (w != null) {
+						w.thread = null;
+					}
+				}
+			}
+		}
+		Object[] result = new Object[promises.length];
+		for (int i = 0; i < promises.length; i++) {
+			result[i] = promises[i].value(promises[i].current());
+		}
+		return result;
+	}
+
+	/* value of a settled state, or throw the rejection */
+	private D result(Object s) throws Exception {
+		if (s instanceof Failure) {
+			throw ((Failure) s).exception;
+		}
+		return value(s);
+	}
+
+	/**
+	 * Running an async function with the defer who will asynchronously invoke
+	 * resolve or reject once, acting as the deferred object of the function argument <br>
+	 * We use internalResolver deferred object to run the function for a result <br>
+	 * 
+	 * @param function the running function to execute
+	 * @param internalResolver the specific resolver callback as a deferred
+	 * @param scheduler the scheduler which locker posts runnables to
+	 *
+	 */
+	@SuppressWarnings("WeakerAccess")
+	protected static <T> void doResolve(final Function<T> function,
+										final Deferred<T> internalResolver,
+										final PromiseScheduler scheduler) {
+		doResolve(function, internalResolver, scheduler, null);
+	}
+
+	/**
+	 * @param internalResolver 为null时, 结果直接完成owner, 不需要为每个Promise保存一个转发的Deferred
+	 * @param owner 由该Function完成的Promise, 用于取消, 可以为null
+	 * @see #doResolve(Function, Deferred, PromiseScheduler)
+	 */
+	private static <T> void doResolve(Function<T> function, Deferred<T> internalResolver,
+									  PromiseScheduler scheduler, Promise<?> owner) {
+		ScheduledLocker<T> locker = new ScheduledLocker<>(internalResolver, scheduler, owner);
+		try {
+			function.run(locker);
+		} catch (Exception e) {
+			locker.reject(e);
+		}
+	}
+
+	/**
+	 * Function执行时使用的Locker, 与调度器以及所完成的Promise绑定<br>
+	 * 所完成的Promise被取消或者超时时, 通过postDelayed提交且尚未执行的Runnable将被移除
+	 */
+	private static final class ScheduledLocker<T> extends Locker<T> {
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final Deferred<T> internalResolver;
+		final PromiseScheduler scheduler;
+		final Promise<?> owner;
+
+		/* pending delayed runnables, guarded by this, null until the first postDelayed */
+		private ArrayList<Timer> timers;
+
+		ScheduledLocker(Deferred<T> internalResolver, PromiseScheduler scheduler, Promise<?> owner) {
+			this.internalResolver = internalResolver;
+			this.scheduler = scheduler;
+			this.owner = owner;
+		}
+
+		@Override
+		public boolean done() {
+			return done.get();
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return owner != null && owner.isAborted();
+		}
+
+		@Override
+		public Void resolve(T r) {
+			if (done.compareAndSet(false, true)) {
+				if (internalResolver == null) {
+					owner.resolveWith(r);
+					return null;
+				}
+				return internalResolver.resolve(r);
+			}
+			return null;
+		}
+
+		@Override
+		public Void reject(Exception exception) {
+			if (done.compareAndSet(false, true)) {
+				if (internalResolver == null) {
+					owner.rejectWith(exception);
+					return null;
+				}
+				return internalResolver.reject(exception);
+			}
+			return null;
+		}
+
+		@Override
+		public void onCancel(Runnable action) {
+			if (action == null) {
+				throw new IllegalArgumentException("action should not be null");
+			}
+			if (owner != null) {
+				owner.watch(new CancelHook(action));
+			}
+		}
+
+		@Override
+		public void post(Runnable runnable) {
+			if (!done.get() && !isCancelled()) {
+				scheduler.execute(runnable);
+			}
+		}
+
+		@Override
+		public void postDelayed(Runnable runnable, long delay) {
+			if (done.get() || isCancelled()) {
+				return;
+			}
+			if (owner == null) {
+				scheduler.schedule(runnable, delay);
+				return;
+			}
+			Timer timer = new Timer(runnable);
+			synchronized (this) {
+				if (timers == null) {
+					timers = new ArrayList<>(2);
+					owner.watch(new TimerRelease(this));
+				}
+				timers.add(timer);
+			}
+			scheduler.schedule(timer, delay);
+		}
+
+		@Override
+		public void removeCallbacks(Runnable runnable) {
+			if (owner == null) {
+				scheduler.cancel(runnable);
+				return;
+			}
+			synchronized (this) {
+				if (timers == null) {
+					return;
+				}
+				for (Iterator<Timer> it = timers.iterator(); it.hasNext(); ) {
+					Timer timer = it.next();
+					if (timer.task == runnable) {
+						it.remove();
+						scheduler.cancel(timer);
+					}
+				}
+			}
+		}
+
+		/* the function waits for another promise, cancellation goes to it */
+		void adopt(Promise<?> child) {
+			if (owner != null) {
+				owner.link(child);
+			}
+		}
+
+		void cancelTimers() {
+			ArrayList<Timer> pending;
+			synchronized (this) {
+				pending = timers;
+				timers = null;
+			}
+			if (pending != null) {
+				for (Timer timer : pending) {
+					scheduler.cancel(timer);
+				}
+			}
+		}
+
+		private final class Timer implements Runnable {
+			final Runnable task;
+
+			Timer(Runnable task) {
+				this.task = task;
+			}
+
+			@Override
+			public void run() {
+				synchronized (ScheduledLocker.this) {
+					if (timers != null) {
+						timers.remove(this);
+					}
+				}
+				task.run();
+			}
+		}
+	}
+
+	/* removes the delayed runnables of a locker once its promise is cancelled */
+	private static final class TimerRelease extends Completion {
+		final ScheduledLocker<?> locker;
+
+		TimerRelease(ScheduledLocker<?> locker) {
+			this.locker = locker;
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			if (source.isAborted()) {
+				locker.cancelTimers();
+			}
+		}
+	}
+
+	/* runs a Locker.onCancel action once its promise is cancelled */
+	private static final class CancelHook extends Completion {
+		final Runnable action;
+
+		CancelHook(Runnable action) {
+			this.action = action;
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			if (source.isAborted()) {
+				action.run();
+			}
+		}
+	}
+
+	/* runs an onSettled resolver on the settling thread instead of posting it */
+	private static final class SettledHook extends Completion {
+		final CachedResolver<?> body;
+
+		SettledHook(CachedResolver<?> body) {
+			this.body = body;
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			body.bind(source);
+			body.run();
+		}
+	}
+
+	private static class ValuePromise<T> extends Promise<T> {
+
+		ValuePromise(T nonPromiseValue, PromiseScheduler scheduler) {
+			super(scheduler, outcome(nonPromiseValue));
+		}
+
+		private static Object outcome(Object value) {
+			if (value instanceof Exception) {
+				throw new IllegalArgumentException("value should not be exception");
+			}
+			return value == null ? NIL : value;
+		}
+	}
+
+	/* catchException(Class, ExceptionResolver), the given type wins over the resolver's own */
+	private static final class CatchResolver<D, E extends Throwable> implements DirectResolver<D, D> {
+		final Class<E> type;
+		final ExceptionResolver<D, ? super E> resolver;
+
+		CatchResolver(Class<E> type, ExceptionResolver<D, ? super E> resolver) {
+			if (type == null || resolver == null) {
+				throw new IllegalArgumentException("type and resolver should not be null");
+			}
+			this.type = type;
+			this.resolver = resolver;
+		}
+
+		@Override
+		public D resolve(D newValue) {
+			return newValue;
+		}
+
+		@Override
+		public D reject(Exception exception) {
+			if (!type.isInstance(exception)) {
+				throw newException(exception);
+			}
+			try {
+				return resolver.onCatch(type.cast(exception));
+			} catch (Exception e) {
+				throw newException(e);
+			}
+		}
+	}
+
+	/* catchException(Class, ExceptionPromiseResolver) */
+	private static final class CatchPromiseResolver<D, E extends Throwable> implements PromiseResolver<D, D> {
+		final Class<E> type;
+		final ExceptionPromiseResolver<D, ? super E> resolver;
+
+		CatchPromiseResolver(Class<E> type, ExceptionPromiseResolver<D, ? super E> resolver) {
+			if (type == null || resolver == null) {
+				throw new IllegalArgumentException("type and resolver should not be null");
+			}
+			this.type = type;
+			this.resolver = resolver;
+		}
+
+		@Override
+		public Promise<D> resolve(D newValue) {
+			return resolver.resolve(newValue);
+		}
+
+		@Override
+		public Promise<D> reject(Exception exception) {
+			if (!type.isInstance(exception)) {
+				throw newException(exception);
+			}
+			try {
+				return resolver.onCatch(type.cast(exception));
+			} catch (Exception e) {
+				throw newException(e);
+			}
+		}
+	}
+
+	/**
+	 * 延迟执行的Promise, function只在第一次 {@link #demand()} 时提交
+	 */
+	private static final class LazyPromise<T> extends Promise<T> {
+		@SuppressWarnings("rawtypes")
+		private static final AtomicReferenceFieldUpdater<LazyPromise, DirectFunction> FUNCTION =
+				AtomicReferenceFieldUpdater.newUpdater(LazyPromise.class, DirectFunction.class, "function");
+
+		/* taken by the first consumer, so it runs at most once */
+		private volatile DirectFunction<T> function;
+
+		LazyPromise(DirectFunction<T> function, PromiseScheduler scheduler) {
+			super(null, scheduler, function);
+			this.function = function;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		void demand() {
+			if (function == null) {
+				return;
+			}
+			DirectFunction<T> f = FUNCTION.getAndSet(this, null);
+			// a lazy promise cancelled before its first consumer never runs
+			if (f != null && isPending()) {
+				((Promise<T>) this).postResolve(f);
+			}
+		}
+	}
+
+	/**
+	 * 已经完成的Promise, null以及Boolean常量在每个调度器上只有一个实例
+	 * @param value 非Thenable, 非Exception的值
+	 * @param scheduler 调度器
+	 * @return 已经完成的Promise
+	 */
+	@SuppressWarnings("unchecked")
+	private static <D> Promise<D> settled(D value, PromiseScheduler scheduler) {
+		int slot;
+		if (value == null) {
+			slot = SettledCache.NULL_SLOT;
+		} else if (value instanceof Boolean) {
+			slot = (Boolean) value ? SettledCache.TRUE_SLOT : SettledCache.FALSE_SLOT;
+		} else {
+			return new ValuePromise<>(value, scheduler);
+		}
+		SettledCache cache = scheduler.settledCache();
+		Promise<?> p = cache.get(slot);
+		if (p == null) {
+			p = cache.putIfAbsent(slot, new ValuePromise<>(value, scheduler));
+		}
+		return (Promise<D>) p;
+	}
+
+	/**
+	 * 以同步的写法执行一个异步过程, 在当前线程的调度器上运行
+	 *
+	 * @param body 异步过程, 其中可以使用 {@link Async#await(Promise)}
+	 * @return 异步过程结果的Promise
+	 * @see #async(Async.Body, PromiseScheduler)
+	 */
+	public static <D> Promise<D> async(Async.Body<? extends D> body) {
+		return async(body, myScheduler());
+	}
+
+	/**
+	 * 以同步的写法执行一个异步过程<br>
+	 * java 21以上body运行在虚拟线程上, 其中的 {@link Async#await(Promise)} 只挂起该虚拟线程;
+	 * 更低的版本运行在后台daemon线程上<br>
+	 * body的返回值或者异常完成返回的Promise, 之后的then仍然在调度器上执行;
+	 * Promise被取消时body所在线程被中断, 正在进行的await将抛出InterruptedException
+	 *
+	 * @param body 异步过程, 其中可以使用 {@link Async#await(Promise)}
+	 * @param scheduler Promise执行所在调度器
+	 * @return 异步过程结果的Promise
+	 */
+	public static <D> Promise<D> async(Async.Body<? extends D> body, PromiseScheduler scheduler) {
+		if (body == null) {
+			throw new IllegalArgumentException("body should not be null");
+		}
+		Promise<D> promise = new Promise<>(null, scheduler, body);
+		Async.start(new AsyncRun<>(body, promise));
+		return promise;
+	}
+
+	/**
+	 * 立马返回一个指定thenable/promise对应的Promise对象
+	 *
+	 * @param thenable 一个Thenable对象
+	 * @return 值对应的Promise
+	 */
+	public static <D> Promise<D> resolve(final Thenable<D> thenable) {
+		return resolve(thenable, myScheduler());
+	}
+
+	/**
+	 * 立马返回一个指定thenable/promise对应的Promise对象
+	 *
+	 * @param thenable 一个Thenable对象
+	 * @param scheduler Promise执行所在调度器
+	 * @return 值对应的Promise
+	 */
+	public static <D> Promise<D> resolve(final Thenable<D> thenable, PromiseScheduler scheduler) {
+		try {
+			Function<D> f = thenable.getThen();
+			return resolveDirectFunction(f, scheduler);
+		} catch (Exception e) {
+			return Promise.reject(e, scheduler);
+		}
+	}
+
+	/**
+	 * 立马返回一个指定function对应的Promise对象
+	 *
+	 * @param function 一个DirectFunction对象
+	 * @return 值对应的Promise
+	 */
+	public static <D> Promise<D> resolve(final DirectFunction<D> function) {
+		return resolve(function, myScheduler());
+	}
+
+	/**
+	 * 立马返回一个指定function对应的Promise对象
+	 *
+	 * @param function 一个DirectFunction对象
+	 * @param scheduler Promise执行所在调度器
+	 * @return 值对应的Promise
+	 */
+	public static <D> Promise<D> resolve(final DirectFunction<D> function, PromiseScheduler scheduler) {
+		try {
+			return resolveDirectFunction(function, scheduler);
+		} catch (Exception e) {
+			return Promise.reject(e, scheduler);
+		}
+	}
+
+	/**
+	 * 立马返回一个指定value对应的Promise对象
+	 *
+	 * @param value 指定value值
+	 * @param <D> 对应的类型
+     * @return 值对应的Promise
+     */
+	public static <D> Promise<D> resolve(final D value) {
+		return resolve(value, myScheduler());
+	}
+
+	/**
+	 * 立马返回一个指定value对应的Promise对象
+	 *
+	 * @param value 指定value值
+	 * @param <D> 对应的类型
+	 * @param scheduler Promise执行所在调度器
+	 * @return 值对应的Promise, null以及Boolean常量返回该调度器上缓存的同一个Promise
+	 */
+	public static <D> Promise<D> resolve(final D value, PromiseScheduler scheduler) {
+		if (value instanceof Exception) {
+			return Promise.reject((Exception) value, scheduler);
+		}
+		return settled(value, scheduler);
+	}
+
+	/**
+	 * 立马返回一个指定value对应的Promise对象
+	 * 
+	 * @param value 普通值
+	 * @return 值对应的Promise
+	 */
+	public static <D> Promise<?> resolveValue(final D value) {
+		return resolveValue(value, myScheduler());
+	}
+
+	/**
+	 * 立马返回一个指定value对应的Promise对象
+	 * 
+	 * @param value
+	 *            非Thenable，可以直接处理为Promise，Thenable将会被转化成一个对等的Promise
+	 * @param scheduler Promise执行所在调度器
+	 * @return 新的ValuePromise
+	 * @deprecated try use Promise.resolve() instead
+	 */
+	public static <D> Promise<?> resolveValue(final D value, PromiseScheduler scheduler) {
+		if (value == null)
+			return settled(null, scheduler);
+		if (value instanceof Thenable) {
+			Thenable<?> t = (Thenable<?>) value;
+			try {
+				Function<?> f = t.getThen();
+				return resolveFunction(f, scheduler);
+			} catch (Exception e) {
+				return Promise.reject(e, scheduler);
+			}
+		} else if (value instanceof Function) {
+			try {
+				Function<?> f = (Function<?>) value;
+				return resolveFunction(f, scheduler);
+			} catch (Exception e) {
+				return Promise.reject(e, scheduler);
+			}
+		} else if (value instanceof Exception) {
+			return Promise.reject((Exception) value, scheduler);
+		}
+		return settled(value, scheduler);
+	}
+
+	private static Promise<?> resolveFunction(Function<?> f, PromiseScheduler scheduler) {
+		if (PromiseFunction.class.isInstance(f)) {
+			return Promise.make((PromiseFunction<?>) f, scheduler);
+		} else if (DirectFunction.class.isInstance(f)) {
+			return Promise.make((DirectFunction<?>) f, scheduler);
+		} else {
+			throw new IllegalArgumentException(
+					"Thenable.getThen should only be PromiseFunction or DirectFunction");
+		}
+	}
+
+	private static <D> Promise<D> resolveDirectFunction(Function<D> f, PromiseScheduler scheduler) {
+		if (DirectFunction.class.isInstance(f)) {
+			return Promise.make((DirectFunction<D>) f, scheduler);
+		} else {
+			throw new IllegalArgumentException("Unsupported getThen()");
+		}
+	}
+
+	/**
+	 * 立马返回一个指定value对应的Promise对象
+	 *
+	 * @param value
+	 *            非Thenable，可以直接处理为Promise
+	 * @return 新的ValuePromise
+	 * @deprecated
+	 * @see #resolve(Object)
+	 */
+	@Deprecated
+	public static <D> Promise<D> resolveNonPromiseValue(final D value) {
+		return resolveNonPromiseValue(value, myScheduler());
+	}
+
+	/**
+	 * 立马返回一个指定value对应的Promise对象
+	 *
+	 * @param value
+	 *            非Thenable，可以直接处理为Promise
+	 * @param scheduler Promise执行所在调度器
+	 * @return 新的ValuePromise
+	 * @deprecated
+	 * @see #resolve(Object, PromiseScheduler)
+	 */
+	@Deprecated
+	public static <D> Promise<D> resolveNonPromiseValue(final D value, PromiseScheduler scheduler) {
+		if (value instanceof Thenable || value instanceof Function) {
+			throw new IllegalArgumentException("Value should be non-promise/non-function value, " +
+					"this value is an instance of " + value.getClass());
+		}
+		return settled(value, scheduler);
+	}
+
+	/**
+	 * 立马返回一个指定Exception的Promise对象
+	 * 
+	 * @param e Exception值
+	 * @return return 一个Exception Promise
+	 * @see #reject(Exception)
+	 * @see #reject(Exception, PromiseScheduler)
+	 * @deprecated
+	 */
+	@Deprecated
+	public static Promise<Void> rejectException(final Exception e) {
+		return rejectException(e, myScheduler());
+	}
+
+	/**
+	 * 立马返回一个指定Exception的Promise对象
+	 * 
+	 * @param e Exception值
+	 * @param scheduler Promise所在调度器
+	 * @return return 一个Exception Promise
+	 * @see #reject(Exception)
+	 * @see #reject(Exception, PromiseScheduler)
+	 * @deprecated
+	 */
+	@Deprecated
+	public static Promise<Void> rejectException(final Exception e, PromiseScheduler scheduler) {
+		return reject(e, scheduler);
+	}
+
+	/**
+	 * 立马返回一个指定Exception的Promise对象
+	 *
+	 * @param e Exception值
+	 * @return return 一个Exception Promise
+	 * @see #reject(Exception, PromiseScheduler)
+	 */
+	public static <D> Promise<D> reject(final Exception e) {
+		return reject(e, myScheduler());
+	}
+
+	/**
+	 * 立马返回一个指定Exception的Promise对象
+	 *
+	 * @param e Exception值
+	 * @param scheduler Promise所在调度器
+	 * @return return 一个Exception Promise
+	 * @see #reject(Exception)
+	 */
+	public static <D> Promise<D> reject(final Exception e, PromiseScheduler scheduler) {
+		return new Promise<>(new DirectFunction<Void>() {
+			@Override
+			public void run(Locker<Void> locker) {
+				locker.reject(e);
+			}
+		}, scheduler);
+	}
+
+	/**
+	 * 可以通过该方法继续抛出能够传递的Exception
+	 * @param e 要抛出的异常
+	 * 返回类型使用Void表示, 可以使用return Promise.throwException(e) as a Void function
+	 * @deprecated 请使用 {@link #newException(Exception) throw Promise.newException(exception)} 来代替
+	 * @see #newException(Exception)
+	 */
+	@Deprecated
+	public static Void throwException(final Exception e) {
+		if (e instanceof ExecuteException) {
+			throw (ExecuteException) e;
+		}
+		throw new ExecuteException(e);
+	}
+
+	/**
+	 * 生成Promise内部的Exception，避免显视的申明throws方法<br>
+	 * 包装不会填充调用栈, reject时自动解包为原始的Exception
+	 * @param e 包装一个Exception源
+	 * @return 生成一个无需申明的Exception
+     */
+	public static ExecuteException newException(final Exception e) {
+		if (e instanceof ExecuteException) {
+			return (ExecuteException) e;
+		}
+		return new ExecuteException(e);
+	}
+
+	/**
+	 * 同时运行多个Promise/Function，当所有Promise/Function结果都完成后，返回所有结果的Object数组
+	 *
+	 * @param objects 参与all的所有值
+	 * @return 所有值的总Promise
+     */
+	public static Promise<Object[]> all(Object ... objects) {
+		return all(Arrays.asList(objects));
+	}
+
+	/**
+	 * 同时运行多个Promise/Function，当所有Promise/Function结果都完成后，返回所有结果的Object数组
+	 * 
+	 * @param values 参与all的所有值
+	 * @return 所有值的总Promise
+	 */
+	public static Promise<Object[]> all(final Collection<?> values) {
+		return all(values, myScheduler());
+	}
+
+	/**
+	 * 同时运行多个Promise/Function，当所有Promise/Function结果都完成后，返回所有结果的Object数组
+	 * 
+	 * @param values 参与all的所有值
+	 * @param scheduler
+	 *            在指定的调度器上构造all promise, 如果为Collection中含有Function,Function也将在指定的调度器运行
+	 * @return 所有值的总Promise
+	 */
+	public static Promise<Object[]> all(final Collection<?> values,
+			final PromiseScheduler scheduler) {
+		Promise<Object[]> result = new Promise<>(null, scheduler, null);
+		if (values == null || values.size() == 0) {
+			result.settle(new Object[0]);
+			return result;
+		}
+		Aggregate aggregate = new Aggregate(result, values.size(), Aggregate.ARRAY);
+		int i = 0;
+		for (Object val : values) {
+			if (val instanceof Promise) {
+				aggregate.subscribe(i, (Promise<?>) val);
+			} else if (val instanceof Thenable || val instanceof Function) {
+				aggregate.subscribe(i, resolveValue(val, scheduler));
+			} else {
+				aggregate.put(i, val);
+			}
+			i++;
+		}
+		aggregate.start();
+		return result;
+	}
+
+	/**
+	 * 同时等待多个Promise，当所有Promise都成功后，按顺序返回类型化的所有结果; 任何一个失败时立即失败<br>
+	 * 最后一个完成的Promise所在线程直接完成返回的Promise, 不需要为每一个Promise切换线程
+	 *
+	 * @param promises 参与allOf的所有Promise
+	 * @param <T> 结果类型
+	 * @return 所有结果的总Promise
+	 * @see #all(Collection)
+	 */
+	public static <T> Promise<List<T>> allOf(List<Promise<T>> promises) {
+		return allOf(promises, myScheduler());
+	}
+
+	/**
+	 * 同时等待多个Promise，当所有Promise都成功后，按顺序返回类型化的所有结果; 任何一个失败时立即失败<br>
+	 * 最后一个完成的Promise所在线程直接完成返回的Promise, 不需要为每一个Promise切换线程
+	 *
+	 * @param promises 参与allOf的所有Promise
+	 * @param scheduler 返回的Promise所在的调度器
+	 * @param <T> 结果类型
+	 * @return 所有结果的总Promise
+	 */
+	public static <T> Promise<List<T>> allOf(List<Promise<T>> promises, PromiseScheduler scheduler) {
+		return aggregate(promises, scheduler, Aggregate.LIST);
+	}
+
+	/**
+	 * 同时等待多个Promise，当所有Promise都完成后(无论成功或失败)，按顺序返回每一个Promise的最终结果
+	 *
+	 * @param promises 参与allSettled的所有Promise
+	 * @param <T> 结果类型
+	 * @return 所有最终结果的总Promise, 该Promise不会失败
+	 */
+	public static <T> Promise<List<Settlement<T>>> allSettled(List<Promise<T>> promises) {
+		return allSettled(promises, myScheduler());
+	}
+
+	/**
+	 * 同时等待多个Promise，当所有Promise都完成后(无论成功或失败)，按顺序返回每一个Promise的最终结果
+	 *
+	 * @param promises 参与allSettled的所有Promise
+	 * @param scheduler 返回的Promise所在的调度器
+	 * @param <T> 结果类型
+	 * @return 所有最终结果的总Promise, 该Promise不会失败
+	 */
+	public static <T> Promise<List<Settlement<T>>> allSettled(List<Promise<T>> promises,
+															 PromiseScheduler scheduler) {
+		return aggregate(promises, scheduler, Aggregate.SETTLED);
+	}
+
+	private static <R> Promise<R> aggregate(List<? extends Promise<?>> promises,
+											 PromiseScheduler scheduler, int mode) {
+		Promise<R> result = new Promise<>(null, scheduler, null);
+		int size = promises.size();
+		if (size == 0) {
+			result.settle(Collections.emptyList());
+			return result;
+		}
+		Aggregate aggregate = new Aggregate(result, size, mode);
+		for (int i = 0; i < size; i++) {
+			aggregate.subscribe(i, promises.get(i));
+		}
+		aggregate.start();
+		return result;
+	}
+
+	/**
+	 * 同时处理多个Promise/Function，第一个返回的value将会触发Promise处理完成
+	 *
+	 * @param objects 参与race的所有值数组
+	 * @return 返回一个race的Promise
+     */
+	public static Promise<Object> race(final Object ... objects) {
+		return race(Arrays.asList(objects));
+	}
+
+	/**
+	 * 同时处理多个Promise/Function，第一个返回的value将会触发Promise处理完成
+	 * 
+	 * @param values 参与race的所有值
+	 * @return 返回一个race的Promise
+	 */
+	public static Promise<Object> race(final Collection<?> values) {
+		return race(values, myScheduler());
+	}
+
+	/**
+	 * 同时处理多个Promise/Function，第一个返回的value将会触发Promise处理完成<br>
+	 * race完成或者被取消后, 其余的订阅将被取消, 没有其他消费者的Promise将随之取消
+	 * 
+	 * @param values 参与race的所有值
+	 * @param scheduler Promise执行的调度器
+	 * @return 返回一个race的Promise
+	 */
+	public static Promise<Object> race(final Collection<?> values,
+			final PromiseScheduler scheduler) {
+		final Promise<Object> result = new Promise<>(null, scheduler, null);
+		DirectResolver<Object, Void> settler = new DirectResolver<Object, Void>() {
+
+			@Override
+			public Void resolve(Object newValue) {
+				result.resolveWith(newValue);
+				return null;
+			}
+
+			@Override
+			public Void reject(Exception exception) {
+				result.rejectWith(exception);
+				return null;
+			}
+		};
+		final List<Promise<Void>> subscriptions = new ArrayList<>(values.size());
+		for (Object val : values) {
+			if (!(val instanceof Thenable || val instanceof Function)) {
+				// a plain value wins at once, the rest need not be subscribed
+				result.resolveWith(val);
+				break;
+			}
+			Promise<?> p = val instanceof Promise ? (Promise<?>) val : resolveValue(val, scheduler);
+			@SuppressWarnings("unchecked")
+			Promise<Object> pr = (Promise<Object>) p;
+			subscriptions.add(pr.then(settler));
+		}
+		// once settled, either won or cancelled, the losers are no longer needed
+		result.watch(new Completion() {
+			@Override
+			void complete(Promise<?> source) {
+				for (Promise<Void> subscription : subscriptions) {
+					subscription.cancel();
+				}
+			}
+		});
+		return result;
+	}
+
+	/**
+	 * 依次执行所有Functions,一个执行完成才去执行下一个,最后一个执行完成后返回<br>
+	 * 中途有任何问题将会暂停执行直接抛出问题
+	 *
+	 * @param functions 参与series的所有值
+	 * @return 返回一个series的Promise
+	 */
+	public static Promise<Object[]> series(DirectFunction<?> ... functions) {
+		return series(Arrays.asList(functions));
+	}
+
+	/**
+	 * 依次执行所有Functions,一个执行完成才去执行下一个,最后一个执行完成后返回<br>
+	 * 中途有任何问题将会暂停执行直接抛出问题
+	 *
+	 * @param values 参与series的所有值
+	 * @return 返回一个series的Promise
+	 */
+	public static Promise<Object[]> series(final Collection<DirectFunction<?>> values) {
+		return series(values, myScheduler());
+	}
+
+	/**
+	 * 依次执行所有Functions,一个执行完成才去执行下一个,最后一个执行完成后返回<br>
+	 * 中途有任何问题将会暂停执行直接抛出问题
+	 *
+	 * @param values 参与series的所有值
+	 * @param scheduler Promise执行的调度器
+	 * @return 返回一个series的Promise
+	 */
+	public static Promise<Object[]> series(final Collection<DirectFunction<?>> values,
+										   final PromiseScheduler scheduler) {
+		return Promise.make(new DirectFunction<Object[]>() {
+			private Promise<Object> makePromise(final Iterator<DirectFunction<?>> iterator, final Object[] result, final int index) {
+				DirectFunction<?> val = iterator.next();
+				@SuppressWarnings("unchecked")
+				Promise<Object> pr = (Promise<Object>) Promise.make(val, scheduler);
+				if (index < result.length - 1) {
+					pr = pr.then(new SimplePromiseResolver<Object, Object>() {
+						@Override
+						public Promise<Object> resolve(Object newValue) {
+							result[index] = newValue;
+							return makePromise(iterator, result, index + 1);
+						}
+					});
+				}
+				return pr;
+			}
+
+			@Override
+			public void run(final Locker<Object[]> locker) {
+				final Iterator<DirectFunction<?>> iterator = values.iterator();
+				final Object[] result = new Object[values.size()];
+				makePromise(iterator, result, 0).then(new DirectResolver<Object, Void>() {
+					@Override
+					public Void resolve(Object newValue) {
+						locker.resolve(result);
+						return null;
+					}
+					@Override
+					public Void reject(Exception exception) {
+						locker.reject(exception);
+						return null;
+					}
+				});
+			}
+		}, scheduler);
+	}
+
+	/**
+	 * 以有限的并发度依次处理所有元素, 介于series和all之间<br>
+	 * 结果保持元素顺序, 任何一个失败时立即失败
+	 *
+	 * @param items 要处理的元素, 只会在需要时才从iterator中取出下一个
+	 * @param mapper 将一个元素转换为一个Promise
+	 * @param parallelism 同时处理中的最大数量
+	 * @return 所有结果的总Promise
+	 * @see #map(Iterable, PromiseResolver, int, boolean, boolean, PromiseScheduler)
+	 */
+	public static <T, R> Promise<List<R>> map(Iterable<T> items,
+											  PromiseResolver<? super T, ? extends R> mapper,
+											  int parallelism) {
+		return map(items, mapper, parallelism, true, true, myScheduler());
+	}
+
+	/**
+	 * 以有限的并发度依次处理所有元素, 介于series和all之间<br>
+	 * 同时处理中的元素不会超过parallelism个, 一个完成后才从iterator中取出下一个,
+	 * 因此内存占用只与parallelism相关, 与元素数量无关(除了结果本身)<br>
+	 * mapper总是在调度器上执行
+	 *
+	 * @param items 要处理的元素, 只会在需要时才从iterator中取出下一个
+	 * @param mapper 将一个元素转换为一个Promise
+	 * @param parallelism 同时处理中的最大数量
+	 * @param ordered 为true时结果与元素顺序一致, 否则按完成顺序排列
+	 * @param failFast 为true时任何一个失败将立即失败, 否则处理完所有元素后以 {@link CompositeException} 失败
+	 * @param scheduler Promise执行的调度器
+	 * @return 所有结果的总Promise
+	 */
+	public static <T, R> Promise<List<R>> map(Iterable<T> items,
+											  PromiseResolver<? super T, ? extends R> mapper,
+											  int parallelism, boolean ordered, boolean failFast,
+											  PromiseScheduler scheduler) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism should be greater than 0");
+		}
+		Promise<List<R>> result = new Promise<>(null, scheduler, mapper);
+		final Mapping<T, R> mapping = new Mapping<>(items.iterator(), mapper, parallelism,
+				ordered, failFast, result);
+		result.watch(mapping);
+		runForScheduler(new Runnable() {
+			@Override
+			public void run() {
+				mapping.pump();
+			}
+		}, scheduler);
+		return result;
+	}
+
+	/**
+	 * 异步循环, 在当前线程的调度器上运行
+	 *
+	 * @param seed 初始值
+	 * @param condition 继续循环的条件
+	 * @param step 由当前值产生下一个值
+	 * @return 最终值的Promise
+	 * @see #loop(Object, Condition, PromiseResolver, PromiseScheduler)
+	 */
+	public static <T> Promise<T> loop(T seed, Condition<? super T> condition,
+									  PromiseResolver<? super T, ? extends T> step) {
+		return loop(seed, condition, step, myScheduler());
+	}
+
+	/**
+	 * 异步循环, 相当于 while (condition.test(value)) value = await step.resolve(value)<br>
+	 * 每一步的Promise失败时调用step.reject, 其结果作为下一个值, 循环可以继续;
+	 * 使用 {@link SimplePromiseResolver} 时直接以该异常失败<br>
+	 * 不会为每一步产生then, 已经完成的Promise直接进入下一步, 因此任意多次的循环只占用常量的内存和栈;
+	 * 返回的Promise被取消时循环停止, 正在等待的一步也将被释放<br>
+	 * condition与step总是在调度器上执行
+	 *
+	 * @param seed 初始值
+	 * @param condition 继续循环的条件
+	 * @param step 由当前值产生下一个值
+	 * @param scheduler Promise执行的调度器
+	 * @return 最终值的Promise
+	 */
+	public static <T> Promise<T> loop(T seed, Condition<? super T> condition,
+									  PromiseResolver<? super T, ? extends T> step,
+									  PromiseScheduler scheduler) {
+		if (condition == null || step == null) {
+			throw new IllegalArgumentException("condition and step should not be null");
+		}
+		Promise<T> result = new Promise<>(null, scheduler, step);
+		new Loop<>(result, seed, condition, step).start();
+		return result;
+	}
+
+	/**
+	 * 反复执行异步过程直到结果满足条件, 在当前线程的调度器上运行
+	 *
+	 * @param factory 异步过程的工厂, 每次都会构造一个新的Promise
+	 * @param predicate 结束的条件
+	 * @param delay 两次之间的等待时间, 毫秒
+	 * @return 满足条件的结果的Promise
+	 * @see #repeatUntil(PromiseFactory, Condition, long, PromiseScheduler)
+	 */
+	public static <T> Promise<T> repeatUntil(PromiseFactory<T> factory, Condition<? super T> predicate,
+											 long delay) {
+		return repeatUntil(factory, predicate, delay, myScheduler());
+	}
+
+	/**
+	 * 反复执行异步过程直到结果满足条件, 适用于轮询任务状态<br>
+	 * 每次的结果不满足条件时, 等待delay之后通过调度器重新开始, delay为0时直接开始;
+	 * 任何一次失败时直接以该异常失败, 需要重试时请使用 {@link RetryPolicy}<br>
+	 * 与 {@link #loop(Object, Condition, PromiseResolver, PromiseScheduler)} 一样只占用常量的内存和栈,
+	 * 返回的Promise被取消时, 等待中的下一次也被移除
+	 *
+	 * @param factory 异步过程的工厂, 每次都会构造一个新的Promise
+	 * @param predicate 结束的条件
+	 * @param delay 两次之间的等待时间, 毫秒
+	 * @param scheduler Promise执行的调度器
+	 * @return 满足条件的结果的Promise
+	 */
+	public static <T> Promise<T> repeatUntil(PromiseFactory<T> factory, Condition<? super T> predicate,
+											 long delay, PromiseScheduler scheduler) {
+		if (factory == null || predicate == null) {
+			throw new IllegalArgumentException("factory and predicate should not be null");
+		}
+		if (delay < 0) {
+			throw new IllegalArgumentException("delay should not be negative");
+		}
+		Promise<T> result = new Promise<>(null, scheduler, factory);
+		new Repeat<>(result, factory, predicate, delay).start();
+		return result;
+	}
+
+	/**
+	 * 生成一个Timeout Promise,规定的时间内抛出指定的异常,若Exception为空,则规定时间内返回Void结果
+	 *
+	 * @param timeout 指定的超时时间,该时间不会特别准确,精度为调度器时间轮的一个tick
+	 * @param exception 指定的异常,可以为null
+	 * @return timeout [exception] promise
+	 */
+	public static Promise<Void> timeout(final long timeout, final Exception exception) {
+		return timeout(timeout, exception, myScheduler());
+	}
+
+	/**
+	 * 生成一个TimeoutPromsie,规定的时间内抛出指定的异常,若Exception为空,则规定时间内返回Void结果
+	 *
+	 * @param timeout 指定的超时时间,该时间不会特别准确,精度为调度器时间轮的一个tick
+	 * @param exception 指定的异常,可以为null
+	 * @param scheduler Promise执行的调度器
+	 * @return timeout exception promise
+	 */
+	public static Promise<Void> timeout(final long timeout, final Exception exception, final PromiseScheduler scheduler) {
+		Promise<Void> promise = new Promise<>(null, scheduler, null);
+		promise.deadline(timeout, exception, false);
+		return promise;
+	}
+
+	/**
+	 * 为当前Promise设置一个期限, 规定的时间内没有完成时, 当前Promise直接以 {@link TimeoutException} 失败<br>
+	 * 超时与取消一样终止当前Promise: 上游的消费者被释放, {@link Locker#isCancelled()} 返回true,
+	 * 通过postDelayed提交的Runnable被移除; 但 {@link #isCancelled()} 仍然返回false<br>
+	 * 期限由调度器的时间轮管理, Promise先完成时, 时间轮上的任务将被移除
+	 *
+	 * @param timeout 超时时间, 毫秒, 精度为时间轮的一个tick
+	 * @return 当前Promise
+	 * @see PromiseScheduler#setTimer(me.tangye.utils.async.scheduler.HashedWheelTimer)
+	 */
+	public Promise<D> withTimeout(long timeout) {
+		if (isPending(state)) {
+			deadline(timeout, null, true);
+		}
+		return this;
+	}
+
+	private void deadline(long timeout, Exception exception, boolean fail) {
+		Deadline deadline = new Deadline(this, timeout, exception, fail);
+		if (timeout <= 0) {
+			deadline.run();
+			return;
+		}
+		deadline.handle = scheduler.getTimer().newTimeout(deadline, timeout);
+		watch(deadline);
+	}
+
+	interface Function<D> {
+		void run(final Locker<D> locker);
+	}
+
+	/**
+	 * 循环的条件, 在调度器上执行
+	 *
+	 * @param <T> 判断的值的类型
+	 * @see #loop(Object, Condition, PromiseResolver, PromiseScheduler)
+	 * @see #repeatUntil(PromiseFactory, Condition, long, PromiseScheduler)
+	 */
+	public interface Condition<T> {
+		/**
+		 * @param value 当前的值
+		 * @return 条件成立时返回true
+		 */
+		boolean test(T value);
+	}
+
+	/**
+	 * 一个直接处理过程函数，需要实现run方法
+	 * 
+	 * @author tangye
+	 *
+	 * @param <D>
+	 *            实现的结果类型
+	 */
+	public interface DirectFunction<D> extends Function<D> {
+	}
+
+	/**
+	 * 一个间接处理过程函数，需要实现run方法
+	 * 
+	 * @author tangye
+	 *
+	 * @param <D>
+	 *            实现的Promise结果类型
+	 */
+	public interface PromiseFunction<D> extends Function<Promise<? extends D>> {
+	}
+
+	/**
+	 * 该方法用于执行处理结果, 属于Function的run方法的处理对象参数 <br>
+	 * Locker作为一个与调度器绑定的Deferred对象,除了可以用于async调用resolve或者reject <br>
+	 * 还可以使用 post postDelay done removeCallbacks 等特殊方法
+	 * 
+	 * @author tangye
+	 * @param <D> 处理的结果类型
+	 */
+	public static abstract class Locker<D> implements Deferred<D> {
+
+		/**
+		 * 快捷方法{@link #resolve(D result)}<br>
+		 * 当执行结果成功后，执行，执行结果为null
+		 */
+		public final void resolve() {
+			resolve(null);
+		}
+
+		/**
+		 * 返回是否已经完成
+		 * @return 已经完成时，返回true
+		 */
+		public abstract boolean done();
+
+		/**
+		 * 返回所完成的Promise是否已经被取消或者超过了withTimeout的期限, 耗时的工作可以据此提前停止
+		 * @return 已经取消或者超时时，返回true
+		 * @see Promise#cancel()
+		 */
+		public boolean isCancelled() {
+			return false;
+		}
+
+		/**
+		 * 所完成的Promise被取消或者超时时执行一个回调, 不作为消费者计数, 用于把取消传递给外部的异步过程<br>
+		 * 已经取消时立即执行, 以其他方式完成时不会执行
+		 * @param action 取消时执行的回调, 可能在任意线程执行
+		 * @see #isCancelled()
+		 */
+		public void onCancel(Runnable action) {
+		}
+
+		/**
+		 * 如果当前Locker还没有完成, 在当前调度器上post一个Runnable
+		 * @param runnable 要执行的Runnable
+		 */
+		public abstract void post(Runnable runnable);
+
+		/**
+		 * 如果当前Locker还没有完成, 在当前调度器上post一个Runnable
+		 * @param runnable 要执行的Runnable
+		 * @param delay, 延迟的时间
+		 */
+		public abstract void postDelayed(Runnable runnable, long delay);
+
+		/**
+		 * 在当前调度器上删除一个Runnable
+		 * @param runnable 要删除的Runnable
+		 */
+		public abstract void removeCallbacks(Runnable runnable);
+	}
+
+	/**
+	 * Promise完成时的回调节点, 以无锁栈的形式保存在Promise的状态字中
+	 */
+	private static abstract class Completion {
+		/* next node in the stack, only written before being published by CAS */
+		Completion next;
+
+		/**
+		 * Promise完成时调用, 可能在任意线程
+		 * @param source 完成的Promise
+		 */
+		abstract void complete(Promise<?> source);
+	}
+
+	/**
+	 * 内联执行continuation的trampoline, 每个线程一个<br>
+	 * 栈深度超过 {@link #MAX_DEPTH} 时, continuation进入队列, 由最外层的trampoline依次执行,
+	 * 因此无论链条多长都不会栈溢出, 也不需要post
+	 */
+	private static final class Trampoline {
+		static final int MAX_DEPTH = 32;
+
+		private static final ThreadLocal<Trampoline> LOCAL = new ThreadLocal<Trampoline>() {
+			@Override
+			protected Trampoline initialValue() {
+				return new Trampoline();
+			}
+		};
+
+		private final ArrayDeque<CachedResolver<?>> pending = new ArrayDeque<>();
+		private int depth;
+
+		static void execute(CachedResolver<?> task) {
+			Trampoline t = LOCAL.get();
+			if (t.depth >= MAX_DEPTH) {
+				t.pending.add(task);
+				return;
+			}
+			t.depth++;
+			try {
+				task.run();
+				if (t.depth == 1) {
+					CachedResolver<?> next;
+					while ((next = t.pending.poll()) != null) {
+						next.run();
+					}
+				}
+			} finally {
+				if (--t.depth == 0 && !t.pending.isEmpty()) {
+					// an error escaped from a resolver, hand the rest back to their schedulers
+					CachedResolver<?> next;
+					while ((next = t.pending.poll()) != null) {
+						next.source.scheduler.execute(next);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * 一次完成中所有需要post的resolver, 在一个任务中按注册顺序执行<br>
+	 * 超过调度器的 {@link PromiseScheduler#setDrainBudget(int, long)} 时, 剩余的部分重新post到队尾, 让出调度器
+	 */
+	private static final class Drain implements Runnable {
+		final PromiseScheduler scheduler;
+		/* chained through Completion.next, only touched by the running drain */
+		Completion head;
+
+		Drain(Completion head, PromiseScheduler scheduler) {
+			this.head = head;
+			this.scheduler = scheduler;
+		}
+
+		@Override
+		public void run() {
+			int limit = scheduler.getDrainLimit();
+			long millis = scheduler.getDrainTimeLimit();
+			long deadline = millis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis) : 0;
+			int count = 0;
+			try {
+				while (head != null) {
+					if ((limit > 0 && count >= limit) || (deadline != 0 && System.nanoTime() - deadline >= 0)) {
+						break;
+					}
+					Completion c = head;
+					head = c.next;
+					c.next = null;
+					count++;
+					((CachedResolver<?>) c).run();
+				}
+			} finally {
+				// over budget, or an error escaped from a resolver
+				if (head != null) {
+					scheduler.execute(this);
+				}
+			}
+		}
+	}
+
+	/**
+	 * 等待Promise完成的线程, 完成时唤醒该线程
+	 */
+	private static final class Waiter extends Completion {
+		/* cleared once the waiting thread returns, to avoid a stale unpark */
+		volatile Thread thread;
+
+		Waiter(Thread thread) {
+			this.thread = thread;
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			Thread t = thread;
+			if (t != null) {
+				LockSupport.unpark(t);
+			}
+		}
+	}
+
+	/**
+	 * all/allSettled的结果收集器, 使用原子计数, 由最后一个完成的Promise所在线程完成结果<br>
+	 * 结果完成后(包括快速失败以及被取消), 仍未完成的输入作为消费者被释放
+	 */
+	@SuppressWarnings("serial")
+	private static final class Aggregate extends AtomicInteger {
+		static final int ARRAY = 0;
+		static final int LIST = 1;
+		static final int SETTLED = 2;
+
+		final Promise<?> result;
+		final Object[] values;
+		/* subscribed inputs, null for plain values, only written before start */
+		final Promise<?>[] inputs;
+		final int mode;
+
+		Aggregate(Promise<?> result, int size, int mode) {
+			super(size);
+			this.result = result;
+			this.values = new Object[size];
+			this.inputs = new Promise<?>[size];
+			this.mode = mode;
+		}
+
+		void subscribe(int index, Promise<?> input) {
+			inputs[index] = input;
+			input.handle(new Slot(this, index));
+		}
+
+		/* after every input is subscribed, so the release sees all of them */
+		void start() {
+			result.watch(new Completion() {
+				@Override
+				void complete(Promise<?> source) {
+					for (Promise<?> input : inputs) {
+						if (input != null) {
+							input.release();
+						}
+					}
+				}
+			});
+		}
+
+		void set(int index, Promise<?> source) {
+			Object s = source.current();
+			if (mode == SETTLED) {
+				put(index, s instanceof Failure ? Settlement.rejected(((Failure) s).exception)
+						: Settlement.fulfilled(source.value(s)));
+			} else if (s instanceof Failure) {
+				result.rejectWith(((Failure) s).exception);
+			} else {
+				put(index, source.value(s));
+			}
+		}
+
+		void put(int index, Object value) {
+			// the write is published to the last thread by decrementAndGet
+			values[index] = value;
+			if (decrementAndGet() == 0) {
+				result.resolveWith(mode == ARRAY ? values
+						: Collections.unmodifiableList(Arrays.asList(values)));
+			}
+		}
+	}
+
+	/* one element of an Aggregate */
+	private static final class Slot extends Completion {
+		final Aggregate aggregate;
+		final int index;
+
+		Slot(Aggregate aggregate, int index) {
+			this.aggregate = aggregate;
+			this.index = index;
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			aggregate.set(index, source);
+		}
+	}
+
+	/**
+	 * map的滑动窗口, 所有状态只在调度器线程上访问
+	 */
+	private static final class Mapping<T, R> extends Completion implements Runnable {
+		final Iterator<T> iterator;
+		final PromiseResolver<? super T, ? extends R> mapper;
+		final int parallelism;
+		final boolean ordered;
+		final boolean failFast;
+		final Promise<List<R>> result;
+		final ArrayList<R> values = new ArrayList<>();
+		/* mapper promises not settled yet, released once the result is settled */
+		final HashSet<MapSlot> inflight = new HashSet<>();
+		ArrayList<Exception> errors;
+		int active;
+		int started;
+		boolean exhausted;
+		boolean pumping;
+		boolean done;
+
+		Mapping(Iterator<T> iterator, PromiseResolver<? super T, ? extends R> mapper,
+				int parallelism, boolean ordered, boolean failFast, Promise<List<R>> result) {
+			this.iterator = iterator;
+			this.mapper = mapper;
+			this.parallelism = parallelism;
+			this.ordered = ordered;
+			this.failFast = failFast;
+			this.result = result;
+		}
+
+		void pump() {
+			// a mapper may settle synchronously, the outer loop picks it up instead of recursing
+			if (pumping) {
+				return;
+			}
+			pumping = true;
+			try {
+				while (!done && !exhausted && active < parallelism) {
+					if (!result.isPending()) {
+						// cancelled, the stop task is on its way
+						return;
+					}
+					T item;
+					try {
+						if (!iterator.hasNext()) {
+							exhausted = true;
+							break;
+						}
+						item = iterator.next();
+					} catch (Exception e) {
+						fail(e);
+						return;
+					}
+					int index = started++;
+					if (ordered) {
+						values.add(null);
+					}
+					active++;
+					Promise<? extends R> p;
+					try {
+						p = mapper.resolve(item);
+					} catch (Exception e) {
+						p = Promise.reject(e, result.scheduler);
+					}
+					if (p == null) {
+						p = Promise.resolve((R) null, result.scheduler);
+					}
+					MapSlot slot = new MapSlot(this, index, p);
+					inflight.add(slot);
+					p.handle(slot);
+				}
+				if (!done && exhausted && active == 0) {
+					done = true;
+					if (errors != null) {
+						result.rejectWith(new CompositeException(errors));
+					} else {
+						result.resolveWith(Collections.unmodifiableList(values));
+					}
+				}
+			} finally {
+				pumping = false;
+			}
+		}
+
+		@SuppressWarnings("unchecked")
+		void onSettled(MapSlot slot) {
+			active--;
+			inflight.remove(slot);
+			if (done) {
+				return;
+			}
+			int index = slot.index;
+			Promise<?> source = slot.promise;
+			Object s = source.current();
+			if (s instanceof Failure) {
+				Exception e = ((Failure) s).exception;
+				if (failFast) {
+					fail(e);
+					return;
+				}
+				if (errors == null) {
+					errors = new ArrayList<>();
+				}
+				errors.add(e);
+			} else if (ordered) {
+				values.set(index, (R) source.value(s));
+			} else {
+				values.add((R) source.value(s));
+			}
+			pump();
+		}
+
+		private void fail(Exception e) {
+			done = true;
+			result.rejectWith(e);
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			// the result is settled, by this mapping or by cancel on any thread
+			runForScheduler(this, result.scheduler);
+		}
+
+		@Override
+		public void run() {
+			done = true;
+			// a released promise may settle inline and report back, so take a copy first
+			MapSlot[] slots = inflight.toArray(new MapSlot[inflight.size()]);
+			inflight.clear();
+			for (MapSlot slot : slots) {
+				slot.promise.release();
+			}
+		}
+	}
+
+	/* one in-flight element of a Mapping, always reported on the scheduler */
+	private static final class MapSlot extends Completion implements Runnable {
+		final Mapping<?, ?> mapping;
+		final int index;
+		final Promise<?> promise;
+
+		MapSlot(Mapping<?, ?> mapping, int index, Promise<?> promise) {
+			this.mapping = mapping;
+			this.index = index;
+			this.promise = promise;
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			runForScheduler(this, mapping.result.scheduler);
+		}
+
+		@Override
+		public void run() {
+			mapping.onSettled(this);
+		}
+	}
+
+	/**
+	 * loop/repeatUntil的驱动, 同一个对象被反复注册在每一步的Promise上<br>
+	 * 已经完成的一步在循环中直接处理, 只有未完成时才注册并返回, 因此栈的深度不会增长<br>
+	 * 超过调度器的 {@link PromiseScheduler#setDrainBudget(int, long)} 时, 重新post到队尾, 让出调度器
+	 */
+	private abstract static class Iteration<T> extends Completion implements Runnable {
+		final Promise<T> result;
+		/* the step being waited for */
+		volatile Promise<? extends T> current;
+		/* a settled step left over when the last run went over budget, only touched on the scheduler */
+		Promise<? extends T> yielded;
+
+		Iteration(Promise<T> result) {
+			this.result = result;
+		}
+
+		/**
+		 * 处理上一步并产生下一步, 在调度器上执行
+		 * @param last 已经完成的上一步, 开始时为null
+		 * @return 下一步, 已经完成result或者自行安排了下一次时返回null
+		 */
+		abstract Promise<? extends T> step(Promise<? extends T> last) throws Exception;
+
+		/* the result is cancelled or timed out */
+		void stop() {
+			Promise<?> p = current;
+			if (p != null) {
+				p.release();
+			}
+		}
+
+		final void start() {
+			result.watch(new Completion() {
+				@Override
+				void complete(Promise<?> source) {
+					if (source.isAborted()) {
+						stop();
+					}
+				}
+			});
+			runForScheduler(this, result.scheduler);
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			runForScheduler(this, result.scheduler);
+		}
+
+		@Override
+		public void run() {
+			Promise<? extends T> last = current;
+			current = null;
+			if (last == null) {
+				last = yielded;
+				yielded = null;
+			}
+			PromiseScheduler scheduler = result.scheduler;
+			int limit = scheduler.getDrainLimit();
+			long millis = scheduler.getDrainTimeLimit();
+			long deadline = millis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis) : 0;
+			int count = 0;
+			while (result.isPending()) {
+				if ((limit > 0 && count >= limit) || (deadline != 0 && System.nanoTime() - deadline >= 0)) {
+					// already on the scheduler, so post instead of runForScheduler to let other tasks in
+					yielded = last;
+					scheduler.execute(this);
+					return;
+				}
+				count++;
+				Promise<? extends T> p;
+				try {
+					p = step(last);
+				} catch (Exception e) {
+					result.rejectWith(e);
+					return;
+				}
+				if (p == null) {
+					return;
+				}
+				if (p.isPending()) {
+					current = p;
+					p.handle(this);
+					return;
+				}
+				last = p;
+			}
+		}
+	}
+
+	private static final class Loop<T> extends Iteration<T> {
+		final Condition<? super T> condition;
+		final PromiseResolver<? super T, ? extends T> step;
+		/* the only value slot of the loop */
+		T value;
+
+		Loop(Promise<T> result, T seed, Condition<? super T> condition,
+			 PromiseResolver<? super T, ? extends T> step) {
+			super(result);
+			this.value = seed;
+			this.condition = condition;
+			this.step = step;
+		}
+
+		@Override
+		Promise<? extends T> step(Promise<? extends T> last) throws Exception {
+			if (last != null) {
+				Object s = last.current();
+				if (s instanceof Failure) {
+					return checked(step.reject(((Failure) s).exception));
+				}
+				value = last.value(s);
+			}
+			if (!condition.test(value)) {
+				result.resolveWith(value);
+				return null;
+			}
+			return checked(step.resolve(value));
+		}
+
+		private Promise<? extends T> checked(Promise<? extends T> p) {
+			if (p == null) {
+				throw new NullPointerException("step should not return null");
+			}
+			return p;
+		}
+	}
+
+	private static final class Repeat<T> extends Iteration<T> {
+		final PromiseFactory<T> factory;
+		final Condition<? super T> predicate;
+		final long delay;
+
+		Repeat(Promise<T> result, PromiseFactory<T> factory, Condition<? super T> predicate, long delay) {
+			super(result);
+			this.factory = factory;
+			this.predicate = predicate;
+			this.delay = delay;
+		}
+
+		@Override
+		Promise<? extends T> step(Promise<? extends T> last) throws Exception {
+			if (last != null) {
+				Object s = last.current();
+				if (s instanceof Failure) {
+					result.rejectWith(((Failure) s).exception);
+					return null;
+				}
+				T value = last.value(s);
+				if (predicate.test(value)) {
+					result.resolveWith(value);
+					return null;
+				}
+				if (delay > 0) {
+					result.scheduler.schedule(this, delay);
+					return null;
+				}
+			}
+			return factory.make(result.scheduler);
+		}
+
+		@Override
+		void stop() {
+			result.scheduler.cancel(this);
+			super.stop();
+		}
+	}
+
+	/* a timer slot on the wheel, removed once its promise settles first */
+	private static final class Deadline extends Completion implements Runnable {
+		final Promise<?> promise;
+		final long timeout;
+		final Exception exception;
+		final boolean fail;
+		HashedWheelTimer.Timeout handle;
+
+		Deadline(Promise<?> promise, long timeout, Exception exception, boolean fail) {
+			this.promise = promise;
+			this.timeout = timeout;
+			this.exception = exception;
+			this.fail = fail;
+		}
+
+		@Override
+		public void run() {
+			if (exception != null) {
+				promise.rejectWith(exception);
+			} else if (fail) {
+				// aborted like cancel, but the caller still sees a TimeoutException
+				if (promise.isPending()) {
+					promise.settle(new Failure(promise.unwrap(
+							new TimeoutException("promise is not settled in " + timeout + " ms")), true));
+				}
+			} else {
+				promise.resolveWith(null);
+			}
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			// watched after the handle is set, so it is always visible here
+			handle.cancel();
+		}
+	}
+
+	/* runs an async body, interrupting its thread once the promise is cancelled */
+	private static final class AsyncRun<T> extends Completion implements Runnable {
+		final Async.Body<? extends T> body;
+		final Promise<T> promise;
+		/* guarded by this, so a pooled thread is never interrupted after it moved on */
+		Thread thread;
+
+		AsyncRun(Async.Body<? extends T> body, Promise<T> promise) {
+			this.body = body;
+			this.promise = promise;
+		}
+
+		@Override
+		public void run() {
+			synchronized (this) {
+				thread = Thread.currentThread();
+			}
+			try {
+				promise.watch(this);
+				if (promise.isPending()) {
+					promise.resolveWith(body.run());
+				}
+			} catch (Exception e) {
+				promise.rejectWith(e);
+			} catch (Error e) {
+				promise.rejectWith(new ExecuteException(e));
+				throw e;
+			} finally {
+				synchronized (this) {
+					thread = null;
+				}
+				// a cancel racing with the return must not leak into the next task
+				Thread.interrupted();
+			}
+		}
+
+		@Override
+		synchronized void complete(Promise<?> source) {
+			if (thread != null && source.isAborted()) {
+				thread.interrupt();
+			}
+		}
+	}
+
+	/* state word of a promise which became an alias, the target is compressed to the root */
+	private static final class Link {
+		volatile Promise<?> target;
+
+		Link(Promise<?> target) {
+			this.target = target;
+		}
+	}
+
+	/* rejected state word */
+	private static final class Failure {
+		final Exception exception;
+		/* settled by cancel or by a withTimeout deadline rather than by its producer */
+		final boolean aborted;
+
+		Failure(Exception exception) {
+			this(exception, false);
+		}
+
+		Failure(Exception exception, boolean aborted) {
+			this.exception = exception;
+			this.aborted = aborted;
+		}
+	}
+
+	/**
+	 * 一个被缓存的Resolver包装对象，类似一个处理数据的Pipe<br>
+	 * 输入为T类型，处理结果交给下一个Promise
+	 * @author tangye
+	 * @param <T> 该Resolver将会接收到的数据类
+	 */
+	private static class CachedResolver<T> extends Completion implements Runnable {
+		final BaseResolver<T, ?> resolver;
+		final Promise<?> next;
+		Promise<? extends T> source;
+
+		/**
+		 * 记录下这个Resolver对象，并绑定一个处理输出的Promise
+		 * 
+		 * @param resolver
+		 *            被缓存的resolver对象
+		 * @param next
+		 *            处理结果的下一个Promise
+		 */
+		CachedResolver(BaseResolver<T, ?> resolver, Promise<?> next) {
+			if (resolver == null) {
+				throw new IllegalArgumentException(
+						"resolver should not be null");
+			}
+			this.resolver = resolver;
+			this.next = next;
+		}
+
+		@SuppressWarnings("unchecked")
+		void bind(Promise<?> source) {
+			this.source = (Promise<? extends T>) source;
+		}
+
+		@Override
+		void complete(Promise<?> source) {
+			// resolver总是在Promise的调度器中执行
+			bind(source);
+			PromiseScheduler scheduler = source.scheduler;
+			if (scheduler.isInlineContinuations() && scheduler.inEventLoop()) {
+				Trampoline.execute(this);
+			} else {
+				scheduler.execute(this);
+			}
+		}
+
+		@Override
+		public void run() {
+			if (!isPending(next.current())) {
+				// the next promise is cancelled, skip the resolver
+				return;
+			}
+			Object s = source.current();
+			Object p;
+			try {
+				p = s instanceof Failure ? resolver.reject(((Failure) s).exception)
+						: resolver.resolve(source.value(s));
+			} catch (Exception e) {
+				next.rejectWith(e);
+				return;
+			}
+			next.resolveWith(p);
+		}
+	}
+}
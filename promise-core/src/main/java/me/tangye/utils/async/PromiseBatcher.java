@@ -0,0 +1,305 @@
+package me.tangye.utils.async;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.resolver.PromiseDeferred;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 请求合并器, 类似DataLoader<br>
+ * 同一个调度器tick中通过 {@link #load(Object)} 请求的所有key被合并为一次 {@link #batchLoad(List)},
+ * 结果再分发给每一个调用者; 达到maxBatchSize时立即发出当前批次<br>
+ * 同一个批次中重复的key只会被请求一次, 批次之间不做缓存, 需要缓存时可以与 {@link PromiseCache} 组合使用
+ * <pre>
+ *     PromiseBatcher&lt;String, User&gt; users = PromiseBatcher.create(new PromiseBatcher.BatchLoader&lt;String, User&gt;() {
+ *         public Promise&lt;Map&lt;String, User&gt;&gt; batchLoad(List&lt;String&gt; ids) {
+ *             return api.fetchUsers(ids);
+ *         }
+ *     }, scheduler, 100);
+ *     users.load("a").then(...);
+ *     users.load("b").then(...); // a和b在一次fetchUsers中请求
+ * </pre>
+ *
+ * @author tangye
+ *
+ * @param <K> key的类型
+ * @param <V> 结果的类型
+ */
+public abstract class PromiseBatcher<K, V> {
+
+	private final PromiseScheduler scheduler;
+	private final int maxBatchSize;
+
+	/* the collecting batch, guarded by this */
+	private LinkedHashMap<K, PromiseDeferred<V>> pending;
+	private long pendingSince;
+
+	/* statistics, guarded by this */
+	private long batchCount;
+	private long keyCount;
+	private int largestBatch;
+	private long totalWait;
+	private long completedBatchCount;
+	private long totalLatency;
+	private long failedBatchCount;
+
+	/**
+	 * @param scheduler 合并窗口以及batchLoad所在的调度器
+	 * @param maxBatchSize 一个批次最多的key数量
+	 */
+	protected PromiseBatcher(PromiseScheduler scheduler, int maxBatchSize) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("scheduler should not be null");
+		}
+		if (maxBatchSize < 1) {
+			throw new IllegalArgumentException("maxBatchSize should be greater than 0");
+		}
+		this.scheduler = scheduler;
+		this.maxBatchSize = maxBatchSize;
+	}
+
+	/**
+	 * 通过一个BatchLoader构造一个PromiseBatcher
+	 * @param loader 批量加载过程
+	 * @param scheduler 合并窗口以及batchLoad所在的调度器
+	 * @param maxBatchSize 一个批次最多的key数量
+	 * @return 新的合并器
+	 */
+	public static <K, V> PromiseBatcher<K, V> create(final BatchLoader<K, V> loader,
+													 PromiseScheduler scheduler, int maxBatchSize) {
+		return new PromiseBatcher<K, V>(scheduler, maxBatchSize) {
+			@Override
+			protected Promise<Map<K, V>> batchLoad(List<K> keys) {
+				return loader.batchLoad(keys);
+			}
+		};
+	}
+
+	/**
+	 * 批量加载, 在调度器上执行
+	 * @param keys 本批次的所有key, 不重复, 按照请求顺序排列
+	 * @return 每个key对应的结果, 缺少的key将以 {@link NoSuchElementException} 失败
+	 */
+	protected abstract Promise<Map<K, V>> batchLoad(List<K> keys);
+
+	/**
+	 * 请求一个key, 可以在任意线程调用
+	 * @param key 任意key
+	 * @return 该key结果的Promise
+	 */
+	public Promise<V> load(K key) {
+		PromiseDeferred<V> deferred;
+		LinkedHashMap<K, PromiseDeferred<V>> full = null;
+		LinkedHashMap<K, PromiseDeferred<V>> opened = null;
+		synchronized (this) {
+			if (pending == null) {
+				pending = new LinkedHashMap<>();
+				pendingSince = System.nanoTime();
+				opened = pending;
+			}
+			deferred = pending.get(key);
+			if (deferred == null) {
+				deferred = PromiseDeferred.make(scheduler);
+				pending.put(key, deferred);
+				if (pending.size() >= maxBatchSize) {
+					full = takePending();
+				}
+			}
+		}
+		if (full != null) {
+			dispatchOnScheduler(full);
+		} else if (opened != null) {
+			// runs after every task already queued in this tick
+			final LinkedHashMap<K, PromiseDeferred<V>> window = opened;
+			scheduler.execute(new Runnable() {
+				@Override
+				public void run() {
+					LinkedHashMap<K, PromiseDeferred<V>> batch;
+					synchronized (PromiseBatcher.this) {
+						// the window may already be sent because it was full
+						batch = pending == window ? takePending() : null;
+					}
+					if (batch != null) {
+						dispatch(batch);
+					}
+				}
+			});
+		}
+		return deferred.promise();
+	}
+
+	/**
+	 * 立即发出当前正在收集的批次, 不等待tick结束
+	 */
+	public void flush() {
+		LinkedHashMap<K, PromiseDeferred<V>> batch;
+		synchronized (this) {
+			batch = takePending();
+		}
+		if (batch != null) {
+			dispatchOnScheduler(batch);
+		}
+	}
+
+	/**
+	 * 获取统计信息的快照
+	 * @return 统计信息
+	 */
+	public synchronized Stats stats() {
+		return new Stats(batchCount, keyCount, largestBatch, totalWait, completedBatchCount,
+				totalLatency, failedBatchCount);
+	}
+
+	/* must hold the lock */
+	private LinkedHashMap<K, PromiseDeferred<V>> takePending() {
+		LinkedHashMap<K, PromiseDeferred<V>> batch = pending;
+		if (batch != null) {
+			pending = null;
+			int size = batch.size();
+			batchCount++;
+			keyCount += size;
+			largestBatch = Math.max(largestBatch, size);
+			totalWait += System.nanoTime() - pendingSince;
+		}
+		return batch;
+	}
+
+	private void dispatchOnScheduler(final LinkedHashMap<K, PromiseDeferred<V>> batch) {
+		Promise.runForScheduler(new Runnable() {
+			@Override
+			public void run() {
+				dispatch(batch);
+			}
+		}, scheduler);
+	}
+
+	private void dispatch(final LinkedHashMap<K, PromiseDeferred<V>> batch) {
+		final long start = System.nanoTime();
+		Promise<Map<K, V>> result;
+		try {
+			result = batchLoad(new ArrayList<>(batch.keySet()));
+			if (result == null) {
+				throw new NullPointerException("batchLoad should not return null");
+			}
+		} catch (Exception e) {
+			result = Promise.reject(e, scheduler);
+		}
+		result.then(new DirectResolver<Map<K, V>, Void>() {
+			@Override
+			public Void resolve(Map<K, V> values) {
+				record(start, false);
+				for (Map.Entry<K, PromiseDeferred<V>> entry : batch.entrySet()) {
+					K key = entry.getKey();
+					if (values != null && values.containsKey(key)) {
+						entry.getValue().resolve(values.get(key));
+					} else {
+						entry.getValue().reject(new NoSuchElementException("no value for key " + key));
+					}
+				}
+				return null;
+			}
+
+			@Override
+			public Void reject(Exception exception) {
+				record(start, true);
+				for (PromiseDeferred<V> deferred : batch.values()) {
+					deferred.reject(exception);
+				}
+				return null;
+			}
+		});
+	}
+
+	private synchronized void record(long start, boolean failed) {
+		completedBatchCount++;
+		totalLatency += System.nanoTime() - start;
+		if (failed) {
+			failedBatchCount++;
+		}
+	}
+
+	/**
+	 * 批量加载过程
+	 * @param <K> key的类型
+	 * @param <V> 结果的类型
+	 */
+	public interface BatchLoader<K, V> {
+		/**
+		 * 批量加载, 在调度器上执行
+		 * @param keys 本批次的所有key, 不重复, 按照请求顺序排列
+		 * @return 每个key对应的结果
+		 */
+		Promise<Map<K, V>> batchLoad(List<K> keys);
+	}
+
+	/**
+	 * 合并器的统计信息, 用于调整批次大小
+	 */
+	public static final class Stats {
+		private final long batchCount;
+		private final long keyCount;
+		private final int largestBatch;
+		private final long totalWait;
+		private final long completedBatchCount;
+		private final long totalLatency;
+		private final long failedBatchCount;
+
+		Stats(long batchCount, long keyCount, int largestBatch, long totalWait,
+			  long completedBatchCount, long totalLatency, long failedBatchCount) {
+			this.batchCount = batchCount;
+			this.keyCount = keyCount;
+			this.largestBatch = largestBatch;
+			this.totalWait = totalWait;
+			this.completedBatchCount = completedBatchCount;
+			this.totalLatency = totalLatency;
+			this.failedBatchCount = failedBatchCount;
+		}
+
+		/** 已经发出的批次数 **/
+		public long batchCount() {
+			return batchCount;
+		}
+
+		/** 已经发出的key总数, 同一批次中重复的key只计一次 **/
+		public long keyCount() {
+			return keyCount;
+		}
+
+		/** 最大的批次 **/
+		public int largestBatch() {
+			return largestBatch;
+		}
+
+		/** 平均批次大小 **/
+		public double averageBatchSize() {
+			return batchCount == 0 ? 0.0 : (double) keyCount / batchCount;
+		}
+
+		/** 第一个key进入批次到批次发出的平均等待时间, 纳秒 **/
+		public double averageWait() {
+			return batchCount == 0 ? 0.0 : (double) totalWait / batchCount;
+		}
+
+		/** batchLoad开始到完成的平均耗时, 纳秒, 只计算已经完成的批次 **/
+		public double averageLatency() {
+			return completedBatchCount == 0 ? 0.0 : (double) totalLatency / completedBatchCount;
+		}
+
+		/** 失败的批次数 **/
+		public long failedBatchCount() {
+			return failedBatchCount;
+		}
+
+		@Override
+		public String toString() {
+			return "Stats{batches=" + batchCount + ", keys=" + keyCount + ", largest=" + largestBatch
+					+ ", avgSize=" + averageBatchSize() + ", avgWait=" + averageWait()
+					+ ", avgLatency=" + averageLatency() + ", failed=" + failedBatchCount + "}";
+		}
+	}
+}
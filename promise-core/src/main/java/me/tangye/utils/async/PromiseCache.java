@@ -0,0 +1,373 @@
+package me.tangye.utils.async;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.resolver.PromiseDeferred;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 按key缓存异步加载结果的Promise缓存<br>
+ * <ul>
+ *     <li>同一个key同时只会有一个加载过程, 并发的调用者共享同一个加载结果(single-flight)</li>
+ *     <li>按最近最少使用(LRU)淘汰, 数量不超过maximumSize</li>
+ *     <li>{@link #expireAfterWrite(long)} 过期后重新加载, 调用者等待新的结果</li>
+ *     <li>{@link #refreshAfterWrite(long)} 到期后在后台刷新, 刷新完成之前仍然返回旧的结果</li>
+ * </ul>
+ * 已经完成的结果直接共享同一个Promise, 不会为每次命中生成新的Promise;
+ * 加载中的结果返回一个clone, 某个调用者取消时不会影响其他调用者以及加载过程本身<br>
+ * 加载失败的结果不会被缓存
+ * <pre>
+ *     PromiseCache&lt;String, User&gt; users = PromiseCache.create(new PromiseCache.Loader&lt;String, User&gt;() {
+ *         public void load(String id, Promise.Locker&lt;User&gt; locker) {
+ *             api.fetchUser(id, locker);
+ *         }
+ *     }, scheduler, 1000).expireAfterWrite(60000).refreshAfterWrite(10000);
+ * </pre>
+ *
+ * @author tangye
+ *
+ * @param <K> key的类型
+ * @param <V> 结果的类型
+ */
+public abstract class PromiseCache<K, V> {
+
+	private final PromiseScheduler scheduler;
+	private final int maximumSize;
+
+	/* access ordered for LRU, guarded by this */
+	private final LinkedHashMap<K, Entry<V>> entries;
+
+	private volatile long expireAfterWrite;
+	private volatile long refreshAfterWrite;
+
+	/* statistics, guarded by this */
+	private long hitCount;
+	private long missCount;
+	private long loadSuccessCount;
+	private long loadFailureCount;
+	private long totalLoadTime;
+	private long evictionCount;
+
+	/**
+	 * @param scheduler 加载过程所在的调度器
+	 * @param maximumSize 最多缓存的key数量
+	 */
+	protected PromiseCache(PromiseScheduler scheduler, final int maximumSize) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("scheduler should not be null");
+		}
+		if (maximumSize < 1) {
+			throw new IllegalArgumentException("maximumSize should be greater than 0");
+		}
+		this.scheduler = scheduler;
+		this.maximumSize = maximumSize;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, PromiseCache.Entry<V>> eldest) {
+				if (size() > maximumSize) {
+					evictionCount++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * 通过一个Loader构造一个PromiseCache
+	 * @param loader 加载过程
+	 * @param scheduler 加载过程所在的调度器
+	 * @param maximumSize 最多缓存的key数量
+	 * @return 新的缓存
+	 */
+	public static <K, V> PromiseCache<K, V> create(final Loader<K, V> loader,
+												   PromiseScheduler scheduler, int maximumSize) {
+		return new PromiseCache<K, V>(scheduler, maximumSize) {
+			@Override
+			protected void load(K key, Promise.Locker<V> locker) {
+				loader.load(key, locker);
+			}
+		};
+	}
+
+	/**
+	 * 加载一个key, 在调度器上执行, 完成时调用locker.resolve或者locker.reject
+	 * @param key 要加载的key
+	 * @param locker 加载结果的Locker
+	 */
+	protected abstract void load(K key, Promise.Locker<V> locker);
+
+	/**
+	 * 设置写入后的过期时间, 应在使用之前设置
+	 * @param millis 毫秒, 0表示永不过期
+	 * @return 当前缓存
+	 */
+	public PromiseCache<K, V> expireAfterWrite(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("expireAfterWrite should not be negative");
+		}
+		this.expireAfterWrite = TimeUnit.MILLISECONDS.toNanos(millis);
+		return this;
+	}
+
+	/**
+	 * 设置写入后的刷新时间, 到期后的第一次访问将触发后台刷新, 应在使用之前设置
+	 * @param millis 毫秒, 0表示不刷新
+	 * @return 当前缓存
+	 */
+	public PromiseCache<K, V> refreshAfterWrite(long millis) {
+		if (millis < 0) {
+			throw new IllegalArgumentException("refreshAfterWrite should not be negative");
+		}
+		this.refreshAfterWrite = TimeUnit.MILLISECONDS.toNanos(millis);
+		return this;
+	}
+
+	/**
+	 * 获取key对应的结果, 没有缓存时开始加载
+	 * @param key 任意key
+	 * @return 结果的Promise
+	 */
+	public Promise<V> get(K key) {
+		Entry<V> entry;
+		PromiseDeferred<V> load = null;
+		Promise<V> loading = null;
+		Promise<V> result;
+		synchronized (this) {
+			long now = System.nanoTime();
+			entry = entries.get(key);
+			if (entry != null && entry.loaded && isExpired(entry, now)) {
+				entries.remove(key);
+				entry = null;
+			}
+			if (entry != null) {
+				hitCount++;
+				if (entry.loaded && !entry.refreshing && refreshAfterWrite > 0
+						&& now - entry.writeTime >= refreshAfterWrite) {
+					// the stale value is returned, a background load replaces it
+					entry.refreshing = true;
+					load = PromiseDeferred.make(scheduler);
+					loading = load.promise();
+				}
+			} else {
+				missCount++;
+				entry = new Entry<>();
+				load = PromiseDeferred.make(scheduler);
+				loading = load.promise();
+				entry.promise = loading;
+				entries.put(key, entry);
+			}
+			result = entry.promise;
+		}
+		if (load != null) {
+			startLoad(key, entry, load, loading, loading != result);
+		}
+		return result.isPending() ? result.clone() : result;
+	}
+
+	/**
+	 * 获取已经缓存且没有过期的结果, 不会开始加载
+	 * @param key 任意key
+	 * @return 已经完成的Promise, 没有时返回null
+	 */
+	public synchronized Promise<V> getIfPresent(K key) {
+		Entry<V> entry = entries.get(key);
+		if (entry == null || !entry.loaded || isExpired(entry, System.nanoTime())) {
+			return null;
+		}
+		hitCount++;
+		return entry.promise;
+	}
+
+	/**
+	 * 直接放入一个结果
+	 * @param key 任意key
+	 * @param value 结果
+	 */
+	public void put(K key, V value) {
+		Entry<V> entry = new Entry<>();
+		entry.promise = Promise.resolve(value, scheduler);
+		entry.loaded = true;
+		synchronized (this) {
+			entry.writeTime = System.nanoTime();
+			entries.put(key, entry);
+		}
+	}
+
+	/**
+	 * 删除一个key, 正在进行的加载不会被取消, 但结果不会再被缓存
+	 * @param key 任意key
+	 */
+	public synchronized void invalidate(K key) {
+		entries.remove(key);
+	}
+
+	/**
+	 * 删除所有key
+	 */
+	public synchronized void invalidateAll() {
+		entries.clear();
+	}
+
+	/**
+	 * 当前缓存的key数量, 包括加载中的
+	 * @return 数量
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	/**
+	 * 获取统计信息的快照
+	 * @return 统计信息
+	 */
+	public synchronized Stats stats() {
+		return new Stats(hitCount, missCount, loadSuccessCount, loadFailureCount,
+				totalLoadTime, evictionCount);
+	}
+
+	private boolean isExpired(Entry<V> entry, long now) {
+		return expireAfterWrite > 0 && now - entry.writeTime >= expireAfterWrite;
+	}
+
+	/* only the caller which created the entry or claimed its refresh gets here */
+	private void startLoad(final K key, final Entry<V> entry, final PromiseDeferred<V> deferred,
+						   final Promise<V> p, final boolean refresh) {
+		final long start = System.nanoTime();
+		p.then(new DirectResolver<V, Void>() {
+			@Override
+			public Void resolve(V newValue) {
+				synchronized (PromiseCache.this) {
+					loadSuccessCount++;
+					totalLoadTime += System.nanoTime() - start;
+					entry.refreshing = false;
+					entry.promise = p;
+					entry.writeTime = System.nanoTime();
+					entry.loaded = true;
+				}
+				return null;
+			}
+
+			@Override
+			public Void reject(Exception exception) {
+				synchronized (PromiseCache.this) {
+					loadFailureCount++;
+					totalLoadTime += System.nanoTime() - start;
+					entry.refreshing = false;
+					// a failed refresh keeps serving the stale value
+					if (!refresh && entries.get(key) == entry) {
+						entries.remove(key);
+					}
+				}
+				return null;
+			}
+		});
+		// user code runs on the scheduler and outside of the cache lock
+		Promise.runForScheduler(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					load(key, deferred);
+				} catch (Exception e) {
+					deferred.reject(e);
+				}
+			}
+		}, scheduler);
+	}
+
+	/**
+	 * 加载过程
+	 * @param <K> key的类型
+	 * @param <V> 结果的类型
+	 */
+	public interface Loader<K, V> {
+		/**
+		 * 加载一个key, 在调度器上执行, 完成时调用locker.resolve或者locker.reject
+		 * @param key 要加载的key
+		 * @param locker 加载结果的Locker
+		 */
+		void load(K key, Promise.Locker<V> locker);
+	}
+
+	/* a cached key, guarded by the cache */
+	private static final class Entry<V> {
+		Promise<V> promise;
+		long writeTime;
+		boolean loaded;
+		boolean refreshing;
+	}
+
+	/**
+	 * 缓存的统计信息
+	 */
+	public static final class Stats {
+		private final long hitCount;
+		private final long missCount;
+		private final long loadSuccessCount;
+		private final long loadFailureCount;
+		private final long totalLoadTime;
+		private final long evictionCount;
+
+		Stats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount,
+			  long totalLoadTime, long evictionCount) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.loadSuccessCount = loadSuccessCount;
+			this.loadFailureCount = loadFailureCount;
+			this.totalLoadTime = totalLoadTime;
+			this.evictionCount = evictionCount;
+		}
+
+		/** 命中次数, 包括命中加载中的结果 **/
+		public long hitCount() {
+			return hitCount;
+		}
+
+		/** 未命中次数, 每次未命中都会开始一次加载 **/
+		public long missCount() {
+			return missCount;
+		}
+
+		/** 命中率 **/
+		public double hitRate() {
+			long total = hitCount + missCount;
+			return total == 0 ? 1.0 : (double) hitCount / total;
+		}
+
+		/** 加载成功的次数, 包括后台刷新 **/
+		public long loadSuccessCount() {
+			return loadSuccessCount;
+		}
+
+		/** 加载失败的次数, 包括后台刷新 **/
+		public long loadFailureCount() {
+			return loadFailureCount;
+		}
+
+		/** 所有加载过程的总耗时, 纳秒 **/
+		public long totalLoadTime() {
+			return totalLoadTime;
+		}
+
+		/** 平均每次加载的耗时, 纳秒 **/
+		public double averageLoadPenalty() {
+			long total = loadSuccessCount + loadFailureCount;
+			return total == 0 ? 0.0 : (double) totalLoadTime / total;
+		}
+
+		/** 因为超过数量而被淘汰的key数量 **/
+		public long evictionCount() {
+			return evictionCount;
+		}
+
+		@Override
+		public String toString() {
+			return "Stats{hit=" + hitCount + ", miss=" + missCount + ", loadSuccess=" + loadSuccessCount
+					+ ", loadFailure=" + loadFailureCount + ", totalLoadTime=" + totalLoadTime
+					+ ", eviction=" + evictionCount + "}";
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package me.tangye.utils.async;
+
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.resolver.DoneResolver;
+import me.tangye.utils.async.resolver.ExceptionResolver;
+import me.tangye.utils.async.resolver.FinalResolver;
+import me.tangye.utils.async.resolver.PromiseResolver;
+
+/**
+ * 融合的同步处理链, 由 {@link Promise#fuse()} 产生<br>
+ * 连续的 {@link DirectResolver} (包括SimpleResolver, ExceptionResolver等) 不会每一步都产生一个新的Promise,
+ * 而是被合并为一个处理过程, 直到调用 {@link #promise()} 或者 {@link #then(PromiseResolver)} 时才生成最终的Promise<br>
+ * 注意: PromiseChain只是一个尚未执行的处理过程描述, 每次调用 {@link #promise()} 都会重新执行所有的处理过程
+ * <pre>
+ *     promise.fuse().then(r1).then(r2).exception(r3).promise();
+ * </pre>
+ *
+ * @author tangye
+ *
+ * @param <T> 当前处理链输出的数据类型
+ */
+public final class PromiseChain<T> {
+
+	private final Promise<?> source;
+
+	/* the last stage, stages are linked backwards so a chain can be shared */
+	private final Stage last;
+	private final int size;
+
+	PromiseChain(Promise<?> source) {
+		this(source, null, 0);
+	}
+
+	private PromiseChain(Promise<?> source, Stage last, int size) {
+		this.source = source;
+		this.last = last;
+		this.size = size;
+	}
+
+	/**
+	 * 追加一个同步处理过程, 等同于 {@link Promise#then(DirectResolver)}, 但不会产生中间Promise
+	 * @param resolver 直接处理的解析器
+	 * @param <R> 处理后的数据类型
+	 * @return 新的处理链
+	 */
+	public <R> PromiseChain<R> then(DirectResolver<? super T, ? extends R> resolver) {
+		if (resolver == null) {
+			throw new IllegalArgumentException("resolver should not be null");
+		}
+		return new PromiseChain<>(source, new Stage(resolver, last), size + 1);
+	}
+
+	/**
+	 * 追加一个异步处理过程, 此时处理链将被生成为Promise
+	 * @param resolver 间接处理的解析器
+	 * @param <R> 处理后的数据类型
+	 * @return 新的Promise
+	 */
+	public <R> Promise<R> then(PromiseResolver<? super T, ? extends R> resolver) {
+		return promise().then(resolver);
+	}
+
+	/**
+	 * A short-hand for then(ExceptionResolver)
+	 * @param resolver 异常解析器
+	 * @return 新的处理链
+	 */
+	public <E extends Throwable> PromiseChain<T> exception(ExceptionResolver<T, E> resolver) {
+		return then(resolver);
+	}
+
+	/**
+	 * A short-hand for then(FinalResolver)
+	 * @param finalResolver 最终结果处理器
+	 * @return 新的处理链
+	 */
+	public PromiseChain<T> finalResult(FinalResolver<T> finalResolver) {
+		return then(finalResolver);
+	}
+
+	/**
+	 * A short-hand for then(DoneResolver)
+	 * @param doneResolver 结果处理器
+	 * @return 新的处理链
+	 */
+	public PromiseChain<T> done(DoneResolver<T> doneResolver) {
+		return then(doneResolver);
+	}
+
+	/**
+	 * 生成处理链最终的Promise, 所有处理过程在一个continuation中依次执行
+	 * @return 最终的Promise
+	 */
+	@SuppressWarnings("unchecked")
+	public Promise<T> promise() {
+		if (size == 0) {
+			return (Promise<T>) source;
+		}
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		DirectResolver<Object, Object>[] stages = new DirectResolver[size];
+		int i = size;
+		for (Stage s = last; s != null; s = s.prev) {
+			stages[--i] = s.resolver;
+		}
+		return (Promise<T>) source.then(new FusedResolver(stages, 0));
+	}
+
+	private static final class Stage {
+		final DirectResolver<Object, Object> resolver;
+		final Stage prev;
+
+		@SuppressWarnings("unchecked")
+		Stage(DirectResolver<?, ?> resolver, Stage prev) {
+			this.resolver = (DirectResolver<Object, Object>) resolver;
+			this.prev = prev;
+		}
+	}
+
+	/**
+	 * 合并之后的Resolver, 依次执行每一个处理过程<br>
+	 * 中途返回Thenable时, 剩余的处理过程将在该Thenable完成后继续执行
+	 */
+	private static final class FusedResolver implements DirectResolver<Object, Object> {
+		private final DirectResolver<Object, Object>[] stages;
+		private final int from;
+
+		FusedResolver(DirectResolver<Object, Object>[] stages, int from) {
+			this.stages = stages;
+			this.from = from;
+		}
+
+		@Override
+		public Object resolve(Object newValue) {
+			return run(newValue, null);
+		}
+
+		@Override
+		public Object reject(Exception exception) {
+			return run(null, exception);
+		}
+
+		@SuppressWarnings("unchecked")
+		private Object run(Object value, Exception error) {
+			for (int i = from; i < stages.length; i++) {
+				if (value instanceof Thenable) {
+					return ((Thenable<Object>) value).then(new FusedResolver(stages, i));
+				}
+				try {
+					value = error == null ? stages[i].resolve(value) : stages[i].reject(error);
+					error = null;
+				} catch (Exception e) {
+					value = null;
+					error = Promise.unwrapExecute(e);
+				}
+			}
+			if (error != null) {
+				throw Promise.newException(error);
+			}
+			return value;
+		}
+	}
+}
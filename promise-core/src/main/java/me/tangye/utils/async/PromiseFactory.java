@@ -0,0 +1,109 @@
+package me.tangye.utils.async;
+
+import me.tangye.utils.async.resolver.PromiseDeferred;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ *
+ * 具体需要重复做的过程最终封装成一个 Promise对象,
+ * {@link RetryPolicy} 会使用Promise对象监听结果是否失败, 如果失败则按照策略重新构造
+ * @see #make(RetryPolicy, PromiseScheduler)
+ */
+public abstract class PromiseFactory<T> implements Promise.Function<T> {
+
+    /**
+     * 构造一个异步过程
+     * @param deferred 可以传入一个外部的deferred对象
+     * @return 构造异步过程的Promise
+     */
+    public final Promise<T> make(PromiseDeferred<T> deferred) {
+        if (!deferred.done()) {
+            try {
+                run(deferred);
+            } catch (Exception e) {
+                deferred.reject(e);
+            }
+            // run(deferred); // 到底需不需要try catch
+        }
+        return deferred.promise();
+    }
+
+    /**
+     * 构造一个异步过程
+     * @return 构造异步过程的Promise
+     */
+    public final Promise<T> make() {
+        PromiseDeferred<T> deferred = PromiseDeferred.make();
+        return make(deferred);
+    }
+
+    /**
+     * 构造一个异步过程
+     * @param scheduler, 返回的promise所在的调度器
+     * @return 构造异步过程的Promise
+     */
+    public final Promise<T> make(PromiseScheduler scheduler) {
+        PromiseDeferred<T> deferred = PromiseDeferred.make(scheduler);
+        return make(deferred);
+    }
+
+    /**
+     * 构造一个延迟执行的异步过程, 在当前线程的调度器上运行
+     * @return 构造异步过程的Promise
+     * @throws IllegalStateException 当前线程没有调度器时抛出
+     * @see Promise#lazy(Promise.DirectFunction)
+     */
+    public final Promise<T> lazy() {
+        return lazy(Promise.myScheduler());
+    }
+
+    /**
+     * 构造一个延迟执行的异步过程, 直到第一次then/await/clone时才执行run, 没有消费者时不产生任何任务
+     * @param scheduler, 返回的promise所在的调度器
+     * @return 构造异步过程的Promise
+     * @see Promise#lazy(Promise.DirectFunction, PromiseScheduler)
+     */
+    public final Promise<T> lazy(PromiseScheduler scheduler) {
+        return Promise.lazy(new Promise.DirectFunction<T>() {
+            @Override
+            public void run(Promise.Locker<T> locker) {
+                PromiseFactory.this.run(locker);
+            }
+        }, scheduler);
+    }
+
+    /**
+     * 按照重试策略构造一个异步过程, 失败时将重新构造, 直到成功或者策略放弃, 在当前线程的调度器上运行
+     * @param policy 重试策略
+     * @return 最终结果的Promise
+     * @throws IllegalStateException 当前线程没有调度器时抛出
+     */
+    public final Promise<T> make(RetryPolicy policy) {
+        return make(policy, Promise.myScheduler());
+    }
+
+    /**
+     * 按照重试策略构造一个异步过程, 失败时将重新构造, 直到成功或者策略放弃
+     * @param policy 重试策略
+     * @param scheduler, 返回的promise以及每次尝试所在的调度器
+     * @return 最终结果的Promise
+     */
+    public final Promise<T> make(RetryPolicy policy, PromiseScheduler scheduler) {
+        return policy.run(this, scheduler);
+    }
+
+    /**
+     * 通过一个DirectFunction构造一个PromiseFactory
+     * @param function 需要重复执行的过程
+     * @param <T> 生成的Promise的类型
+     * @return 一个实现好的PromiseFactory
+     */
+    public static <T> PromiseFactory<T> create(final Promise.DirectFunction<T> function) {
+        return new PromiseFactory<T>() {
+            @Override
+            public void run(Promise.Locker<T> locker) {
+                function.run(locker);
+            }
+        };
+    }
+}
@@ -0,0 +1,734 @@
+package me.tangye.utils.async;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.resolver.PromiseResolver;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 多值的异步流, 元素被逐个产生和消费, 而不是像 {@link Promise#series(java.util.Collection)} 那样在内存中收集所有结果<br>
+ * PromiseStream是冷的, 每一次订阅都从头开始拉取元素; 只有在订阅者请求时才会拉取下一个元素,
+ * 并且上一个元素完成之前不会拉取下一个, 因此处理任意长的流只需要常量的内存<br>
+ * 所有的拉取与处理过程都在流的调度器上执行; 流中的元素不能为null<br>
+ * {@link Subscriber} 与 {@link Subscription} 的约定与java 9的Flow一致,
+ * 需要Flow.Publisher时使用promise-flow模块中的FlowAdapters转换
+ * <pre>
+ *     PromiseStream.create(new PromiseStream.Source&lt;Page&gt;() {
+ *         public Promise&lt;Page&gt; next() {
+ *             return cursor.hasMore() ? api.fetchPage(cursor) : null;
+ *         }
+ *     }, scheduler)
+ *     .filter(notEmpty)
+ *     .flatMap(toRows)
+ *     .subscribe(subscriber);
+ * </pre>
+ *
+ * @author tangye
+ *
+ * @param <T> 元素类型
+ */
+public final class PromiseStream<T> {
+
+	/* the value of a cursor promise once the stream is exhausted */
+	private static final Object END = new Object();
+
+	private final PromiseScheduler scheduler;
+	private final Opener opener;
+
+	/* shared by every cursor of this stream */
+	private final Promise<Object> end;
+
+	private PromiseStream(PromiseScheduler scheduler, Opener opener) {
+		if (scheduler == null) {
+			throw new IllegalArgumentException("scheduler should not be null");
+		}
+		this.scheduler = scheduler;
+		this.opener = opener;
+		this.end = Promise.resolve(END, scheduler);
+	}
+
+	/**
+	 * 通过一个Source构造一个流
+	 * @param source 元素的来源
+	 * @param scheduler 流所在的调度器
+	 * @return 新的流
+	 */
+	public static <T> PromiseStream<T> create(final Source<? extends T> source, PromiseScheduler scheduler) {
+		if (source == null) {
+			throw new IllegalArgumentException("source should not be null");
+		}
+		return new PromiseStream<>(scheduler, new Opener() {
+			@Override
+			public Cursor open(final PromiseStream<?> stream) {
+				return new Cursor() {
+					@Override
+					public Promise<Object> next() {
+						Promise<?> p = source.next();
+						return p == null ? stream.end : stream.adopt(p);
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * 通过一组已知的元素构造一个流, 每次订阅都重新遍历
+	 * @param items 任意元素
+	 * @param scheduler 流所在的调度器
+	 * @return 新的流
+	 */
+	public static <T> PromiseStream<T> of(final Iterable<? extends T> items, PromiseScheduler scheduler) {
+		if (items == null) {
+			throw new IllegalArgumentException("items should not be null");
+		}
+		return new PromiseStream<>(scheduler, new Opener() {
+			@Override
+			public Cursor open(final PromiseStream<?> stream) {
+				final Iterator<? extends T> it = items.iterator();
+				return new Cursor() {
+					@Override
+					public Promise<Object> next() {
+						return it.hasNext() ? Promise.<Object>resolve(it.next(), stream.scheduler) : stream.end;
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * 将一个集合结果的Promise转换为流, 在该Promise的调度器上运行
+	 * @param promise 任意集合结果的Promise, 比如 {@link Promise#allOf(List)} 的结果
+	 * @return 新的流, promise失败时流以该异常结束
+	 * @see #toList()
+	 */
+	public static <T> PromiseStream<T> from(final Promise<? extends Iterable<? extends T>> promise) {
+		return new PromiseStream<>(promise.getScheduler(), new Opener() {
+			@Override
+			public Cursor open(final PromiseStream<?> stream) {
+				return new Cursor() {
+					Iterator<? extends T> it;
+
+					@Override
+					public Promise<Object> next() {
+						if (it != null) {
+							return it.hasNext() ? Promise.<Object>resolve(it.next(), stream.scheduler) : stream.end;
+						}
+						return promise.then(new PromiseResolver<Iterable<? extends T>, Object>() {
+							@Override
+							public Promise<Object> resolve(Iterable<? extends T> items) {
+								it = items.iterator();
+								return next();
+							}
+
+							@Override
+							public Promise<Object> reject(Exception exception) {
+								throw Promise.newException(exception);
+							}
+						});
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * 获取流所在的调度器
+	 * @return 调度器
+	 */
+	public PromiseScheduler getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * 异步地转换每一个元素<br>
+	 * 上游的元素失败时调用resolver.reject, 其结果作为替代的元素, 流可以继续;
+	 * 使用 {@link me.tangye.utils.async.resolver.SimplePromiseResolver} 时异常直接向下传递
+	 * @param resolver 转换过程
+	 * @param <R> 转换后的元素类型
+	 * @return 新的流
+	 */
+	public <R> PromiseStream<R> map(final PromiseResolver<? super T, ? extends R> resolver) {
+		if (resolver == null) {
+			throw new IllegalArgumentException("resolver should not be null");
+		}
+		return new PromiseStream<>(scheduler, new Opener() {
+			@Override
+			public Cursor open(final PromiseStream<?> stream) {
+				final Cursor upstream = opener.open(PromiseStream.this);
+				final PromiseResolver<Object, Object> step = new PromiseResolver<Object, Object>() {
+					@Override
+					@SuppressWarnings("unchecked")
+					public Promise<Object> resolve(Object newValue) {
+						return newValue == END ? stream.end : (Promise<Object>) resolver.resolve((T) newValue);
+					}
+
+					@Override
+					@SuppressWarnings("unchecked")
+					public Promise<Object> reject(Exception exception) {
+						return (Promise<Object>) resolver.reject(exception);
+					}
+				};
+				return new Cursor() {
+					@Override
+					public Promise<Object> next() {
+						return upstream.next().then(step);
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * 异步地过滤元素, 只保留predicate结果为true的元素, 连续被过滤的元素不会累积中间Promise<br>
+	 * predicate返回null或者结果为null时, 等同于false; 上游的异常直接向下传递, 不会调用predicate.reject
+	 * @param predicate 过滤条件
+	 * @return 新的流
+	 */
+	public PromiseStream<T> filter(final PromiseResolver<? super T, Boolean> predicate) {
+		if (predicate == null) {
+			throw new IllegalArgumentException("predicate should not be null");
+		}
+		return new PromiseStream<>(scheduler, new Opener() {
+			@Override
+			public Cursor open(final PromiseStream<?> stream) {
+				final Cursor upstream = opener.open(PromiseStream.this);
+				return new Cursor() {
+					@Override
+					public Promise<Object> next() {
+						return Promise.make(new Promise.DirectFunction<Object>() {
+							@Override
+							public void run(Promise.Locker<Object> locker) {
+								new Filter<>(upstream, predicate, locker).pull();
+							}
+						}, stream.scheduler);
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * 将每一个元素异步地转换为一个流, 并按顺序依次展开<br>
+	 * 内部的流在当前流的调度器上被消费, 上一个内部的流结束之后才会拉取下一个上游元素;
+	 * 上游的元素失败时调用resolver.reject, 其结果作为替代的流, resolver的结果为null时表示空的流
+	 * @param resolver 转换过程
+	 * @param <R> 展开后的元素类型
+	 * @return 新的流
+	 */
+	public <R> PromiseStream<R> flatMap(final PromiseResolver<? super T, ? extends PromiseStream<? extends R>> resolver) {
+		if (resolver == null) {
+			throw new IllegalArgumentException("resolver should not be null");
+		}
+		return new PromiseStream<>(scheduler, new Opener() {
+			@Override
+			public Cursor open(final PromiseStream<?> stream) {
+				final Cursor upstream = opener.open(PromiseStream.this);
+				final PromiseResolver<Object, Object> step = new PromiseResolver<Object, Object>() {
+					@Override
+					@SuppressWarnings("unchecked")
+					public Promise<Object> resolve(Object newValue) {
+						return newValue == END ? stream.end : (Promise<Object>) (Promise<?>) resolver.resolve((T) newValue);
+					}
+
+					@Override
+					@SuppressWarnings("unchecked")
+					public Promise<Object> reject(Exception exception) {
+						return (Promise<Object>) (Promise<?>) resolver.reject(exception);
+					}
+				};
+				final Flatten flatten = new Flatten(stream, upstream, step);
+				return new Cursor() {
+					@Override
+					public Promise<Object> next() {
+						return Promise.make(new Promise.DirectFunction<Object>() {
+							@Override
+							public void run(Promise.Locker<Object> locker) {
+								flatten.pull(locker);
+							}
+						}, stream.scheduler);
+					}
+				};
+			}
+		});
+	}
+
+	/**
+	 * 订阅当前流, 从头开始拉取元素<br>
+	 * 只有在订阅者request时才会拉取元素, 订阅者的所有回调都在流的调度器上执行
+	 * @param subscriber 订阅者
+	 */
+	public void subscribe(Subscriber<? super T> subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException("subscriber should not be null");
+		}
+		subscriber.onSubscribe(new StreamSubscription<>(this, subscriber));
+	}
+
+	/**
+	 * 收集流中所有的元素
+	 * @return 所有元素的Promise, 取消该Promise时停止拉取
+	 * @see #from(Promise)
+	 */
+	public Promise<List<T>> toList() {
+		return Promise.make(new Promise.DirectFunction<List<T>>() {
+			@Override
+			public void run(final Promise.Locker<List<T>> locker) {
+				subscribe(new Subscriber<T>() {
+					final List<T> list = new ArrayList<>();
+					Subscription subscription;
+
+					@Override
+					public void onSubscribe(Subscription s) {
+						subscription = s;
+						s.request(Long.MAX_VALUE);
+					}
+
+					@Override
+					public void onNext(T item) {
+						if (locker.isCancelled()) {
+							subscription.cancel();
+						} else {
+							list.add(item);
+						}
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						locker.reject(toException(throwable));
+					}
+
+					@Override
+					public void onComplete() {
+						locker.resolve(list);
+					}
+				});
+			}
+		}, scheduler);
+	}
+
+	/**
+	 * 依次异步地处理每一个元素, 上一个元素处理完成之后才会拉取下一个
+	 * @param action 处理过程, 失败时停止拉取
+	 * @return 所有元素处理完成的Promise, 取消该Promise时停止拉取
+	 */
+	public Promise<Void> forEach(final PromiseResolver<? super T, ?> action) {
+		if (action == null) {
+			throw new IllegalArgumentException("action should not be null");
+		}
+		return Promise.make(new Promise.DirectFunction<Void>() {
+			@Override
+			public void run(final Promise.Locker<Void> locker) {
+				subscribe(new Subscriber<T>() {
+					Subscription subscription;
+
+					@Override
+					public void onSubscribe(Subscription s) {
+						subscription = s;
+						s.request(1);
+					}
+
+					@Override
+					public void onNext(T item) {
+						if (locker.isCancelled()) {
+							subscription.cancel();
+							return;
+						}
+						Promise<?> done = action.resolve(item);
+						if (done == null) {
+							subscription.request(1);
+							return;
+						}
+						done.then(new DirectResolver<Object, Void>() {
+							@Override
+							public Void resolve(Object newValue) {
+								subscription.request(1);
+								return null;
+							}
+
+							@Override
+							public Void reject(Exception exception) {
+								subscription.cancel();
+								locker.reject(exception);
+								return null;
+							}
+						});
+					}
+
+					@Override
+					public void onError(Throwable throwable) {
+						locker.reject(toException(throwable));
+					}
+
+					@Override
+					public void onComplete() {
+						locker.resolve();
+					}
+				});
+			}
+		}, scheduler);
+	}
+
+	/* every cursor promise settles on the scheduler of the stream */
+	@SuppressWarnings("unchecked")
+	private Promise<Object> adopt(Promise<?> p) {
+		return (Promise<Object>) (p.getScheduler() == scheduler ? p : p.clone(scheduler));
+	}
+
+	private static Exception toException(Throwable t) {
+		return t instanceof Exception ? (Exception) t : new ExecuteException(t);
+	}
+
+	/**
+	 * 流中元素的来源
+	 * @param <T> 元素类型
+	 */
+	public interface Source<T> {
+		/**
+		 * 产生下一个元素, 在流的调度器上调用, 上一个元素完成之前不会再次调用
+		 * @return 下一个元素的Promise, 没有更多元素时返回null
+		 */
+		Promise<T> next();
+	}
+
+	/**
+	 * 流的订阅者, 与Flow.Subscriber的约定相同, 所有回调都在流的调度器上执行
+	 * @param <T> 元素类型
+	 */
+	public interface Subscriber<T> {
+		/**
+		 * 订阅时调用, 在此之后通过subscription请求元素
+		 * @param subscription 本次订阅
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * 收到一个请求的元素
+		 * @param item 元素, 不为null
+		 */
+		void onNext(T item);
+
+		/**
+		 * 流以异常结束, 之后不会再有回调
+		 * @param throwable 异常
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * 流正常结束, 之后不会再有回调
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * 一次订阅, 与Flow.Subscription的约定相同, 可以在任意线程调用
+	 */
+	public interface Subscription {
+		/**
+		 * 再请求n个元素
+		 * @param n 请求的数量, 不大于0时流以IllegalArgumentException结束
+		 */
+		void request(long n);
+
+		/**
+		 * 取消订阅, 停止拉取并取消正在等待的元素
+		 */
+		void cancel();
+	}
+
+	/* opens one pass over a stream */
+	private interface Opener {
+		Cursor open(PromiseStream<?> stream);
+	}
+
+	/* one pass over a stream, next is only called after the previous promise settled */
+	private interface Cursor {
+		/* settles with an element or END, on the scheduler of the stream */
+		Promise<Object> next();
+	}
+
+	/* pulls the upstream until an element passes, without chaining the skipped ones */
+	private static final class Filter<T> {
+		final Cursor upstream;
+		final PromiseResolver<? super T, Boolean> predicate;
+		final Promise.Locker<Object> locker;
+
+		Filter(Cursor upstream, PromiseResolver<? super T, Boolean> predicate, Promise.Locker<Object> locker) {
+			this.upstream = upstream;
+			this.predicate = predicate;
+			this.locker = locker;
+		}
+
+		void pull() {
+			if (locker.isCancelled()) {
+				return;
+			}
+			upstream.next().then(new DirectResolver<Object, Void>() {
+				@Override
+				@SuppressWarnings("unchecked")
+				public Void resolve(Object newValue) {
+					if (newValue == END) {
+						locker.resolve(END);
+					} else {
+						test((T) newValue);
+					}
+					return null;
+				}
+
+				@Override
+				public Void reject(Exception exception) {
+					locker.reject(exception);
+					return null;
+				}
+			});
+		}
+
+		private void test(final T element) {
+			Promise<Boolean> keep;
+			try {
+				keep = predicate.resolve(element);
+			} catch (Exception e) {
+				locker.reject(e);
+				return;
+			}
+			if (keep == null) {
+				// like a false result, the same as a null stream in flatMap
+				pull();
+				return;
+			}
+			keep.then(new DirectResolver<Boolean, Void>() {
+				@Override
+				public Void resolve(Boolean keep) {
+					if (Boolean.TRUE.equals(keep)) {
+						locker.resolve(element);
+					} else {
+						pull();
+					}
+					return null;
+				}
+
+				@Override
+				public Void reject(Exception exception) {
+					locker.reject(exception);
+					return null;
+				}
+			});
+		}
+	}
+
+	/* the state of a flatMap cursor, only accessed on the scheduler */
+	private static final class Flatten {
+		final PromiseStream<?> stream;
+		final Cursor upstream;
+		final PromiseResolver<Object, Object> step;
+		Cursor inner;
+
+		Flatten(PromiseStream<?> stream, Cursor upstream, PromiseResolver<Object, Object> step) {
+			this.stream = stream;
+			this.upstream = upstream;
+			this.step = step;
+		}
+
+		void pull(final Promise.Locker<Object> locker) {
+			if (locker.isCancelled()) {
+				return;
+			}
+			if (inner != null) {
+				stream.adopt(inner.next()).then(new DirectResolver<Object, Void>() {
+					@Override
+					public Void resolve(Object newValue) {
+						if (newValue == END) {
+							inner = null;
+							pull(locker);
+						} else {
+							locker.resolve(newValue);
+						}
+						return null;
+					}
+
+					@Override
+					public Void reject(Exception exception) {
+						locker.reject(exception);
+						return null;
+					}
+				});
+				return;
+			}
+			upstream.next().then(step).then(new DirectResolver<Object, Void>() {
+				@Override
+				public Void resolve(Object newValue) {
+					if (newValue == END) {
+						locker.resolve(END);
+						return null;
+					}
+					if (newValue != null) {
+						PromiseStream<?> s = (PromiseStream<?>) newValue;
+						inner = s.opener.open(s);
+					}
+					pull(locker);
+					return null;
+				}
+
+				@Override
+				public Void reject(Exception exception) {
+					locker.reject(exception);
+					return null;
+				}
+			});
+		}
+	}
+
+	/* a subscription, every field but demand and cancelled is only accessed on the scheduler */
+	private static final class StreamSubscription<T> implements Subscription, DirectResolver<Object, Void>, Runnable {
+		final PromiseStream<T> stream;
+		final Subscriber<? super T> subscriber;
+		final AtomicLong demand = new AtomicLong();
+		volatile boolean cancelled;
+		/* an illegal request, signalled by the next drain before anything else */
+		volatile Exception pendingError;
+
+		Cursor cursor;
+		Promise<Void> inflight;
+		boolean waiting;
+		boolean draining;
+		boolean done;
+
+		StreamSubscription(PromiseStream<T> stream, Subscriber<? super T> subscriber) {
+			this.stream = stream;
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void request(final long n) {
+			if (n <= 0) {
+				// a drain already queued must not see a cancel first, or onError would be lost
+				if (!cancelled && pendingError == null) {
+					pendingError = new IllegalArgumentException("request should be positive, but was " + n);
+				}
+				Promise.runForScheduler(this, stream.scheduler);
+				return;
+			}
+			for (;;) {
+				long d = demand.get();
+				long next = d + n < 0 ? Long.MAX_VALUE : d + n;
+				if (demand.compareAndSet(d, next)) {
+					break;
+				}
+			}
+			Promise.runForScheduler(this, stream.scheduler);
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			Promise.runForScheduler(this, stream.scheduler);
+		}
+
+		@Override
+		public void run() {
+			drain();
+		}
+
+		private void drain() {
+			if (draining) {
+				// the loop below picks up whatever changed
+				return;
+			}
+			draining = true;
+			try {
+				for (;;) {
+					Exception error = pendingError;
+					if (error != null) {
+						pendingError = null;
+						cancelled = true;
+						fail(error);
+					}
+					if (cancelled) {
+						done = true;
+						Promise<Void> p = inflight;
+						inflight = null;
+						if (p != null) {
+							p.cancel();
+						}
+						return;
+					}
+					if (done || waiting || demand.get() == 0) {
+						return;
+					}
+					if (cursor == null) {
+						cursor = stream.opener.open(stream);
+					}
+					waiting = true;
+					Promise<Void> p;
+					try {
+						p = cursor.next().then(this);
+					} catch (Exception e) {
+						waiting = false;
+						fail(e);
+						return;
+					}
+					// the continuation may already have run inline
+					if (waiting) {
+						inflight = p;
+					}
+				}
+			} finally {
+				draining = false;
+			}
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public Void resolve(Object newValue) {
+			waiting = false;
+			inflight = null;
+			if (done || cancelled) {
+				return null;
+			}
+			if (newValue == END) {
+				done = true;
+				subscriber.onComplete();
+				return null;
+			}
+			if (newValue == null) {
+				fail(new NullPointerException("stream element should not be null"));
+				return null;
+			}
+			for (;;) {
+				long d = demand.get();
+				if (d == Long.MAX_VALUE || demand.compareAndSet(d, d - 1)) {
+					break;
+				}
+			}
+			try {
+				subscriber.onNext((T) newValue);
+			} catch (RuntimeException e) {
+				// a throwing subscriber is considered cancelled
+				cancelled = true;
+				throw e;
+			}
+			drain();
+			return null;
+		}
+
+		@Override
+		public Void reject(Exception exception) {
+			waiting = false;
+			inflight = null;
+			if (!cancelled) {
+				fail(exception);
+			}
+			return null;
+		}
+
+		private void fail(Exception e) {
+			if (!done) {
+				done = true;
+				subscriber.onError(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package me.tangye.utils.async;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶形式的重试预算, 可以被多个 {@link RetryPolicy} 共享<br>
+ * 每次重试消耗一个令牌, 令牌按固定速率补充, 桶空时不再重试而是直接失败,
+ * 这样下游整体故障时重试不会成倍地放大负载
+ *
+ * @author tangye
+ * @see RetryPolicy#budget(RetryBudget)
+ */
+public final class RetryBudget {
+
+	private final double capacity;
+	private final double tokensPerNano;
+
+	/* guarded by this */
+	private double tokens;
+	private long lastRefill;
+
+	/**
+	 * 构造一个重试预算, 初始时桶是满的
+	 * @param capacity 桶的容量, 即允许的最大突发重试次数
+	 * @param tokensPerSecond 每秒补充的令牌数, 即长期允许的重试速率
+	 */
+	public RetryBudget(int capacity, double tokensPerSecond) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity should be greater than 0");
+		}
+		if (tokensPerSecond < 0) {
+			throw new IllegalArgumentException("tokensPerSecond should not be negative");
+		}
+		this.capacity = capacity;
+		this.tokensPerNano = tokensPerSecond / TimeUnit.SECONDS.toNanos(1);
+		this.tokens = capacity;
+		this.lastRefill = System.nanoTime();
+	}
+
+	/**
+	 * 尝试取得一次重试的令牌
+	 * @return 取得时返回true, 预算耗尽时返回false
+	 */
+	public synchronized boolean tryAcquire() {
+		refill();
+		if (tokens < 1) {
+			return false;
+		}
+		tokens -= 1;
+		return true;
+	}
+
+	/**
+	 * 当前剩余的令牌数
+	 * @return 令牌数
+	 */
+	public synchronized double available() {
+		refill();
+		return tokens;
+	}
+
+	private void refill() {
+		long now = System.nanoTime();
+		tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+		lastRefill = now;
+	}
+}
@@ -0,0 +1,291 @@
+package me.tangye.utils.async;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 重试策略, 使用 {@link PromiseFactory} 反复构造异步过程, 直到成功或者放弃<br>
+ * RetryPolicy是不可变的, 每个设置方法都返回一个新的策略, 因此可以安全地共享
+ * <pre>
+ *     RetryPolicy policy = RetryPolicy.exponential(100, 5000)
+ *             .withJitter()
+ *             .maxAttempts(5)
+ *             .deadline(20000)
+ *             .retryOn(IOException.class)
+ *             .budget(sharedBudget);
+ *     Promise&lt;String&gt; p = factory.make(policy, scheduler);
+ * </pre>
+ * 重试之间的等待通过 {@link Promise.Locker#postDelayed(Runnable, long)} 完成,
+ * 返回的Promise被取消时, 正在进行的尝试也被取消, 等待中的重试将被移除, 不会再构造新的异步过程
+ *
+ * @author tangye
+ * @see PromiseFactory#make(RetryPolicy, PromiseScheduler)
+ */
+public final class RetryPolicy {
+
+	private static final Random RANDOM = new Random();
+
+	private final long baseDelay;
+	private final long maxDelay;
+	private final boolean jitter;
+	private final int maxAttempts;
+	private final long deadline;
+	private final Class<? extends Exception>[] retryOn;
+	private final Predicate predicate;
+	private final RetryBudget budget;
+
+	private RetryPolicy(long baseDelay, long maxDelay) {
+		this(baseDelay, maxDelay, false, 3, 0, exceptionTypes(0), null, null);
+	}
+
+	private RetryPolicy(long baseDelay, long maxDelay, boolean jitter, int maxAttempts,
+						long deadline, Class<? extends Exception>[] retryOn,
+						Predicate predicate, RetryBudget budget) {
+		this.baseDelay = baseDelay;
+		this.maxDelay = maxDelay;
+		this.jitter = jitter;
+		this.maxAttempts = maxAttempts;
+		this.deadline = deadline;
+		this.retryOn = retryOn;
+		this.predicate = predicate;
+		this.budget = budget;
+	}
+
+	/**
+	 * 指数退避的重试策略, 第n次重试前等待 baseDelay * 2^(n-1), 不超过maxDelay<br>
+	 * 默认最多尝试3次, 除了 {@link CancellationException} 以外的异常都会重试
+	 * @param baseDelay 第一次重试前的等待时间, 毫秒
+	 * @param maxDelay 最大等待时间, 毫秒
+	 * @return 重试策略
+	 */
+	public static RetryPolicy exponential(long baseDelay, long maxDelay) {
+		if (baseDelay < 0 || maxDelay < baseDelay) {
+			throw new IllegalArgumentException("should be 0 <= baseDelay <= maxDelay");
+		}
+		return new RetryPolicy(baseDelay, maxDelay);
+	}
+
+	/**
+	 * 使用decorrelated jitter代替固定的指数退避, 等待时间在 [baseDelay, 上一次等待时间 * 3] 中随机选取,
+	 * 不超过maxDelay, 避免大量客户端在同一时刻重试
+	 * @return 新的重试策略
+	 */
+	public RetryPolicy withJitter() {
+		return new RetryPolicy(baseDelay, maxDelay, true, maxAttempts, deadline, retryOn, predicate, budget);
+	}
+
+	/**
+	 * 最多尝试的次数, 包括第一次
+	 * @param maxAttempts 必须大于0
+	 * @return 新的重试策略
+	 */
+	public RetryPolicy maxAttempts(int maxAttempts) {
+		if (maxAttempts < 1) {
+			throw new IllegalArgumentException("maxAttempts should be greater than 0");
+		}
+		return new RetryPolicy(baseDelay, maxDelay, jitter, maxAttempts, deadline, retryOn, predicate, budget);
+	}
+
+	/**
+	 * 从第一次尝试开始计算的总期限, 超过期限后不再重试, 正在进行的尝试将以 {@link java.util.concurrent.TimeoutException} 失败
+	 * @param deadline 期限, 毫秒, 0表示不限制
+	 * @return 新的重试策略
+	 */
+	public RetryPolicy deadline(long deadline) {
+		if (deadline < 0) {
+			throw new IllegalArgumentException("deadline should not be negative");
+		}
+		return new RetryPolicy(baseDelay, maxDelay, jitter, maxAttempts, deadline, retryOn, predicate, budget);
+	}
+
+	/**
+	 * 只对指定类型的异常重试, 其他异常直接失败
+	 * @param types 需要重试的异常类型, 包括子类
+	 * @return 新的重试策略
+	 */
+	@SafeVarargs
+	public final RetryPolicy retryOn(Class<? extends Exception>... types) {
+		// copied element by element, the varargs array itself never escapes
+		Class<? extends Exception>[] copy = exceptionTypes(types.length);
+		for (int i = 0; i < types.length; i++) {
+			copy[i] = types[i];
+		}
+		return new RetryPolicy(baseDelay, maxDelay, jitter, maxAttempts, deadline, copy, predicate, budget);
+	}
+
+	/**
+	 * 使用自定义的条件判断是否重试, 与 {@link #retryOn(Class[])} 同时设置时, 两者都满足才重试
+	 * @param predicate 重试条件
+	 * @return 新的重试策略
+	 */
+	public RetryPolicy retryIf(Predicate predicate) {
+		return new RetryPolicy(baseDelay, maxDelay, jitter, maxAttempts, deadline, retryOn, predicate, budget);
+	}
+
+	/**
+	 * 设置共享的重试预算, 每次重试消耗一个令牌, 预算耗尽时直接失败
+	 * @param budget 重试预算, 为null时不限制
+	 * @return 新的重试策略
+	 */
+	public RetryPolicy budget(RetryBudget budget) {
+		return new RetryPolicy(baseDelay, maxDelay, jitter, maxAttempts, deadline, retryOn, predicate, budget);
+	}
+
+	/**
+	 * 按照当前策略执行异步过程
+	 * @param factory 异步过程的工厂, 每次尝试都会构造一个新的Promise
+	 * @param scheduler 返回的Promise所在的调度器
+	 * @param <T> 结果类型
+	 * @return 最终结果的Promise, 放弃时以最后一次的异常失败
+	 */
+	public <T> Promise<T> run(final PromiseFactory<T> factory, final PromiseScheduler scheduler) {
+		return Promise.make(new Promise.DirectFunction<T>() {
+			@Override
+			public void run(Promise.Locker<T> locker) {
+				final Retry<T> retry = new Retry<>(RetryPolicy.this, factory, scheduler, locker);
+				locker.onCancel(new Runnable() {
+					@Override
+					public void run() {
+						retry.cancel();
+					}
+				});
+				retry.attempt();
+			}
+		}, scheduler);
+	}
+
+	/* a generic array can not be created directly, every element is an exception type */
+	@SuppressWarnings("unchecked")
+	private static Class<? extends Exception>[] exceptionTypes(int size) {
+		return (Class<? extends Exception>[]) new Class<?>[size];
+	}
+
+	/* whether a failure of the given attempt, counted from 1, may be retried at all */
+	boolean retryable(Exception e, int attempt) {
+		if (attempt >= maxAttempts || e instanceof CancellationException) {
+			return false;
+		}
+		if (retryOn.length > 0) {
+			boolean matched = false;
+			for (Class<? extends Exception> type : retryOn) {
+				if (type.isInstance(e)) {
+					matched = true;
+					break;
+				}
+			}
+			if (!matched) {
+				return false;
+			}
+		}
+		return predicate == null || predicate.shouldRetry(e, attempt);
+	}
+
+	/* delay before the next attempt, previous is the last delay or 0 */
+	long delay(int attempt, long previous) {
+		if (jitter) {
+			long upper = Math.min(maxDelay, Math.max(baseDelay, previous * 3));
+			return baseDelay + (long) (RANDOM.nextDouble() * (upper - baseDelay));
+		}
+		int shift = Math.min(attempt - 1, 62);
+		long delay = baseDelay << shift;
+		return delay < 0 || delay >> shift != baseDelay ? maxDelay : Math.min(maxDelay, delay);
+	}
+
+	/**
+	 * 自定义的重试条件
+	 */
+	public interface Predicate {
+		/**
+		 * @param e 本次尝试的异常
+		 * @param attempt 已经尝试的次数, 从1开始
+		 * @return 需要重试时返回true
+		 */
+		boolean shouldRetry(Exception e, int attempt);
+	}
+
+	/**
+	 * 一次重试的执行过程, 除了cancel以外所有回调都在调度器上执行
+	 */
+	private static final class Retry<T> implements DirectResolver<T, Void>, Runnable {
+		final RetryPolicy policy;
+		final PromiseFactory<T> factory;
+		final PromiseScheduler scheduler;
+		final Promise.Locker<T> locker;
+		final long start = System.nanoTime();
+		int attempts;
+		long lastDelay;
+		/* the consumer of the running attempt, cancelling it releases the attempt */
+		volatile Promise<Void> inflight;
+
+		Retry(RetryPolicy policy, PromiseFactory<T> factory, PromiseScheduler scheduler,
+			  Promise.Locker<T> locker) {
+			this.policy = policy;
+			this.factory = factory;
+			this.scheduler = scheduler;
+			this.locker = locker;
+		}
+
+		void attempt() {
+			if (locker.isCancelled()) {
+				return;
+			}
+			attempts++;
+			Promise<T> p = factory.make(scheduler);
+			if (policy.deadline > 0) {
+				p = p.withTimeout(Math.max(policy.deadline - elapsed(), 0));
+			}
+			Promise<Void> tail = p.then(this);
+			inflight = tail;
+			// cancelled between the check above and publishing the attempt
+			if (locker.isCancelled()) {
+				tail.cancel();
+			}
+		}
+
+		/* the result is cancelled, on any thread */
+		void cancel() {
+			Promise<Void> tail = inflight;
+			if (tail != null) {
+				tail.cancel();
+			}
+		}
+
+		@Override
+		public void run() {
+			attempt();
+		}
+
+		@Override
+		public Void resolve(T newValue) {
+			inflight = null;
+			locker.resolve(newValue);
+			return null;
+		}
+
+		@Override
+		public Void reject(Exception exception) {
+			inflight = null;
+			if (locker.isCancelled() || !policy.retryable(exception, attempts)) {
+				locker.reject(exception);
+				return null;
+			}
+			long delay = policy.delay(attempts, lastDelay);
+			if ((policy.deadline > 0 && elapsed() + delay >= policy.deadline)
+					|| (policy.budget != null && !policy.budget.tryAcquire())) {
+				locker.reject(exception);
+				return null;
+			}
+			lastDelay = delay;
+			locker.postDelayed(this, delay);
+			return null;
+		}
+
+		private long elapsed() {
+			return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		}
+	}
+}
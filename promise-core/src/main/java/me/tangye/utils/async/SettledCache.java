@@ -0,0 +1,29 @@
+package me.tangye.utils.async;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 一个调度器上已经完成的null以及Boolean常量Promise的单例, 每个调度器持有一个<br>
+ * 槽位只有Promise可以读写, 调度器的实现以及使用者无法替换其中的Promise
+ *
+ * @author tangye
+ * @see me.tangye.utils.async.scheduler.PromiseScheduler#settledCache()
+ * @hide
+ */
+public final class SettledCache {
+
+	static final int NULL_SLOT = 0;
+	static final int TRUE_SLOT = 1;
+	static final int FALSE_SLOT = 2;
+
+	private final AtomicReferenceArray<Promise<?>> slots = new AtomicReferenceArray<>(3);
+
+	Promise<?> get(int slot) {
+		return slots.get(slot);
+	}
+
+	/* the first one wins, the canonical promise of a slot never changes */
+	Promise<?> putIfAbsent(int slot, Promise<?> promise) {
+		return slots.compareAndSet(slot, null, promise) ? promise : slots.get(slot);
+	}
+}
@@ -0,0 +1,65 @@
+package me.tangye.utils.async;
+
+/**
+ * 一个Promise的最终结果, 成功时含有value, 失败时含有exception<br>
+ * 由 {@link Promise#allSettled(java.util.List)} 产生
+ *
+ * @author tangye
+ *
+ * @param <T> 成功时的数据类型
+ */
+public final class Settlement<T> {
+
+	private final T value;
+	private final Exception exception;
+
+	private Settlement(T value, Exception exception) {
+		this.value = value;
+		this.exception = exception;
+	}
+
+	static <T> Settlement<T> fulfilled(T value) {
+		return new Settlement<>(value, null);
+	}
+
+	static <T> Settlement<T> rejected(Exception exception) {
+		return new Settlement<>(null, exception);
+	}
+
+	/**
+	 * 是否成功
+	 * @return 成功时返回true
+	 */
+	public boolean isFulfilled() {
+		return exception == null;
+	}
+
+	/**
+	 * 是否失败
+	 * @return 失败时返回true
+	 */
+	public boolean isRejected() {
+		return exception != null;
+	}
+
+	/**
+	 * 成功时的结果
+	 * @return 结果, 失败时为null
+	 */
+	public T getValue() {
+		return value;
+	}
+
+	/**
+	 * 失败时的异常
+	 * @return 异常, 成功时为null
+	 */
+	public Exception getException() {
+		return exception;
+	}
+
+	@Override
+	public String toString() {
+		return isFulfilled() ? "Fulfilled(" + value + ")" : "Rejected(" + exception + ")";
+	}
+}
@@ -18,7 +18,7 @@ public interface Thenable<D> {
 	 * 
 	 * @param resolver 一个直接处理的解析器，{@link DirectResolver}
 	 * @param <D1> 转化后新的Promise结果返回类型
-	 * @return 返回一个新的Promise，其继承已有的Promise的Runtime Looper
+	 * @return 返回一个新的Promise，其继承已有的Promise的调度器
 	 */
 	<D1> Thenable<D1> then(final DirectResolver<? super D, ? extends D1> resolver);
 
@@ -27,7 +27,7 @@ public interface Thenable<D> {
 	 * 
 	 * @param resolver 一个间接处理的解析器，{@link PromiseResolver}
 	 * @param <D1> 转化后新的Promise结果返回类型
-	 * @return 返回一个新的Promise，其继承已有的Promise的Runtime Looper
+	 * @return 返回一个新的Promise，其继承已有的Promise的调度器
 	 */
 	<D1> Thenable<D1> then(final PromiseResolver<? super D, ? extends D1> resolver);
 
@@ -38,7 +38,8 @@ public interface Thenable<D> {
 	 *     Promise.make(thenable.getThen());
 	 * </code>
 	 * <br>
-	 * 返回的Function, {@link Promise }只会返回 {@link Promise.DirectFunction} 或者 {@link Promise.PromiseFunction}
+	 * 返回的Function, {@link Promise }只会返回 {@link Promise.DirectFunction} 或者 {@link Promise.PromiseFunction}<br>
+	 * 作为Promise的结果时, 该方法以及返回的Function都在该Promise的调度器上执行
 	 * 
 	 * @return Function执行过程
 	 */
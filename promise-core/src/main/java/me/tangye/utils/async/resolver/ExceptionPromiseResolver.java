@@ -1,8 +1,5 @@
 package me.tangye.utils.async.resolver;
 
-import java.lang.SuppressWarnings;
-
-import me.tangye.utils.async.ExecuteException;
 import me.tangye.utils.async.Promise;
 
 /**
@@ -15,6 +12,26 @@ import me.tangye.utils.async.Promise;
  */
 public abstract class ExceptionPromiseResolver<D, E extends Throwable> implements PromiseResolver<D, D> {
 
+	/* checked with isInstance before onCatch */
+	private final Class<?> type;
+
+	/**
+	 * 捕获的异常类型取自子类声明的泛型参数E, 无法确定时捕获所有异常
+	 */
+	protected ExceptionPromiseResolver() {
+		this.type = ExceptionTypes.of(getClass(), ExceptionPromiseResolver.class);
+	}
+
+	/**
+	 * @param type 捕获的异常类型, 其他异常传递到下一次Promise
+	 */
+	protected ExceptionPromiseResolver(Class<E> type) {
+		if (type == null) {
+			throw new IllegalArgumentException("type should not be null");
+		}
+		this.type = type;
+	}
+
 	@Override
 	public final Promise<D> resolve(D newValue) {
 		return Promise.resolveNonPromiseValue(newValue);
@@ -22,12 +39,14 @@ public abstract class ExceptionPromiseResolver<D, E extends Throwable> implement
 
 	@Override
 	public final Promise<D> reject(Exception exception) {
+		if (!type.isInstance(exception)) {
+			// not the expected exception, pass it to the next promise
+			throw Promise.newException(exception);
+		}
 		try {
 			@SuppressWarnings("unchecked")
 			E e = (E) exception;
 			return onCatch(e);
-		} catch(ClassCastException e0) {
-			throw Promise.newException(exception);
 		} catch(Exception e0) {
 			throw Promise.newException(e0);
 		}
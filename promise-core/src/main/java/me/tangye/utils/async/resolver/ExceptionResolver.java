@@ -12,6 +12,26 @@ import me.tangye.utils.async.Promise;
  */
 public abstract class ExceptionResolver<D, E extends Throwable> implements DirectResolver<D, D> {
 
+	/* the exception type to catch, checked for real instead of an erased cast */
+	private final Class<?> type;
+
+	/**
+	 * 捕获的异常类型取自子类声明的泛型参数E, 无法确定时捕获所有异常
+	 */
+	protected ExceptionResolver() {
+		this.type = ExceptionTypes.of(getClass(), ExceptionResolver.class);
+	}
+
+	/**
+	 * @param type 捕获的异常类型, 其他异常传递到下一次Promise
+	 */
+	protected ExceptionResolver(Class<E> type) {
+		if (type == null) {
+			throw new IllegalArgumentException("type should not be null");
+		}
+		this.type = type;
+	}
+
 	@Override
 	public final D resolve(D newValue) {
 		return newValue;
@@ -19,12 +39,14 @@ public abstract class ExceptionResolver<D, E extends Throwable> implements Direc
 
 	@Override
 	public final D reject(Exception exception) {
+		if (!type.isInstance(exception)) {
+			// not the expected exception, pass it to the next promise
+			throw Promise.newException(exception);
+		}
 		try {
 			@SuppressWarnings("unchecked")
 			E e = (E) exception;
 			return onCatch(e);
-		} catch(ClassCastException e0) {
-			throw Promise.newException(exception);
 		} catch(Exception e0) {
 			throw Promise.newException(e0);
 		}
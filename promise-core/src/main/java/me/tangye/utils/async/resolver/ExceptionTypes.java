@@ -0,0 +1,69 @@
+package me.tangye.utils.async.resolver;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 从resolver子类的泛型声明中解析要捕获的异常类型, 结果按resolver类缓存
+ *
+ * @author tangye
+ */
+final class ExceptionTypes {
+
+	private static final ConcurrentHashMap<Class<?>, Class<?>> CACHE = new ConcurrentHashMap<>();
+
+	private ExceptionTypes() {
+	}
+
+	/**
+	 * 获取resolver类对base中第二个类型参数E的实际类型
+	 * @param c resolver的实际类型
+	 * @param base ExceptionResolver或者ExceptionPromiseResolver
+	 * @return 异常类型, 无法确定时返回Throwable, 即捕获所有异常
+	 */
+	static Class<?> of(Class<?> c, Class<?> base) {
+		Class<?> type = CACHE.get(c);
+		if (type == null) {
+			type = resolve(c, base);
+			CACHE.putIfAbsent(c, type);
+		}
+		return type;
+	}
+
+	/* walks up to base, binding the type variables of every superclass on the way */
+	private static Class<?> resolve(Class<?> c, Class<?> base) {
+		Map<TypeVariable<?>, Type> bindings = new HashMap<>();
+		Class<?> k = c;
+		while (k != null && k != base) {
+			Type sup = k.getGenericSuperclass();
+			if (sup instanceof ParameterizedType) {
+				ParameterizedType pt = (ParameterizedType) sup;
+				k = (Class<?>) pt.getRawType();
+				TypeVariable<?>[] vars = k.getTypeParameters();
+				Type[] args = pt.getActualTypeArguments();
+				for (int i = 0; i < vars.length; i++) {
+					Type arg = args[i];
+					if (arg instanceof TypeVariable && bindings.containsKey(arg)) {
+						arg = bindings.get(arg);
+					}
+					bindings.put(vars[i], arg);
+				}
+			} else {
+				k = sup instanceof Class ? (Class<?>) sup : null;
+			}
+		}
+		Type e = k == null ? null : bindings.get(base.getTypeParameters()[1]);
+		if (e instanceof Class) {
+			return (Class<?>) e;
+		}
+		if (e instanceof ParameterizedType) {
+			return (Class<?>) ((ParameterizedType) e).getRawType();
+		}
+		// a raw or still generic subclass, E is unknown
+		return Throwable.class;
+	}
+}
@@ -1,42 +1,40 @@
 package me.tangye.utils.async.resolver;
 
-import android.os.Handler;
-import android.os.Looper;
-
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
 
 /**
  * Created by coffee3689 on 16/8/23. <br>
  * Modified by tangye on 16/8/29. <br>
  * 通过制造一个Deferred对象，创建一个Promise.Locker，同时可以派生Promise<br>
  * PromiseDeferred对象可以单独make出来, 而无需提前定义Function对象用于描述一个执行过程<br>
- * PromiseDeferred对象是一个完整的Locker对象, 扮演Android中的Deferred对象解决器工作, 亦可生成新的Promise
+ * PromiseDeferred对象是一个完整的Locker对象, 扮演调度器上的Deferred对象解决器工作, 亦可生成新的Promise
  * @see me.tangye.utils.async.Promise.Locker
  */
 public class PromiseDeferred<T> extends Promise.Locker<T> {
     private final AtomicBoolean done = new AtomicBoolean(false);
-    private final Handler handler;
+    private final PromiseScheduler scheduler;
     private final Promise<T> internalPromise;
     private Promise.Locker<T> internalLocker;
 
-    public static <D> PromiseDeferred<D> make(Looper looper) {
-        return new PromiseDeferred<>(looper);
+    public static <D> PromiseDeferred<D> make(PromiseScheduler scheduler) {
+        return new PromiseDeferred<>(scheduler);
     }
 
     public static <D> PromiseDeferred<D> make() {
-        return make(Looper.myLooper());
+        return make(PromiseScheduler.current());
     }
 
-    private PromiseDeferred(Looper looper) {
-        handler = new Handler(looper);
+    private PromiseDeferred(PromiseScheduler scheduler) {
+        this.scheduler = scheduler;
         internalPromise = Promise.make(new Promise.DirectFunction<T>() {
             @Override
             public void run(Promise.Locker<T> locker) {
                 internalLocker = locker;
             }
-        }, looper);
+        }, scheduler);
     }
 
     public Promise<T> promise() {
@@ -48,6 +46,15 @@ public class PromiseDeferred<T> extends Promise.Locker<T> {
         return done.get();
     }
 
+    /**
+     * 所有派生的Promise都被取消时, 返回true
+     * @return 是否已经取消
+     */
+    @Override
+    public boolean isCancelled() {
+        return internalPromise.isCancelled();
+    }
+
     @Override
     public Void resolve(final T result) {
         if (done.compareAndSet(false, true)) {
@@ -57,7 +64,7 @@ public class PromiseDeferred<T> extends Promise.Locker<T> {
                     internalLocker.resolve(result);
                 }
             };
-            Promise.runForHandler(r, handler);
+            Promise.runForScheduler(r, scheduler);
         }
         return null;
     }
@@ -71,27 +78,27 @@ public class PromiseDeferred<T> extends Promise.Locker<T> {
                     internalLocker.reject(exception);
                 }
             };
-            Promise.runForHandler(r, handler);
+            Promise.runForScheduler(r, scheduler);
         }
         return null;
     }
 
     @Override
     public void post(Runnable runnable) {
-        if (!done.get()) {
-            handler.post(runnable);
+        if (!done.get() && !isCancelled()) {
+            scheduler.execute(runnable);
         }
     }
 
     @Override
     public void postDelayed(Runnable runnable, long delay) {
-        if (!done.get()) {
-            handler.postDelayed(runnable, delay);
+        if (!done.get() && !isCancelled()) {
+            scheduler.schedule(runnable, delay);
         }
     }
 
     @Override
     public void removeCallbacks(Runnable runnable) {
-        handler.removeCallbacks(runnable);
+        scheduler.cancel(runnable);
     }
 }
@@ -0,0 +1,142 @@
+package me.tangye.utils.async.scheduler;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单线程事件循环调度器, 相当于非android环境中的一个 HandlerThread + Looper<br>
+ * 所有任务在同一个线程上按时间顺序执行
+ *
+ * @author tangye
+ */
+public class EventLoopScheduler extends PromiseScheduler {
+
+	/* guarded by this, ordered by due time then by submit order */
+	private final PriorityQueue<Task> queue = new PriorityQueue<>();
+	private final Thread thread;
+	private long sequence;
+	private boolean shutdown;
+
+	/**
+	 * 构造并启动一个事件循环, 循环线程为daemon线程
+	 * @param name 线程名称
+	 */
+	public EventLoopScheduler(String name) {
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				loop();
+			}
+		}, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public boolean inEventLoop() {
+		return Thread.currentThread() == thread;
+	}
+
+	@Override
+	public void execute(Runnable runnable) {
+		enqueue(runnable, 0);
+	}
+
+	@Override
+	public void schedule(Runnable runnable, long delay) {
+		enqueue(runnable, delay);
+	}
+
+	@Override
+	public synchronized void cancel(Runnable runnable) {
+		Iterator<Task> it = queue.iterator();
+		while (it.hasNext()) {
+			if (it.next().runnable == runnable) {
+				it.remove();
+			}
+		}
+	}
+
+	/**
+	 * 停止事件循环, 未执行的任务将被丢弃
+	 */
+	public synchronized void shutdown() {
+		shutdown = true;
+		queue.clear();
+		notifyAll();
+	}
+
+	/**
+	 * 获取事件循环线程
+	 * @return 循环线程
+	 */
+	public Thread getThread() {
+		return thread;
+	}
+
+	private synchronized void enqueue(Runnable runnable, long delay) {
+		if (runnable == null) {
+			throw new NullPointerException("runnable should not be null");
+		}
+		if (shutdown) {
+			return;
+		}
+		long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delay));
+		queue.add(new Task(runnable, due, sequence++));
+		notifyAll();
+	}
+
+	private synchronized Runnable next() throws InterruptedException {
+		while (!shutdown) {
+			Task task = queue.peek();
+			if (task == null) {
+				wait();
+				continue;
+			}
+			long remaining = task.due - System.nanoTime();
+			if (remaining > 0) {
+				TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				continue;
+			}
+			queue.poll();
+			return task.runnable;
+		}
+		return null;
+	}
+
+	private void loop() {
+		bind(this);
+		try {
+			Runnable r;
+			while ((r = next()) != null) {
+				runTask(r);
+			}
+		} catch (InterruptedException ignored) {
+			// loop stops when the thread is interrupted
+		} finally {
+			bind(null);
+		}
+	}
+
+	private static final class Task implements Comparable<Task> {
+		final Runnable runnable;
+		final long due;
+		final long seq;
+
+		Task(Runnable runnable, long due, long seq) {
+			this.runnable = runnable;
+			this.due = due;
+			this.seq = seq;
+		}
+
+		@Override
+		public int compareTo(Task o) {
+			long d = due - o.due;
+			if (d != 0) {
+				return d < 0 ? -1 : 1;
+			}
+			return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package me.tangye.utils.async.scheduler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Executor的调度器, 任务将被串行地提交到executor中执行<br>
+ * 即使executor是一个线程池, 同一个调度器上的任务也不会并发执行
+ *
+ * @author tangye
+ * @see PromiseScheduler#from(Executor)
+ */
+public class ExecutorScheduler extends PromiseScheduler {
+
+	private final Executor executor;
+
+	/* guarded by this */
+	private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+	private final List<Delayed> delayed = new ArrayList<>();
+	private boolean draining;
+
+	/* the thread which is draining tasks now */
+	private volatile Thread runner;
+
+	private final Runnable drain = new Runnable() {
+		@Override
+		public void run() {
+			runTasks();
+		}
+	};
+
+	public ExecutorScheduler(Executor executor) {
+		if (executor == null) {
+			throw new NullPointerException("executor should not be null");
+		}
+		this.executor = executor;
+	}
+
+	@Override
+	public boolean inEventLoop() {
+		return runner == Thread.currentThread();
+	}
+
+	@Override
+	public void execute(Runnable runnable) {
+		if (runnable == null) {
+			throw new NullPointerException("runnable should not be null");
+		}
+		synchronized (this) {
+			tasks.add(runnable);
+			if (draining) {
+				return;
+			}
+			draining = true;
+		}
+		try {
+			executor.execute(drain);
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				draining = false;
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public void schedule(Runnable runnable, long delay) {
+		if (delay <= 0) {
+			execute(runnable);
+			return;
+		}
+		Delayed d = new Delayed(runnable);
+		synchronized (this) {
+			delayed.add(d);
+			d.future = Timer.INSTANCE.schedule(d, delay, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	@Override
+	public synchronized void cancel(Runnable runnable) {
+		Iterator<Runnable> it = tasks.iterator();
+		while (it.hasNext()) {
+			if (it.next() == runnable) {
+				it.remove();
+			}
+		}
+		Iterator<Delayed> dit = delayed.iterator();
+		while (dit.hasNext()) {
+			Delayed d = dit.next();
+			if (d.runnable == runnable) {
+				d.future.cancel(false);
+				dit.remove();
+			}
+		}
+	}
+
+	private void runTasks() {
+		PromiseScheduler previous = bind(this);
+		runner = Thread.currentThread();
+		boolean drained = false;
+		try {
+			for (;;) {
+				Runnable r;
+				synchronized (this) {
+					r = tasks.poll();
+					if (r == null) {
+						draining = false;
+						drained = true;
+						return;
+					}
+				}
+				runTask(r);
+			}
+		} finally {
+			runner = null;
+			bind(previous);
+			if (!drained) {
+				// a VirtualMachineError escaped, e.g. a StackOverflowError of a resolver
+				resume();
+			}
+		}
+	}
+
+	/* hand the remaining tasks to a new drain, or let the next execute start one */
+	private void resume() {
+		synchronized (this) {
+			if (tasks.isEmpty()) {
+				draining = false;
+				return;
+			}
+		}
+		try {
+			executor.execute(drain);
+		} catch (RuntimeException e) {
+			synchronized (this) {
+				draining = false;
+			}
+		}
+	}
+
+	private final class Delayed implements Runnable {
+		final Runnable runnable;
+		ScheduledFuture<?> future;
+
+		Delayed(Runnable runnable) {
+			this.runnable = runnable;
+		}
+
+		@Override
+		public void run() {
+			synchronized (ExecutorScheduler.this) {
+				if (!delayed.remove(this)) {
+					return;
+				}
+			}
+			execute(runnable);
+		}
+	}
+
+	/* a shared daemon timer, only used to hand delayed tasks over to executors */
+	private static final class Timer {
+		static final ScheduledExecutorService INSTANCE = create();
+
+		private static ScheduledExecutorService create() {
+			ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "promise-timer");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+			timer.setRemoveOnCancelPolicy(true);
+			return timer;
+		}
+	}
+}
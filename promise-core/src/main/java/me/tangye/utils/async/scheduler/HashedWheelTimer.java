@@ -0,0 +1,308 @@
+package me.tangye.utils.async.scheduler;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 哈希时间轮定时器, 用于大量精度要求不高的超时任务<br>
+ * 添加和取消都是O(1)的, 不会像调度器的延迟队列那样每次插入都要排序<br>
+ * 到期的任务在时间轮线程上执行, 因此任务本身必须足够轻量, 比如只是完成一个Promise<br>
+ * 精度为一个tick, 任务最多会延迟一个tick执行
+ *
+ * @author tangye
+ * @see PromiseScheduler#setTimer(HashedWheelTimer)
+ */
+public class HashedWheelTimer {
+
+	private static final int MAX_TRANSFER_PER_TICK = 100000;
+
+	private final long tickNanos;
+	private final Bucket[] wheel;
+	private final int mask;
+	private final Thread worker;
+
+	private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+	private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+	private final AtomicLong pending = new AtomicLong();
+
+	/* guarded by this */
+	private boolean started;
+	private volatile boolean stopped;
+
+	/* set once before the worker starts, every deadline is relative to it */
+	private volatile long startTime;
+
+	/**
+	 * 构造一个时间轮, 时间轮线程在第一个任务加入时启动, 为daemon线程
+	 * @param name 线程名称
+	 * @param tick 每一格的时长, 毫秒
+	 * @param ticksPerWheel 一圈的格数, 将被调整为2的幂
+	 */
+	public HashedWheelTimer(String name, long tick, int ticksPerWheel) {
+		if (tick <= 0) {
+			throw new IllegalArgumentException("tick should be greater than 0");
+		}
+		if (ticksPerWheel <= 0 || ticksPerWheel > 1 << 30) {
+			throw new IllegalArgumentException("ticksPerWheel should be in (0, 2^30]");
+		}
+		int size = 1;
+		while (size < ticksPerWheel) {
+			size <<= 1;
+		}
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tick);
+		this.wheel = new Bucket[size];
+		for (int i = 0; i < size; i++) {
+			wheel[i] = new Bucket();
+		}
+		this.mask = size - 1;
+		this.worker = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				work();
+			}
+		}, name);
+		this.worker.setDaemon(true);
+	}
+
+	/**
+	 * 全局共享的时间轮, tick为10毫秒, 一圈512格
+	 * @return 默认时间轮
+	 */
+	public static HashedWheelTimer getDefault() {
+		return Default.INSTANCE;
+	}
+
+	/**
+	 * 添加一个超时任务
+	 * @param task 到期时在时间轮线程上执行的任务
+	 * @param delay 延迟的毫秒数
+	 * @return 可以用于取消的句柄
+	 * @throws IllegalStateException 时间轮已经停止时抛出
+	 */
+	public Timeout newTimeout(Runnable task, long delay) {
+		if (task == null) {
+			throw new NullPointerException("task should not be null");
+		}
+		start();
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(delay, 0)) - startTime;
+		Timeout timeout = new Timeout(this, task, deadline);
+		pending.incrementAndGet();
+		added.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * 停止时间轮, 所有未到期的任务都不会再执行
+	 */
+	public void stop() {
+		stopped = true;
+		worker.interrupt();
+	}
+
+	/**
+	 * 还没有到期也没有被取消的任务数
+	 * @return 任务数
+	 */
+	public long pendingTimeouts() {
+		return pending.get();
+	}
+
+	private void start() {
+		if (stopped) {
+			throw new IllegalStateException("timer is stopped");
+		}
+		synchronized (this) {
+			if (!started) {
+				startTime = System.nanoTime();
+				started = true;
+				worker.start();
+			}
+		}
+	}
+
+	private void work() {
+		long tick = 0;
+		while (!stopped) {
+			if (!waitForNextTick(tick)) {
+				break;
+			}
+			removeCancelled();
+			transferAdded(tick);
+			wheel[(int) (tick & mask)].expire();
+			tick++;
+		}
+	}
+
+	/* sleep until the end of the tick, returns false once stopped */
+	private boolean waitForNextTick(long tick) {
+		long deadline = tickNanos * (tick + 1);
+		for (;;) {
+			long now = System.nanoTime() - startTime;
+			long sleep = TimeUnit.NANOSECONDS.toMillis(deadline - now + 999999);
+			if (sleep <= 0) {
+				return true;
+			}
+			try {
+				Thread.sleep(sleep);
+			} catch (InterruptedException e) {
+				if (stopped) {
+					return false;
+				}
+			}
+		}
+	}
+
+	private void transferAdded(long tick) {
+		for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+			Timeout timeout = added.poll();
+			if (timeout == null) {
+				return;
+			}
+			if (timeout.state != Timeout.INIT) {
+				continue;
+			}
+			long calculated = timeout.deadline / tickNanos;
+			timeout.rounds = (calculated - tick) / wheel.length;
+			// a deadline already passed goes to the current tick
+			long ticks = Math.max(calculated, tick);
+			wheel[(int) (ticks & mask)].add(timeout);
+		}
+	}
+
+	private void removeCancelled() {
+		for (;;) {
+			Timeout timeout = cancelled.poll();
+			if (timeout == null) {
+				return;
+			}
+			if (timeout.bucket != null) {
+				timeout.bucket.remove(timeout);
+			}
+		}
+	}
+
+	/**
+	 * 超时任务的句柄
+	 */
+	public static final class Timeout {
+		private static final int INIT = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+				AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+		private final HashedWheelTimer timer;
+		private final Runnable task;
+		private final long deadline;
+		private volatile int state;
+
+		/* only accessed by the worker */
+		private long rounds;
+		private Bucket bucket;
+		private Timeout next;
+		private Timeout prev;
+
+		private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+			this.timer = timer;
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * 取消任务
+		 * @return 任务还没有到期时返回true
+		 */
+		public boolean cancel() {
+			if (!STATE.compareAndSet(this, INIT, CANCELLED)) {
+				return false;
+			}
+			timer.pending.decrementAndGet();
+			timer.cancelled.add(this);
+			return true;
+		}
+
+		/**
+		 * 是否已经被取消
+		 * @return 取消时返回true
+		 */
+		public boolean isCancelled() {
+			return state == CANCELLED;
+		}
+
+		/**
+		 * 是否已经到期
+		 * @return 到期时返回true
+		 */
+		public boolean isExpired() {
+			return state == EXPIRED;
+		}
+
+		private void expire() {
+			if (!STATE.compareAndSet(this, INIT, EXPIRED)) {
+				return;
+			}
+			timer.pending.decrementAndGet();
+			PromiseScheduler.runTask(task);
+		}
+	}
+
+	/* a doubly linked list of timeouts, only accessed by the worker */
+	private static final class Bucket {
+		private Timeout head;
+		private Timeout tail;
+
+		void add(Timeout timeout) {
+			timeout.bucket = this;
+			if (head == null) {
+				head = tail = timeout;
+			} else {
+				tail.next = timeout;
+				timeout.prev = tail;
+				tail = timeout;
+			}
+		}
+
+		void expire() {
+			Timeout timeout = head;
+			while (timeout != null) {
+				Timeout next = timeout.next;
+				if (timeout.state == Timeout.CANCELLED) {
+					remove(timeout);
+				} else if (timeout.rounds <= 0) {
+					remove(timeout);
+					timeout.expire();
+				} else {
+					timeout.rounds--;
+				}
+				timeout = next;
+			}
+		}
+
+		void remove(Timeout timeout) {
+			if (timeout.bucket != this) {
+				return;
+			}
+			if (timeout.prev != null) {
+				timeout.prev.next = timeout.next;
+			} else {
+				head = timeout.next;
+			}
+			if (timeout.next != null) {
+				timeout.next.prev = timeout.prev;
+			} else {
+				tail = timeout.prev;
+			}
+			timeout.prev = null;
+			timeout.next = null;
+			timeout.bucket = null;
+		}
+	}
+
+	private static final class Default {
+		static final HashedWheelTimer INSTANCE = new HashedWheelTimer("promise-wheel", 10, 512);
+	}
+}
@@ -0,0 +1,283 @@
+package me.tangye.utils.async.scheduler;
+
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 一组单线程事件循环, 用于服务端等没有Looper的环境, 默认每个CPU一个循环<br>
+ * 通过 {@link #forKey(Object)} 将同一个实体的所有Promise固定在同一个循环上,
+ * 该实体的状态只会在一个线程上被访问, 无需加锁; 不同的实体分散在所有循环上并行执行<br>
+ * 每个循环的普通任务使用无锁的多生产者单消费者队列, 空闲时park, 不会像 {@link EventLoopScheduler} 那样每次提交都竞争同一把锁
+ * <pre>
+ *     PromiseEventLoopGroup group = new PromiseEventLoopGroup("worker");
+ *     Promise.make(function, group.forKey(userId)).then(...);
+ * </pre>
+ *
+ * @author tangye
+ */
+public class PromiseEventLoopGroup {
+
+	private final EventLoop[] loops;
+	private final AtomicInteger index = new AtomicInteger();
+
+	/**
+	 * 构造并启动与CPU数量相同的事件循环
+	 * @param name 线程名称的前缀
+	 */
+	public PromiseEventLoopGroup(String name) {
+		this(name, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * 构造并启动指定数量的事件循环, 循环线程为daemon线程
+	 * @param name 线程名称的前缀
+	 * @param size 事件循环的数量
+	 */
+	public PromiseEventLoopGroup(String name, int size) {
+		if (size < 1) {
+			throw new IllegalArgumentException("size should be greater than 0");
+		}
+		loops = new EventLoop[size];
+		for (int i = 0; i < size; i++) {
+			loops[i] = new EventLoop(name + "-" + i);
+		}
+	}
+
+	/**
+	 * 轮流返回一个事件循环, 用于没有亲和性要求的任务
+	 * @return 事件循环
+	 */
+	public EventLoop next() {
+		return loops[(index.getAndIncrement() & Integer.MAX_VALUE) % loops.length];
+	}
+
+	/**
+	 * 按照key的hash返回固定的事件循环, 相同的key总是得到同一个循环
+	 * @param key 任意key, 比如用户id
+	 * @return 事件循环
+	 */
+	public EventLoop forKey(Object key) {
+		int h = key.hashCode();
+		h ^= h >>> 16;
+		return loops[(h & Integer.MAX_VALUE) % loops.length];
+	}
+
+	/**
+	 * 获取指定的事件循环
+	 * @param i 序号, 从0开始
+	 * @return 事件循环
+	 */
+	public EventLoop get(int i) {
+		return loops[i];
+	}
+
+	/**
+	 * 事件循环的数量
+	 * @return 数量
+	 */
+	public int size() {
+		return loops.length;
+	}
+
+	/**
+	 * 停止所有事件循环, 未执行的任务将被丢弃
+	 */
+	public void shutdown() {
+		for (EventLoop loop : loops) {
+			loop.shutdown();
+		}
+	}
+
+	/**
+	 * 组中的一个单线程事件循环<br>
+	 * execute/schedule/cancel 对应 Locker 以及 android Handler 的 post/postDelayed/removeCallbacks
+	 */
+	public static final class EventLoop extends PromiseScheduler {
+
+		/* lock free, many producers and the loop thread as the only consumer */
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+
+		/* guarded by itself, ordered by due time then by submit order */
+		private final PriorityQueue<Delayed> delayed = new PriorityQueue<>();
+		private long sequence;
+
+		/* due time of the head of delayed, Long.MAX_VALUE when there is none */
+		private volatile long nextDue = Long.MAX_VALUE;
+
+		private final Thread thread;
+		private volatile boolean sleeping;
+		private volatile boolean shutdown;
+
+		private EventLoop(String name) {
+			thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					loop();
+				}
+			}, name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public boolean inEventLoop() {
+			return Thread.currentThread() == thread;
+		}
+
+		@Override
+		public void execute(Runnable runnable) {
+			if (runnable == null) {
+				throw new NullPointerException("runnable should not be null");
+			}
+			if (shutdown) {
+				return;
+			}
+			tasks.add(runnable);
+			// pairs with the sleeping write and queue read in the loop, no wakeup is lost
+			if (sleeping) {
+				LockSupport.unpark(thread);
+			}
+		}
+
+		@Override
+		public void schedule(Runnable runnable, long delay) {
+			if (delay <= 0) {
+				execute(runnable);
+				return;
+			}
+			if (runnable == null) {
+				throw new NullPointerException("runnable should not be null");
+			}
+			if (shutdown) {
+				return;
+			}
+			long due = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+			boolean head;
+			synchronized (delayed) {
+				Delayed d = new Delayed(runnable, due, sequence++);
+				delayed.add(d);
+				head = delayed.peek() == d;
+				if (head) {
+					nextDue = due;
+				}
+			}
+			if (head && !inEventLoop()) {
+				// the loop may sleep longer than the new head allows
+				LockSupport.unpark(thread);
+			}
+		}
+
+		@Override
+		public void cancel(Runnable runnable) {
+			Iterator<Runnable> it = tasks.iterator();
+			while (it.hasNext()) {
+				if (it.next() == runnable) {
+					it.remove();
+				}
+			}
+			synchronized (delayed) {
+				Iterator<Delayed> dit = delayed.iterator();
+				while (dit.hasNext()) {
+					if (dit.next().runnable == runnable) {
+						dit.remove();
+					}
+				}
+				Delayed d = delayed.peek();
+				nextDue = d == null ? Long.MAX_VALUE : d.due;
+			}
+		}
+
+		/**
+		 * 还未执行的普通任务数, 不包括延迟任务, 只是一个估计值
+		 * @return 任务数
+		 */
+		public int pendingTasks() {
+			return tasks.size();
+		}
+
+		/**
+		 * 获取事件循环线程
+		 * @return 循环线程
+		 */
+		public Thread getThread() {
+			return thread;
+		}
+
+		private void shutdown() {
+			shutdown = true;
+			LockSupport.unpark(thread);
+		}
+
+		private void loop() {
+			bind(this);
+			try {
+				while (!shutdown) {
+					if (System.nanoTime() - nextDue >= 0) {
+						transferDue();
+					}
+					Runnable r = tasks.poll();
+					if (r != null) {
+						runTask(r);
+						continue;
+					}
+					sleeping = true;
+					if (tasks.isEmpty() && !shutdown) {
+						long wait = nextDue == Long.MAX_VALUE ? 0 : nextDue - System.nanoTime();
+						if (nextDue == Long.MAX_VALUE) {
+							LockSupport.park(this);
+						} else if (wait > 0) {
+							LockSupport.parkNanos(this, wait);
+						}
+					}
+					sleeping = false;
+				}
+			} finally {
+				tasks.clear();
+				synchronized (delayed) {
+					delayed.clear();
+				}
+				bind(null);
+			}
+		}
+
+		/* due delayed tasks go behind the tasks already queued */
+		private void transferDue() {
+			long now = System.nanoTime();
+			synchronized (delayed) {
+				Delayed d;
+				while ((d = delayed.peek()) != null && d.due - now <= 0) {
+					delayed.poll();
+					tasks.add(d.runnable);
+				}
+				nextDue = d == null ? Long.MAX_VALUE : d.due;
+			}
+		}
+
+	}
+
+	private static final class Delayed implements Comparable<Delayed> {
+		final Runnable runnable;
+		final long due;
+		final long seq;
+
+		Delayed(Runnable runnable, long due, long seq) {
+			this.runnable = runnable;
+			this.due = due;
+			this.seq = seq;
+		}
+
+		@Override
+		public int compareTo(Delayed o) {
+			long d = due - o.due;
+			if (d != 0) {
+				return d < 0 ? -1 : 1;
+			}
+			return seq < o.seq ? -1 : (seq == o.seq ? 0 : 1);
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package me.tangye.utils.async.scheduler;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceLoader;
+import java.util.concurrent.Executor;
+
+import me.tangye.utils.async.CapturePolicy;
+import me.tangye.utils.async.SettledCache;
+
+/**
+ * Promise的调度器，替代android的Handler/Looper<br>
+ * 所有Promise的Function, then中的Resolver都运行在其调度器上<br>
+ * 一个调度器必须保证提交的任务按顺序、串行执行
+ *
+ * @author tangye
+ * @see EventLoopScheduler
+ * @see ExecutorScheduler
+ */
+public abstract class PromiseScheduler implements Executor {
+
+	/**
+	 * 默认每次drain最多执行的continuation数量
+	 */
+	public static final int DEFAULT_DRAIN_LIMIT = 256;
+
+	/* the scheduler currently draining tasks on this thread */
+	private static final ThreadLocal<PromiseScheduler> CURRENT = new ThreadLocal<>();
+
+	/* run continuations inline when already in event loop */
+	private volatile boolean inlineContinuations;
+
+	/* creation site capture policy, null means the global default */
+	private volatile CapturePolicy capturePolicy;
+
+	/* timer for promise deadlines, null means the shared default */
+	private volatile HashedWheelTimer timer;
+
+	/* budget of one continuation drain, 0 means unlimited */
+	private volatile int drainLimit = DEFAULT_DRAIN_LIMIT;
+	private volatile long drainTimeLimit;
+
+	/* settled promise singletons of this scheduler, filled lazily by Promise */
+	private final SettledCache settledCache = new SettledCache();
+
+	/**
+	 * 当前线程是否正在执行该调度器的任务
+	 * @return 在该调度器的线程中时返回true
+	 */
+	public abstract boolean inEventLoop();
+
+	/**
+	 * 提交一个任务, 等同于android的 handler.post
+	 * @param runnable 要执行的Runnable
+	 */
+	@Override
+	public abstract void execute(Runnable runnable);
+
+	/**
+	 * 延迟提交一个任务, 等同于android的 handler.postDelayed
+	 * @param runnable 要执行的Runnable
+	 * @param delay 延迟的毫秒数
+	 */
+	public abstract void schedule(Runnable runnable, long delay);
+
+	/**
+	 * 删除所有还未执行的该Runnable, 等同于android的 handler.removeCallbacks
+	 * @param runnable 要删除的Runnable
+	 */
+	public abstract void cancel(Runnable runnable);
+
+	/**
+	 * 开启或关闭内联执行模式<br>
+	 * 开启后, 已经在调度器线程中时, Promise完成后的continuation将在一个限制栈深度的trampoline上直接执行,
+	 * 而不是每次都post一个新的任务; 不在调度器线程中时, 仍然post执行<br>
+	 * 注意: 开启后resolver可能在then方法返回之前就已经执行
+	 * @param inline 是否开启, 默认关闭
+	 */
+	public void setInlineContinuations(boolean inline) {
+		this.inlineContinuations = inline;
+	}
+
+	/**
+	 * 是否开启了内联执行模式
+	 * @return 开启时返回true
+	 * @see #setInlineContinuations(boolean)
+	 */
+	public boolean isInlineContinuations() {
+		return inlineContinuations;
+	}
+
+	/**
+	 * 设置continuation的drain预算<br>
+	 * Promise完成时, 所有等待的resolver在一个任务中依次执行, 而不是每个resolver各post一次;
+	 * 超过预算时, 剩余的resolver重新post到队尾, 让其他任务有机会执行
+	 * @param limit 每次最多执行的数量, 0表示不限制, 默认 {@link #DEFAULT_DRAIN_LIMIT}
+	 * @param millis 每次最多执行的毫秒数, 0表示不限制, 默认不限制
+	 */
+	public void setDrainBudget(int limit, long millis) {
+		if (limit < 0 || millis < 0) {
+			throw new IllegalArgumentException("drain budget should not be negative");
+		}
+		this.drainLimit = limit;
+		this.drainTimeLimit = millis;
+	}
+
+	/**
+	 * 每次drain最多执行的continuation数量
+	 * @return 数量, 0表示不限制
+	 * @see #setDrainBudget(int, long)
+	 */
+	public int getDrainLimit() {
+		return drainLimit;
+	}
+
+	/**
+	 * 每次drain最多执行的毫秒数
+	 * @return 毫秒数, 0表示不限制
+	 * @see #setDrainBudget(int, long)
+	 */
+	public long getDrainTimeLimit() {
+		return drainTimeLimit;
+	}
+
+	/**
+	 * 设置该调度器上Promise的创建位置采集策略
+	 * @param policy 采集策略, 为null时使用全局默认策略
+	 * @see CapturePolicy#setDefault(CapturePolicy)
+	 */
+	public void setCapturePolicy(CapturePolicy policy) {
+		this.capturePolicy = policy;
+	}
+
+	/**
+	 * 获取该调度器上Promise的创建位置采集策略
+	 * @return 没有单独设置时, 返回全局默认策略
+	 */
+	public CapturePolicy getCapturePolicy() {
+		CapturePolicy policy = capturePolicy;
+		return policy != null ? policy : CapturePolicy.getDefault();
+	}
+
+	/**
+	 * 设置该调度器上 {@link me.tangye.utils.async.Promise#timeout(long, Exception, PromiseScheduler)}
+	 * 以及 {@link me.tangye.utils.async.Promise#withTimeout(long)} 使用的时间轮
+	 * @param timer 时间轮, 为null时使用全局共享的时间轮
+	 */
+	public void setTimer(HashedWheelTimer timer) {
+		this.timer = timer;
+	}
+
+	/**
+	 * 获取该调度器上Promise超时使用的时间轮
+	 * @return 没有单独设置时, 返回 {@link HashedWheelTimer#getDefault()}
+	 */
+	public HashedWheelTimer getTimer() {
+		HashedWheelTimer t = timer;
+		return t != null ? t : HashedWheelTimer.getDefault();
+	}
+
+	/**
+	 * 该调度器上缓存的已完成Promise, 仅供Promise内部使用, 其他调用者无法读写其中的槽位
+	 * @return 缓存
+	 * @hide
+	 */
+	public final SettledCache settledCache() {
+		return settledCache;
+	}
+
+	/**
+	 * 获取当前线程的调度器<br>
+	 * 优先返回正在当前线程执行任务的调度器, 否则询问通过 {@link ServiceLoader} 注册的 {@link SchedulerProvider}
+	 * @return 当前线程的调度器, 没有时返回null
+	 */
+	public static PromiseScheduler current() {
+		PromiseScheduler scheduler = CURRENT.get();
+		if (scheduler != null) {
+			return scheduler;
+		}
+		for (SchedulerProvider provider : Providers.PROVIDERS) {
+			scheduler = provider.current();
+			if (scheduler != null) {
+				return scheduler;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * 使用一个Executor构造调度器, 提交的任务将在executor上串行执行
+	 * @param executor 任意Executor, 例如线程池
+	 * @return 新的调度器
+	 */
+	public static PromiseScheduler from(Executor executor) {
+		return new ExecutorScheduler(executor);
+	}
+
+	/**
+	 * 将当前线程绑定到指定的调度器, 供实现类在执行任务前后调用
+	 * @param scheduler 要绑定的调度器, 可以为null
+	 * @return 之前绑定的调度器
+	 */
+	protected static PromiseScheduler bind(PromiseScheduler scheduler) {
+		PromiseScheduler previous = CURRENT.get();
+		if (scheduler == null) {
+			CURRENT.remove();
+		} else {
+			CURRENT.set(scheduler);
+		}
+		return previous;
+	}
+
+	/**
+	 * 执行一个任务, 供实现类在循环中调用<br>
+	 * 任务抛出的异常以及Error交给当前线程的UncaughtExceptionHandler, 不会终止循环; 只有VirtualMachineError继续抛出
+	 * @param runnable 要执行的任务
+	 */
+	protected static void runTask(Runnable runnable) {
+		try {
+			runnable.run();
+		} catch (VirtualMachineError e) {
+			throw e;
+		} catch (Throwable t) {
+			Thread thread = Thread.currentThread();
+			thread.getUncaughtExceptionHandler().uncaughtException(thread, t);
+		}
+	}
+
+	/* lazily loaded providers, android module registers its looper provider here */
+	private static final class Providers {
+		static final SchedulerProvider[] PROVIDERS = load();
+
+		private static SchedulerProvider[] load() {
+			List<SchedulerProvider> list = new ArrayList<>();
+			Iterator<SchedulerProvider> it = ServiceLoader.load(SchedulerProvider.class,
+					PromiseScheduler.class.getClassLoader()).iterator();
+			while (it.hasNext()) {
+				list.add(it.next());
+			}
+			return list.toArray(new SchedulerProvider[list.size()]);
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package me.tangye.utils.async.scheduler;
+
+/**
+ * 调度器的SPI, 通过 META-INF/services 注册<br>
+ * 当线程没有绑定任何调度器时, {@link PromiseScheduler#current()} 将会依次询问所有的Provider
+ *
+ * @author tangye
+ */
+public interface SchedulerProvider {
+	/**
+	 * 返回当前线程对应的调度器
+	 * @return 当前线程不被该Provider支持时返回null
+	 */
+	PromiseScheduler current();
+}
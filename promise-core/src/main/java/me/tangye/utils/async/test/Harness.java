@@ -0,0 +1,65 @@
+package me.tangye.utils.async.test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+
+/**
+ * 各个测试程序共用的部分: 断言, 等待以及事件循环调度器的创建和关闭<br>
+ * 测试程序继承该类, 直接调用其中的静态方法
+ */
+abstract class Harness {
+
+	/**
+	 * 测试的主体, 在一个新建的事件循环调度器上运行
+	 */
+	interface Body {
+		void run(EventLoopScheduler scheduler) throws Exception;
+	}
+
+	/**
+	 * 创建一个事件循环调度器运行body, 结束或者失败后关闭调度器
+	 * @param name 调度器线程的名字
+	 * @param body 测试的主体
+	 */
+	static void run(String name, Body body) throws Exception {
+		EventLoopScheduler scheduler = new EventLoopScheduler(name);
+		try {
+			body.run(scheduler);
+		} finally {
+			scheduler.shutdown();
+		}
+	}
+
+	/**
+	 * 把线程中未捕获的异常收集到uncaught中, 用于检查调度器交给UncaughtExceptionHandler的异常
+	 * @param uncaught 收集异常的列表, 可能在任意线程写入
+	 * @return 原来的默认handler, 测试结束后需要恢复
+	 */
+	static Thread.UncaughtExceptionHandler collectUncaught(final List<Throwable> uncaught) {
+		Thread.UncaughtExceptionHandler previous = Thread.getDefaultUncaughtExceptionHandler();
+		Thread.setDefaultUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+			@Override
+			public void uncaughtException(Thread t, Throwable e) {
+				uncaught.add(e);
+			}
+		});
+		return previous;
+	}
+
+	static void check(boolean condition, String message) {
+		if (!condition) {
+			throw new AssertionError(message);
+		}
+	}
+
+	/* filled from the scheduler, wait until size items arrived */
+	static void waitFor(List<?> list, int size) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (list.size() < size) {
+			check(System.nanoTime() < deadline, "only " + list.size() + " of " + size + " arrived");
+			Thread.sleep(1);
+		}
+	}
+}
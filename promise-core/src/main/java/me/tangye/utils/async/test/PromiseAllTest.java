@@ -0,0 +1,129 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.Settlement;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * all/allOf/allSettled的测试: 结果顺序, 快速失败以及取消时释放仍未完成的输入
+ */
+public class PromiseAllTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("all-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				ordered(scheduler);
+				failFastReleasesInputs(scheduler);
+				cancelReleasesInputs(scheduler);
+				sharedInputSurvives(scheduler);
+				System.out.println("PromiseAllTest passed");
+			}
+		});
+	}
+
+	private static void ordered(PromiseScheduler scheduler) throws Exception {
+		List<Promise<Integer>> inputs = Arrays.asList(
+				Promise.timeout(30, null, scheduler).then(constant(1)),
+				Promise.resolve(2, scheduler),
+				Promise.timeout(10, null, scheduler).then(constant(3)));
+		check(Promise.allOf(inputs, scheduler).await(1, TimeUnit.SECONDS).equals(Arrays.asList(1, 2, 3)),
+				"allOf should keep the input order");
+		Object[] values = Promise.all(Arrays.asList(inputs.get(0), "plain"), scheduler).await(1, TimeUnit.SECONDS);
+		check(values[0].equals(1) && "plain".equals(values[1]), "all should mix promises and plain values");
+		List<Settlement<Integer>> settled = Promise.allSettled(Arrays.asList(inputs.get(1),
+				Promise.<Integer>reject(new IOException("x"), scheduler)), scheduler).await(1, TimeUnit.SECONDS);
+		check(settled.get(0).isFulfilled() && settled.get(1).isRejected(), "allSettled should report both outcomes");
+	}
+
+	private static void failFastReleasesInputs(PromiseScheduler scheduler) throws Exception {
+		List<Locker<Integer>> lockers = new CopyOnWriteArrayList<>();
+		Promise<Integer> pending = pending(lockers, scheduler);
+		Promise<List<Integer>> all = Promise.allOf(Arrays.asList(pending,
+				Promise.<Integer>reject(new IOException("fail"), scheduler)), scheduler);
+		try {
+			all.await(1, TimeUnit.SECONDS);
+			check(false, "allOf should fail fast");
+		} catch (IOException expected) {
+			// the rejected input wins
+		}
+		waitFor(lockers, 1);
+		check(awaitCancelled(pending), "the pending input should be released and cancelled");
+		check(lockers.get(0).isCancelled(), "the producer of the pending input should see the cancel");
+	}
+
+	private static void cancelReleasesInputs(PromiseScheduler scheduler) throws Exception {
+		List<Locker<Integer>> lockers = new CopyOnWriteArrayList<>();
+		Promise<Integer> first = pending(lockers, scheduler);
+		Promise<Integer> second = pending(lockers, scheduler);
+		Promise<Object[]> all = Promise.all(Arrays.asList(first, second), scheduler);
+		Promise<List<Settlement<Integer>>> settled = Promise.allSettled(
+				Arrays.asList(pending(lockers, scheduler)), scheduler);
+		waitFor(lockers, 3);
+		check(all.cancel() && settled.cancel(), "the aggregates should be cancelled");
+		check(awaitCancelled(first) && awaitCancelled(second), "inputs of a cancelled all should be cancelled");
+		for (Locker<Integer> locker : lockers) {
+			check(locker.isCancelled(), "every producer should see the cancel");
+		}
+		try {
+			all.await();
+			check(false, "the aggregate should stay cancelled");
+		} catch (CancellationException expected) {
+			// cancelled by the caller
+		}
+	}
+
+	private static void sharedInputSurvives(PromiseScheduler scheduler) throws Exception {
+		List<Locker<Integer>> lockers = new CopyOnWriteArrayList<>();
+		Promise<Integer> shared = pending(lockers, scheduler);
+		// another consumer keeps the input alive
+		Promise<Integer> other = shared.then(constant(0));
+		Promise<List<Integer>> all = Promise.allOf(Arrays.asList(shared), scheduler);
+		waitFor(lockers, 1);
+		all.cancel();
+		Thread.sleep(20);
+		check(!shared.isCancelled() && !lockers.get(0).isCancelled(), "an input still consumed should not be cancelled");
+		lockers.get(0).resolve(7);
+		check(other.await(1, TimeUnit.SECONDS) == 0, "the other consumer should still receive the value");
+	}
+
+	private static Promise<Integer> pending(final List<Locker<Integer>> lockers, PromiseScheduler scheduler) {
+		return Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> locker) {
+				lockers.add(locker);
+			}
+		}, scheduler);
+	}
+
+	private static <T> SimpleResolver<T, Integer> constant(final int value) {
+		return new SimpleResolver<T, Integer>() {
+			@Override
+			public Integer resolve(T newValue) {
+				return value;
+			}
+		};
+	}
+
+	private static boolean awaitCancelled(Promise<?> promise) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (!promise.isCancelled()) {
+			if (System.nanoTime() > deadline) {
+				return false;
+			}
+			Thread.sleep(1);
+		}
+		return true;
+	}
+}
@@ -0,0 +1,143 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * await/awaitAll的测试, 在普通JVM的事件循环上运行<br>
+ * 等待的线程不是消费者, 超时或者中断之后取消仍然能传递到上游
+ */
+public class PromiseAwaitTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("await-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				awaitValue(scheduler);
+				awaitRejected(scheduler);
+				awaitTimeoutThenCancel(scheduler);
+				awaitInterruptedThenCancel(scheduler);
+				awaitAllFailFast(scheduler);
+				awaitStartsLazy(scheduler);
+				System.out.println("PromiseAwaitTest passed");
+			}
+		});
+	}
+
+	private static void awaitValue(PromiseScheduler scheduler) throws Exception {
+		Promise<Integer> p = Promise.resolve(1, scheduler).then(new SimpleResolver<Integer, Integer>() {
+			@Override
+			public Integer resolve(Integer newValue) {
+				return newValue + 1;
+			}
+		});
+		check(p.await() == 2, "await should return the value");
+		check(p.await(1, TimeUnit.SECONDS) == 2, "timed await should return the value");
+	}
+
+	private static void awaitRejected(PromiseScheduler scheduler) throws Exception {
+		try {
+			Promise.reject(new IOException("io"), scheduler).await();
+			check(false, "await should throw the rejection");
+		} catch (IOException expected) {
+			// the original exception, not wrapped
+		}
+	}
+
+	private static void awaitTimeoutThenCancel(PromiseScheduler scheduler) throws Exception {
+		AtomicReference<Locker<Integer>> locker = new AtomicReference<>();
+		Promise<Integer> upstream = never(scheduler, locker);
+		try {
+			upstream.await(20, TimeUnit.MILLISECONDS);
+			check(false, "await should time out");
+		} catch (TimeoutException expected) {
+			// still pending
+		}
+		Promise<Integer> child = upstream.then(new SimpleResolver<Integer, Integer>() {
+			@Override
+			public Integer resolve(Integer newValue) {
+				return newValue;
+			}
+		});
+		child.cancel();
+		check(upstream.isCancelled(), "the timed out waiter should not keep upstream alive");
+		check(locker.get().isCancelled(), "the producer should see the cancellation");
+	}
+
+	private static void awaitInterruptedThenCancel(PromiseScheduler scheduler) throws Exception {
+		AtomicReference<Locker<Integer>> locker = new AtomicReference<>();
+		Promise<Integer> upstream = never(scheduler, locker);
+		Thread.currentThread().interrupt();
+		try {
+			upstream.await();
+			check(false, "await should be interrupted");
+		} catch (InterruptedException expected) {
+			// still pending
+		}
+		Promise<Integer> child = upstream.then(new SimpleResolver<Integer, Integer>() {
+			@Override
+			public Integer resolve(Integer newValue) {
+				return newValue;
+			}
+		});
+		child.cancel();
+		check(upstream.isCancelled(), "the interrupted waiter should not keep upstream alive");
+	}
+
+	private static void awaitAllFailFast(PromiseScheduler scheduler) throws Exception {
+		Promise<Integer> pending = never(scheduler, new AtomicReference<Locker<Integer>>());
+		Promise<Object> failed = Promise.make(new DirectFunction<Object>() {
+			@Override
+			public void run(Locker<Object> locker) {
+				locker.reject(new IOException("fast"));
+			}
+		}, scheduler);
+		try {
+			Promise.awaitAll(1, TimeUnit.SECONDS, pending, failed);
+			check(false, "awaitAll should fail fast");
+		} catch (IOException expected) {
+			// the pending one is not waited for
+		}
+		Object[] values = Promise.awaitAll(Promise.resolve(1, scheduler), Promise.resolve("a", scheduler));
+		check(Integer.valueOf(1).equals(values[0]) && "a".equals(values[1]), "awaitAll should keep the order");
+	}
+
+	private static void awaitStartsLazy(PromiseScheduler scheduler) throws Exception {
+		final AtomicInteger runs = new AtomicInteger();
+		Promise<Integer> lazy = Promise.lazy(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> locker) {
+				locker.resolve(runs.incrementAndGet());
+			}
+		}, scheduler);
+		check(lazy.await(1, TimeUnit.SECONDS) == 1, "await should start a lazy promise");
+		check(runs.get() == 1, "the lazy function should run once");
+	}
+
+	/* a promise which is never settled by its producer */
+	private static Promise<Integer> never(PromiseScheduler scheduler, final AtomicReference<Locker<Integer>> ref)
+			throws Exception {
+		Promise<Integer> p = Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> locker) {
+				ref.set(locker);
+			}
+		}, scheduler);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (ref.get() == null) {
+			check(System.nanoTime() < deadline, "function never ran");
+			Thread.sleep(1);
+		}
+		return p;
+	}
+}
@@ -0,0 +1,174 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.PromiseBatcher;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * PromiseBatcher的测试: 一个tick内的合并, maxBatchSize, 重复key, 缺少的key以及失败的批次
+ */
+public class PromiseBatcherTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("batcher-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				coalesceWithinTick(scheduler);
+				dispatchWhenFull(scheduler);
+				missingKey(scheduler);
+				failedBatch(scheduler);
+				System.out.println("PromiseBatcherTest passed");
+			}
+		});
+	}
+
+	private static void coalesceWithinTick(PromiseScheduler scheduler) throws Exception {
+		final Recorder recorder = new Recorder(scheduler, null);
+		final PromiseBatcher<String, String> batcher = PromiseBatcher.create(recorder, scheduler, 100);
+		final List<Promise<String>> results = new CopyOnWriteArrayList<>();
+		runOn(scheduler, new Runnable() {
+			@Override
+			public void run() {
+				for (String key : Arrays.asList("a", "b", "a", "c")) {
+					results.add(batcher.load(key));
+				}
+			}
+		});
+		check(results.get(0).await(1, TimeUnit.SECONDS).equals("A"), "a should be loaded");
+		check(results.get(2).await(1, TimeUnit.SECONDS).equals("A"), "a duplicate key should share the value");
+		check(results.get(3).await(1, TimeUnit.SECONDS).equals("C"), "c should be loaded");
+		check(recorder.batches.equals(Arrays.asList(Arrays.asList("a", "b", "c"))),
+				"one tick should be one batch, each key once: " + recorder.batches);
+		check(batcher.stats().keyCount() == 3, "duplicates should be counted once: " + batcher.stats());
+
+		// the next tick opens a new batch
+		batcher.load("d").await(1, TimeUnit.SECONDS);
+		check(recorder.batches.size() == 2, "a later tick should be a new batch: " + recorder.batches);
+	}
+
+	private static void dispatchWhenFull(final PromiseScheduler scheduler) throws Exception {
+		final Recorder recorder = new Recorder(scheduler, null);
+		final PromiseBatcher<String, String> batcher = PromiseBatcher.create(recorder, scheduler, 3);
+		final List<Promise<String>> results = new CopyOnWriteArrayList<>();
+		final int[] dispatchedWhenFull = new int[1];
+		runOn(scheduler, new Runnable() {
+			@Override
+			public void run() {
+				// queued before the flush of the second window, after the stale flush of the first
+				final Runnable later = new Runnable() {
+					@Override
+					public void run() {
+						results.add(batcher.load("5"));
+					}
+				};
+				results.add(batcher.load("1"));
+				results.add(batcher.load("2"));
+				results.add(batcher.load("3"));
+				dispatchedWhenFull[0] = recorder.batches.size();
+				scheduler.execute(later);
+				results.add(batcher.load("4"));
+			}
+		});
+		for (Promise<String> p : results) {
+			p.await(1, TimeUnit.SECONDS);
+		}
+		check(results.size() == 5, "every key should be loaded");
+		check(dispatchedWhenFull[0] == 1, "a full batch should be dispatched at once");
+		check(recorder.batches.equals(Arrays.asList(Arrays.asList("1", "2", "3"), Arrays.asList("4", "5"))),
+				"the stale flush of a full window should not cut the next one: " + recorder.batches);
+	}
+
+	private static void missingKey(PromiseScheduler scheduler) throws Exception {
+		Recorder recorder = new Recorder(scheduler, null);
+		PromiseBatcher<String, String> batcher = PromiseBatcher.create(recorder, scheduler, 100);
+		recorder.missing = "b";
+		Promise<String> a = batcher.load("a");
+		Promise<String> b = batcher.load("b");
+		check("A".equals(a.await(1, TimeUnit.SECONDS)), "a present key should resolve");
+		try {
+			b.await(1, TimeUnit.SECONDS);
+			check(false, "a missing key should fail");
+		} catch (NoSuchElementException expected) {
+			// no value for key b
+		}
+	}
+
+	private static void failedBatch(PromiseScheduler scheduler) throws Exception {
+		IOException failure = new IOException("batch");
+		Recorder recorder = new Recorder(scheduler, failure);
+		final PromiseBatcher<String, String> batcher = PromiseBatcher.create(recorder, scheduler, 100);
+		final List<Promise<String>> results = new CopyOnWriteArrayList<>();
+		// loaded in one tick, from this thread the flush could cut them into two batches
+		runOn(scheduler, new Runnable() {
+			@Override
+			public void run() {
+				for (String key : Arrays.asList("a", "b", "a")) {
+					results.add(batcher.load(key));
+				}
+			}
+		});
+		for (Promise<String> p : results) {
+			try {
+				p.await(1, TimeUnit.SECONDS);
+				check(false, "a failed batch should reject every caller");
+			} catch (IOException expected) {
+				check(expected == failure, "every caller should see the batch failure");
+			}
+		}
+		check(batcher.stats().failedBatchCount() == 1, "one failed batch: " + batcher.stats());
+	}
+
+	/* upper-cases every key, records each batch */
+	private static final class Recorder implements PromiseBatcher.BatchLoader<String, String> {
+		final List<List<String>> batches = new CopyOnWriteArrayList<>();
+		final PromiseScheduler scheduler;
+		final Exception failure;
+		volatile String missing;
+
+		Recorder(PromiseScheduler scheduler, Exception failure) {
+			this.scheduler = scheduler;
+			this.failure = failure;
+		}
+
+		@Override
+		public Promise<Map<String, String>> batchLoad(List<String> keys) {
+			batches.add(keys);
+			if (failure != null) {
+				return Promise.reject(failure, scheduler);
+			}
+			Map<String, String> values = new HashMap<>();
+			for (String key : keys) {
+				if (!key.equals(missing)) {
+					values.put(key, key.toUpperCase());
+				}
+			}
+			return Promise.resolve(values, scheduler);
+		}
+	}
+
+	private static void runOn(PromiseScheduler scheduler, final Runnable task) throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(1);
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					task.run();
+				} finally {
+					done.countDown();
+				}
+			}
+		});
+		check(done.await(1, TimeUnit.SECONDS), "the task should run");
+	}
+}
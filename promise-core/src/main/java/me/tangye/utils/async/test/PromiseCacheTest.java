@@ -0,0 +1,199 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.PromiseCache;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * PromiseCache的测试: single-flight, LRU淘汰, 过期, 后台刷新, 失败不缓存以及调用者各自取消
+ */
+public class PromiseCacheTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("cache-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				singleFlight(scheduler);
+				lruEviction(scheduler);
+				reloadAfterExpiry(scheduler);
+				refreshServesStale(scheduler);
+				failureNotCached(scheduler);
+				cancelOneCaller(scheduler);
+				System.out.println("PromiseCacheTest passed");
+			}
+		});
+	}
+
+	private static void singleFlight(PromiseScheduler scheduler) throws Exception {
+		final Recorder recorder = new Recorder();
+		final PromiseCache<String, String> cache = PromiseCache.create(recorder, scheduler, 10);
+		final List<Promise<String>> results = new CopyOnWriteArrayList<>();
+		final CountDownLatch start = new CountDownLatch(1);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					results.add(cache.get("k"));
+				}
+			});
+			t.start();
+			threads.add(t);
+		}
+		start.countDown();
+		for (Thread t : threads) {
+			t.join();
+		}
+		waitFor(recorder.lockers, 1);
+		recorder.lockers.get(0).resolve("v");
+		for (Promise<String> p : results) {
+			check("v".equals(p.await(1, TimeUnit.SECONDS)), "every caller should share the load");
+		}
+		check(recorder.keys.size() == 1, "concurrent gets should run one load: " + recorder.keys);
+		PromiseCache.Stats stats = cache.stats();
+		check(stats.missCount() == 1 && stats.hitCount() == 7, "one miss and seven hits: " + stats);
+		check(cache.get("k") == cache.get("k"), "a loaded value should be shared, not cloned");
+	}
+
+	private static void lruEviction(PromiseScheduler scheduler) throws Exception {
+		Recorder recorder = new Recorder();
+		PromiseCache<String, String> cache = PromiseCache.create(recorder, scheduler, 2);
+		cache.put("a", "A");
+		cache.put("b", "B");
+		// touch a, b becomes the eldest
+		check(cache.getIfPresent("a") != null, "a should be present");
+		cache.put("c", "C");
+		check(cache.size() == 2, "the size should stay at maximumSize: " + cache.size());
+		check(cache.getIfPresent("b") == null, "the least recently used key should be evicted");
+		check(cache.getIfPresent("a") != null && cache.getIfPresent("c") != null, "recent keys should stay");
+		check(cache.stats().evictionCount() == 1, "one eviction: " + cache.stats());
+		// an evicted key is loaded again
+		Promise<String> b = cache.get("b");
+		waitFor(recorder.lockers, 1);
+		recorder.lockers.get(0).resolve("B2");
+		check("B2".equals(b.await(1, TimeUnit.SECONDS)), "an evicted key should be reloaded");
+	}
+
+	private static void reloadAfterExpiry(PromiseScheduler scheduler) throws Exception {
+		Recorder recorder = new Recorder();
+		PromiseCache<String, String> cache = PromiseCache.create(recorder, scheduler, 10).expireAfterWrite(30);
+		Promise<String> first = cache.get("k");
+		waitFor(recorder.lockers, 1);
+		recorder.lockers.get(0).resolve("v1");
+		check("v1".equals(first.await(1, TimeUnit.SECONDS)), "the first load should be served");
+		check(cache.getIfPresent("k") != null, "a fresh value should be present");
+		Thread.sleep(50);
+		check(cache.getIfPresent("k") == null, "an expired value should not be present");
+		Promise<String> second = cache.get("k");
+		waitFor(recorder.lockers, 2);
+		check(!isSettled(second), "the caller should wait for the reload");
+		recorder.lockers.get(1).resolve("v2");
+		check("v2".equals(second.await(1, TimeUnit.SECONDS)), "an expired key should be reloaded");
+	}
+
+	private static void refreshServesStale(PromiseScheduler scheduler) throws Exception {
+		Recorder recorder = new Recorder();
+		PromiseCache<String, String> cache = PromiseCache.create(recorder, scheduler, 10).refreshAfterWrite(30);
+		Promise<String> first = cache.get("k");
+		waitFor(recorder.lockers, 1);
+		recorder.lockers.get(0).resolve("v1");
+		first.await(1, TimeUnit.SECONDS);
+		Thread.sleep(50);
+		Promise<String> stale = cache.get("k");
+		Promise<String> again = cache.get("k");
+		check(isSettled(stale) && "v1".equals(stale.await()), "the stale value should be served at once");
+		check("v1".equals(again.await()), "the stale value should be served during the refresh");
+		waitFor(recorder.lockers, 2);
+		Thread.sleep(20);
+		check(recorder.keys.size() == 2, "only one background load should run: " + recorder.keys);
+		recorder.lockers.get(1).resolve("v2");
+		waitForValue(cache, "k", "v2");
+	}
+
+	private static void failureNotCached(PromiseScheduler scheduler) throws Exception {
+		Recorder recorder = new Recorder();
+		PromiseCache<String, String> cache = PromiseCache.create(recorder, scheduler, 10);
+		Promise<String> failed = cache.get("k");
+		waitFor(recorder.lockers, 1);
+		recorder.lockers.get(0).reject(new IOException("load"));
+		try {
+			failed.await(1, TimeUnit.SECONDS);
+			check(false, "the load should fail");
+		} catch (IOException expected) {
+			// the loader's failure
+		}
+		check(cache.size() == 0 && cache.getIfPresent("k") == null, "a failed load should not be cached");
+		Promise<String> retried = cache.get("k");
+		waitFor(recorder.lockers, 2);
+		recorder.lockers.get(1).resolve("v");
+		check("v".equals(retried.await(1, TimeUnit.SECONDS)), "the next get should load again");
+		check(cache.stats().loadFailureCount() == 1 && cache.stats().loadSuccessCount() == 1,
+				"one failure and one success: " + cache.stats());
+	}
+
+	private static void cancelOneCaller(PromiseScheduler scheduler) throws Exception {
+		Recorder recorder = new Recorder();
+		PromiseCache<String, String> cache = PromiseCache.create(recorder, scheduler, 10);
+		Promise<String> first = cache.get("k");
+		Promise<String> second = cache.get("k");
+		waitFor(recorder.lockers, 1);
+		check(first.cancel(), "a loading clone should be cancelled");
+		Thread.sleep(20);
+		check(!recorder.lockers.get(0).isCancelled(), "the load should not see one caller's cancel");
+		recorder.lockers.get(0).resolve("v");
+		check("v".equals(second.await(1, TimeUnit.SECONDS)), "other callers should still get the value");
+		try {
+			first.await();
+			check(false, "the cancelled caller should stay cancelled");
+		} catch (CancellationException expected) {
+			// cancelled by its caller only
+		}
+		check("v".equals(cache.get("k").await()), "the value should be cached");
+	}
+
+	/* records every load, settled by the test */
+	private static final class Recorder implements PromiseCache.Loader<String, String> {
+		final List<String> keys = new CopyOnWriteArrayList<>();
+		final List<Locker<String>> lockers = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void load(String key, Locker<String> locker) {
+			keys.add(key);
+			lockers.add(locker);
+		}
+	}
+
+	private static boolean isSettled(Promise<?> promise) throws Exception {
+		try {
+			promise.await(0, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (TimeoutException e) {
+			return false;
+		}
+	}
+
+	private static void waitForValue(PromiseCache<String, String> cache, String key, String value)
+			throws Exception {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (!value.equals(cache.get(key).await(1, TimeUnit.SECONDS))) {
+			check(System.nanoTime() < deadline, "the refreshed value should replace the stale one");
+			Thread.sleep(1);
+		}
+	}
+}
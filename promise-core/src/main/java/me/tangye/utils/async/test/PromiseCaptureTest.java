@@ -0,0 +1,147 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.CapturePolicy;
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * CapturePolicy的测试: OFF不附加任何trace, sampled(N)只给每N个Promise附加完整的调用栈,
+ * 其余的只附加类型, trace按照传递顺序附加, 调度器的策略优先于全局默认策略
+ */
+public class PromiseCaptureTest extends Harness {
+
+	private static final int PROMISES = 40;
+	private static final String FULL = "promise created by ";
+	private static final String CHEAP = "promise stage ";
+
+	public static void main(String... args) throws Exception {
+		run("capture-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				off(scheduler);
+				sampled(scheduler);
+				always(scheduler);
+				tracesInOrder(scheduler);
+				schedulerOverridesDefault(scheduler);
+				invalidPolicy();
+				System.out.println("PromiseCaptureTest passed");
+			}
+		});
+	}
+
+	private static void off(PromiseScheduler scheduler) throws Exception {
+		scheduler.setCapturePolicy(CapturePolicy.OFF);
+		for (int i = 0; i < PROMISES; i++) {
+			check(failure(scheduler).getSuppressed().length == 0, "OFF should attach nothing");
+		}
+	}
+
+	private static void sampled(PromiseScheduler scheduler) throws Exception {
+		scheduler.setCapturePolicy(CapturePolicy.sampled(4));
+		int full = 0;
+		for (int i = 0; i < PROMISES; i++) {
+			Throwable[] traces = failure(scheduler).getSuppressed();
+			check(traces.length == 1, "every failure should carry one trace");
+			if (isFull(traces[0])) {
+				full++;
+			} else {
+				check(traces[0].getMessage().startsWith(CHEAP), "the others should carry the stage type");
+				check(traces[0].getStackTrace().length == 0, "the stage type should not fill a stack");
+			}
+		}
+		check(full == PROMISES / 4, "every 4th promise should carry a full site: " + full);
+	}
+
+	private static void always(PromiseScheduler scheduler) throws Exception {
+		scheduler.setCapturePolicy(CapturePolicy.ALWAYS);
+		for (int i = 0; i < PROMISES; i++) {
+			Throwable[] traces = failure(scheduler).getSuppressed();
+			check(traces.length == 1 && isFull(traces[0]), "ALWAYS should attach a full site to each promise");
+			StackTraceElement top = traces[0].getStackTrace()[0];
+			check(top.getClassName().equals(PromiseCaptureTest.class.getName()),
+					"the site should start at the caller: " + top);
+		}
+	}
+
+	private static void tracesInOrder(PromiseScheduler scheduler) throws Exception {
+		scheduler.setCapturePolicy(CapturePolicy.ALWAYS);
+		Promise<Integer> chained = rejected(scheduler).then(new Pass());
+		Throwable[] traces = exception(chained).getSuppressed();
+		check(traces.length == 2, "each promise passing the failure should attach its site: " + traces.length);
+		check(traces[0].getMessage().startsWith(FULL + Reject.class.getName()), "the source should come first");
+		check(traces[1].getMessage().startsWith(FULL + Pass.class.getName()), "the resolver should come next");
+	}
+
+	private static void schedulerOverridesDefault(PromiseScheduler scheduler) throws Exception {
+		CapturePolicy previous = CapturePolicy.getDefault();
+		try {
+			CapturePolicy.setDefault(CapturePolicy.ALWAYS);
+			scheduler.setCapturePolicy(CapturePolicy.OFF);
+			check(failure(scheduler).getSuppressed().length == 0, "the scheduler's policy should win");
+			scheduler.setCapturePolicy(null);
+			check(failure(scheduler).getSuppressed().length == 1, "without its own policy the default applies");
+		} finally {
+			CapturePolicy.setDefault(previous);
+			scheduler.setCapturePolicy(null);
+		}
+	}
+
+	private static void invalidPolicy() {
+		check(CapturePolicy.sampled(1) == CapturePolicy.ALWAYS, "sampled(1) should be ALWAYS");
+		try {
+			CapturePolicy.sampled(0);
+			check(false, "a rate below 1 should be rejected");
+		} catch (IllegalArgumentException expected) {
+			// the rate should be positive
+		}
+		try {
+			CapturePolicy.setDefault(null);
+			check(false, "a null default should be rejected");
+		} catch (IllegalArgumentException expected) {
+			// a policy is required
+		}
+	}
+
+	private static final class Reject implements DirectFunction<Integer> {
+		@Override
+		public void run(Locker<Integer> locker) {
+			locker.reject(new IOException("capture"));
+		}
+	}
+
+	private static final class Pass extends SimpleResolver<Integer, Integer> {
+		@Override
+		public Integer resolve(Integer newValue) {
+			return newValue;
+		}
+	}
+
+	private static Promise<Integer> rejected(PromiseScheduler scheduler) {
+		return Promise.make(new Reject(), scheduler);
+	}
+
+	/* made on this thread, so the policy counts in creation order */
+	private static Exception failure(PromiseScheduler scheduler) throws Exception {
+		return exception(rejected(scheduler));
+	}
+
+	private static Exception exception(Promise<Integer> promise) throws Exception {
+		try {
+			promise.await(1, TimeUnit.SECONDS);
+		} catch (IOException e) {
+			return e;
+		}
+		throw new AssertionError("the promise should fail");
+	}
+
+	private static boolean isFull(Throwable trace) {
+		return trace.getMessage().startsWith(FULL) && trace.getStackTrace().length > 0;
+	}
+}
@@ -0,0 +1,178 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.PromiseChain;
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.resolver.ExceptionResolver;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * fuse()的测试: 融合的处理链按顺序执行, 每次promise()都重新执行所有的处理过程,
+ * 异常跳过后续的处理直到被处理, 中途返回的Promise完成后继续剩余的处理过程
+ */
+public class PromiseChainTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("chain-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				stagesInOrder(scheduler);
+				promiseRerunsStages(scheduler);
+				sharedPrefix(scheduler);
+				exceptionSkipsStages(scheduler);
+				thenableResumesStages(scheduler);
+				emptyChain(scheduler);
+				System.out.println("PromiseChainTest passed");
+			}
+		});
+	}
+
+	private static void stagesInOrder(PromiseScheduler scheduler) throws Exception {
+		List<String> order = new CopyOnWriteArrayList<>();
+		Promise<Integer> fused = Promise.resolve(1, scheduler).fuse()
+				.then(add(order, "a", 1))
+				.then(add(order, "b", 10))
+				.then(add(order, "c", 100))
+				.promise();
+		check(fused.await(1, TimeUnit.SECONDS) == 112, "the stages should all apply");
+		check(order.toString().equals("[a, b, c]"), "the stages should run in order: " + order);
+	}
+
+	private static void promiseRerunsStages(PromiseScheduler scheduler) throws Exception {
+		List<String> order = new CopyOnWriteArrayList<>();
+		PromiseChain<Integer> chain = Promise.resolve(1, scheduler).fuse()
+				.then(add(order, "a", 1))
+				.then(add(order, "b", 1));
+		check(order.isEmpty(), "a chain should not run before promise()");
+		Promise<Integer> first = chain.promise();
+		Promise<Integer> second = chain.promise();
+		check(first != second, "each promise() should make a new promise");
+		check(first.await(1, TimeUnit.SECONDS) == 3 && second.await(1, TimeUnit.SECONDS) == 3,
+				"each run should see the source value");
+		check(order.size() == 4, "each promise() should run every stage again: " + order);
+		chain.then(new SimpleResolver<Integer, Integer>() {
+			@Override
+			public Integer resolve(Integer newValue) {
+				return newValue;
+			}
+		}).promise().await(1, TimeUnit.SECONDS);
+		check(order.size() == 6, "a longer chain should run the shared stages again: " + order);
+	}
+
+	private static void sharedPrefix(PromiseScheduler scheduler) throws Exception {
+		List<String> order = new CopyOnWriteArrayList<>();
+		PromiseChain<Integer> prefix = Promise.resolve(1, scheduler).fuse().then(add(order, "p", 1));
+		PromiseChain<Integer> left = prefix.then(add(order, "l", 10));
+		PromiseChain<Integer> right = prefix.then(add(order, "r", 100));
+		check(left.promise().await(1, TimeUnit.SECONDS) == 12, "the left branch should skip the right stage");
+		check(right.promise().await(1, TimeUnit.SECONDS) == 102, "the right branch should skip the left stage");
+		check(order.toString().equals("[p, l, p, r]"), "a branch should not change the prefix: " + order);
+	}
+
+	private static void exceptionSkipsStages(PromiseScheduler scheduler) throws Exception {
+		List<String> order = new CopyOnWriteArrayList<>();
+		final IOException failure = new IOException("stage");
+		Promise<Integer> fused = Promise.resolve(1, scheduler).fuse()
+				.then(new SimpleResolver<Integer, Integer>() {
+					@Override
+					public Integer resolve(Integer newValue) {
+						throw Promise.newException(failure);
+					}
+				})
+				.then(add(order, "skipped", 1))
+				.exception(new ExceptionResolver<Integer, IOException>() {
+					@Override
+					public Integer onCatch(IOException exception) {
+						return exception == failure ? -1 : -2;
+					}
+				})
+				.then(add(order, "after", 1))
+				.promise();
+		check(fused.await(1, TimeUnit.SECONDS) == 0, "the failure should be caught and the chain go on");
+		check(order.toString().equals("[after]"), "a failure should skip the stages until caught: " + order);
+
+		Promise<Integer> uncaught = Promise.resolve(1, scheduler).fuse()
+				.then(new SimpleResolver<Integer, Integer>() {
+					@Override
+					public Integer resolve(Integer newValue) {
+						throw Promise.newException(failure);
+					}
+				})
+				.then(add(order, "skipped", 1))
+				.promise();
+		try {
+			uncaught.await(1, TimeUnit.SECONDS);
+			check(false, "an uncaught failure should reject the promise");
+		} catch (IOException expected) {
+			check(expected == failure, "the failure should be unwrapped");
+		}
+	}
+
+	private static void thenableResumesStages(final PromiseScheduler scheduler) throws Exception {
+		List<String> order = new CopyOnWriteArrayList<>();
+		Promise<Integer> fused = Promise.resolve(1, scheduler).fuse()
+				.then(add(order, "a", 1))
+				.then(new DirectResolver<Integer, Object>() {
+					@Override
+					public Object resolve(final Integer newValue) {
+						// still pending when returned
+						return Promise.make(new DirectFunction<Integer>() {
+							@Override
+							public void run(final Locker<Integer> locker) {
+								locker.post(new Runnable() {
+									@Override
+									public void run() {
+										locker.resolve(newValue * 10);
+									}
+								});
+							}
+						}, scheduler);
+					}
+
+					@Override
+					public Object reject(Exception exception) {
+						throw Promise.newException(exception);
+					}
+				})
+				.then(new SimpleResolver<Object, Integer>() {
+					@Override
+					public Integer resolve(Object newValue) {
+						return (Integer) newValue + 1;
+					}
+				})
+				.then(add(order, "c", 1))
+				.promise();
+		check(fused.await(1, TimeUnit.SECONDS) == 22, "the stages after a promise should see its value");
+		check(order.toString().equals("[a, c]"), "the rest should run after the promise: " + order);
+	}
+
+	private static void emptyChain(PromiseScheduler scheduler) throws Exception {
+		Promise<Integer> source = Promise.resolve(1, scheduler);
+		check(source.fuse().promise() == source, "an empty chain should be the source itself");
+		try {
+			source.fuse().then((DirectResolver<Integer, Integer>) null);
+			check(false, "a null stage should be rejected");
+		} catch (IllegalArgumentException expected) {
+			// a stage is required
+		}
+	}
+
+	private static SimpleResolver<Integer, Integer> add(final List<String> order, final String name, final int n) {
+		return new SimpleResolver<Integer, Integer>() {
+			@Override
+			public Integer resolve(Integer newValue) {
+				order.add(name);
+				return newValue + n;
+			}
+		};
+	}
+}
@@ -0,0 +1,163 @@
+package me.tangye.utils.async.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 一次完成中批量执行resolver的测试: 超过调度器的drain budget后, 剩余的resolver重新post到队尾,
+ * 其他任务可以插入执行, 但resolver之间的顺序不变; resolver抛出异常或者Error时剩余的resolver继续执行
+ */
+public class PromiseDrainTest extends Harness {
+
+	private static final int RESOLVERS = 20;
+	private static final String OTHER = "other";
+
+	private static final List<Throwable> UNCAUGHT = new CopyOnWriteArrayList<>();
+
+	public static void main(String... args) throws Exception {
+		Thread.UncaughtExceptionHandler previous = collectUncaught(UNCAUGHT);
+		try {
+			run("drain-test", new Body() {
+				@Override
+				public void run(EventLoopScheduler scheduler) throws Exception {
+					unlimited(scheduler);
+					countBudget(scheduler);
+					timeBudget(scheduler);
+					throwingResolver(scheduler);
+					System.out.println("PromiseDrainTest passed");
+				}
+			});
+		} finally {
+			Thread.setDefaultUncaughtExceptionHandler(previous);
+		}
+	}
+
+	private static void unlimited(PromiseScheduler scheduler) throws Exception {
+		scheduler.setDrainBudget(0, 0);
+		List<Object> order = run(scheduler, -1, 0);
+		check(order.indexOf(OTHER) == RESOLVERS, "without a budget the batch should not yield: " + order);
+		check(inOrder(order), "the resolvers should run in order: " + order);
+	}
+
+	private static void countBudget(PromiseScheduler scheduler) throws Exception {
+		scheduler.setDrainBudget(4, 0);
+		try {
+			List<Object> order = run(scheduler, -1, 0);
+			check(order.indexOf(OTHER) == 4, "the batch should yield after 4 resolvers: " + order);
+			check(inOrder(order), "the re-posted rest should keep its order: " + order);
+		} finally {
+			scheduler.setDrainBudget(PromiseScheduler.DEFAULT_DRAIN_LIMIT, 0);
+		}
+	}
+
+	private static void timeBudget(PromiseScheduler scheduler) throws Exception {
+		scheduler.setDrainBudget(0, 5);
+		try {
+			List<Object> order = run(scheduler, -1, 2);
+			int other = order.indexOf(OTHER);
+			check(other > 0 && other < RESOLVERS, "the batch should yield once over time: " + order);
+			check(inOrder(order), "the re-posted rest should keep its order: " + order);
+		} finally {
+			scheduler.setDrainBudget(PromiseScheduler.DEFAULT_DRAIN_LIMIT, 0);
+		}
+	}
+
+	private static void throwingResolver(PromiseScheduler scheduler) throws Exception {
+		scheduler.setDrainBudget(4, 0);
+		try {
+			UNCAUGHT.clear();
+			List<Object> order = run(scheduler, 2, 0);
+			check(inOrder(order), "the resolvers after an Error should still run in order: " + order);
+			check(UNCAUGHT.size() == 1 && UNCAUGHT.get(0) instanceof AssertionError,
+					"the Error should reach the scheduler: " + UNCAUGHT);
+		} finally {
+			scheduler.setDrainBudget(PromiseScheduler.DEFAULT_DRAIN_LIMIT, 0);
+		}
+	}
+
+	/**
+	 * 在一个Promise上注册RESOLVERS个resolver, 第一个resolver再post一个其他任务
+	 * @param throwAt 抛出Error的resolver, -1表示没有
+	 * @param sleep 每个resolver耗费的毫秒数
+	 * @return resolver以及其他任务的执行顺序, 抛出Error的resolver记录在抛出之前
+	 */
+	private static List<Object> run(final PromiseScheduler scheduler, final int throwAt, final long sleep)
+			throws Exception {
+		final AtomicReference<Locker<Integer>> head = new AtomicReference<>();
+		final List<Object> order = new CopyOnWriteArrayList<>();
+		Promise<Integer> source = Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> locker) {
+				head.set(locker);
+			}
+		}, scheduler);
+		List<Promise<Integer>> results = new ArrayList<>();
+		for (int i = 0; i < RESOLVERS; i++) {
+			final int index = i;
+			results.add(source.then(new SimpleResolver<Integer, Integer>() {
+				@Override
+				public Integer resolve(Integer newValue) {
+					order.add(index);
+					if (index == 0) {
+						scheduler.execute(new Runnable() {
+							@Override
+							public void run() {
+								order.add(OTHER);
+							}
+						});
+					}
+					if (sleep > 0) {
+						try {
+							Thread.sleep(sleep);
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+						}
+					}
+					if (index == throwAt) {
+						throw new AssertionError("resolver " + index);
+					}
+					return index;
+				}
+			}));
+		}
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (head.get() == null) {
+			check(System.nanoTime() < deadline, "the source should start");
+			Thread.sleep(1);
+		}
+		head.get().resolve(0);
+		for (int i = 0; i < RESOLVERS; i++) {
+			if (i != throwAt) {
+				results.get(i).await(1, TimeUnit.SECONDS);
+			}
+		}
+		// the other task may come after the last resolver
+		deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (!order.contains(OTHER)) {
+			check(System.nanoTime() < deadline, "the other task should run");
+			Thread.sleep(1);
+		}
+		return order;
+	}
+
+	/* the resolvers, ignoring the other task, ran as 0, 1, 2 ... */
+	private static boolean inOrder(List<Object> order) {
+		int next = 0;
+		for (Object o : order) {
+			if (o instanceof Integer && (Integer) o != next++) {
+				return false;
+			}
+		}
+		return next == RESOLVERS;
+	}
+}
@@ -0,0 +1,177 @@
+package me.tangye.utils.async.test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.ExecuteException;
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.resolver.ExceptionPromiseResolver;
+import me.tangye.utils.async.resolver.ExceptionResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 异常处理的测试: ExceptionResolver按照实际的异常类型过滤, catchException(Class, ...)的分发,
+ * 以及包装了cause的ExecuteException不填充调用栈
+ */
+public class PromiseExceptionTest extends Harness {
+
+	private static final int CAUGHT = -1;
+
+	public static void main(String... args) throws Exception {
+		run("exception-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				typedSubclass(scheduler);
+				hierarchySubclass(scheduler);
+				rawSubclassCatchesAll(scheduler);
+				genericSubclassCatchesAll(scheduler);
+				classConstructor(scheduler);
+				catchExceptionByClass(scheduler);
+				promiseResolver(scheduler);
+				stacklessWrapper();
+				System.out.println("PromiseExceptionTest passed");
+			}
+		});
+	}
+
+	private static void typedSubclass(PromiseScheduler scheduler) throws Exception {
+		ExceptionResolver<Integer, IOException> resolver = new ExceptionResolver<Integer, IOException>() {
+			@Override
+			public Integer onCatch(IOException exception) {
+				return CAUGHT;
+			}
+		};
+		check(caught(scheduler, new IOException("io"), resolver), "the declared type should be caught");
+		check(caught(scheduler, new FileNotFoundException("file"), resolver), "a subtype should be caught");
+		check(passed(scheduler, new IllegalStateException("state"), resolver), "other exceptions should pass on");
+		check(value(Promise.resolve(3, scheduler).then(resolver)) == 3, "a value should pass on");
+	}
+
+	private static void hierarchySubclass(PromiseScheduler scheduler) throws Exception {
+		ExceptionResolver<Integer, ?> resolver = new IoCatcher();
+		check(caught(scheduler, new IOException("io"), resolver), "E bound by a superclass should be caught");
+		check(passed(scheduler, new IllegalStateException("state"), resolver), "other exceptions should pass on");
+	}
+
+	@SuppressWarnings({"rawtypes", "unchecked"})
+	private static void rawSubclassCatchesAll(PromiseScheduler scheduler) throws Exception {
+		ExceptionResolver resolver = new ExceptionResolver() {
+			@Override
+			public Object onCatch(Throwable exception) {
+				return CAUGHT;
+			}
+		};
+		check(caught(scheduler, new IllegalStateException("state"), resolver), "a raw subclass should catch all");
+		check(caught(scheduler, new IOException("io"), resolver), "a raw subclass should catch all");
+	}
+
+	private static void genericSubclassCatchesAll(PromiseScheduler scheduler) throws Exception {
+		// E is only known at the call site, erased at runtime
+		ExceptionResolver<Integer, IOException> resolver = new Catcher<>();
+		check(caught(scheduler, new IllegalStateException("state"), resolver), "an unknown E should catch all");
+	}
+
+	private static void classConstructor(PromiseScheduler scheduler) throws Exception {
+		ExceptionResolver<Integer, IOException> resolver = new Catcher<>(IOException.class);
+		check(caught(scheduler, new FileNotFoundException("file"), resolver), "the given type should be caught");
+		check(passed(scheduler, new IllegalStateException("state"), resolver), "the given type should filter");
+		try {
+			new Catcher<IOException>(null);
+			check(false, "a null type should be rejected");
+		} catch (IllegalArgumentException expected) {
+			// the type is required
+		}
+	}
+
+	private static void catchExceptionByClass(PromiseScheduler scheduler) throws Exception {
+		ExceptionResolver<Integer, Exception> all = new ExceptionResolver<Integer, Exception>() {
+			@Override
+			public Integer onCatch(Exception exception) {
+				return CAUGHT;
+			}
+		};
+		Promise<Integer> io = Promise.reject(new FileNotFoundException("file"), scheduler);
+		check(value(io.catchException(IOException.class, all)) == CAUGHT, "the given class should be caught");
+		Promise<Integer> state = Promise.reject(new IllegalStateException("state"), scheduler);
+		try {
+			value(state.catchException(IOException.class, all));
+			check(false, "the given class should win over the resolver's own type");
+		} catch (IllegalStateException expected) {
+			// passed on unwrapped
+		}
+		Promise<Integer> again = Promise.reject(new IOException("io"), scheduler);
+		check(value(again.catchException(IOException.class, new ExceptionPromiseResolver<Integer, Exception>() {
+			@Override
+			public Promise<Integer> onCatch(Exception exception) {
+				return Promise.resolve(CAUGHT);
+			}
+		})) == CAUGHT, "the promise overload should dispatch the same way");
+	}
+
+	private static void promiseResolver(PromiseScheduler scheduler) throws Exception {
+		ExceptionPromiseResolver<Integer, IOException> resolver = new ExceptionPromiseResolver<Integer, IOException>() {
+			@Override
+			public Promise<Integer> onCatch(IOException exception) {
+				return Promise.resolve(CAUGHT);
+			}
+		};
+		Promise<Integer> io = Promise.reject(new IOException("io"), scheduler);
+		check(value(io.then(resolver)) == CAUGHT, "the declared type should be caught");
+		Promise<Integer> state = Promise.reject(new IllegalStateException("state"), scheduler);
+		try {
+			value(state.then(resolver));
+			check(false, "other exceptions should pass on");
+		} catch (IllegalStateException expected) {
+			// passed on unwrapped
+		}
+	}
+
+	private static void stacklessWrapper() {
+		IOException cause = new IOException("io");
+		check(Promise.newException(cause).getStackTrace().length == 0, "a wrapper should not fill its stack");
+		check(new ExecuteException("message", cause).getStackTrace().length == 0, "a wrapper should not fill its stack");
+		check(new ExecuteException(cause).getCause() == cause, "the cause should be kept");
+		check(new ExecuteException("message").getStackTrace().length > 0, "without a cause the stack is filled");
+		check(new ExecuteException().getStackTrace().length > 0, "without a cause the stack is filled");
+	}
+
+	private static boolean caught(PromiseScheduler scheduler, Exception e,
+								  ExceptionResolver<Integer, ?> resolver) throws Exception {
+		return value(Promise.<Integer>reject(e, scheduler).then(resolver)) == CAUGHT;
+	}
+
+	private static boolean passed(PromiseScheduler scheduler, Exception e,
+								  ExceptionResolver<Integer, ?> resolver) throws Exception {
+		try {
+			value(Promise.<Integer>reject(e, scheduler).then(resolver));
+			return false;
+		} catch (Exception rejected) {
+			return rejected == e;
+		}
+	}
+
+	private static int value(Promise<Integer> promise) throws Exception {
+		return promise.await(1, TimeUnit.SECONDS);
+	}
+
+	/* E is left to its user, or given to the constructor */
+	private static class Catcher<E extends Exception> extends ExceptionResolver<Integer, E> {
+		Catcher() {
+		}
+
+		Catcher(Class<E> type) {
+			super(type);
+		}
+
+		@Override
+		public Integer onCatch(E exception) {
+			return CAUGHT;
+		}
+	}
+
+	/* E is bound one level below ExceptionResolver */
+	private static final class IoCatcher extends Catcher<IOException> {
+	}
+}
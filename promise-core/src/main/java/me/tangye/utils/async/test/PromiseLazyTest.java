@@ -0,0 +1,96 @@
+package me.tangye.utils.async.test;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.PromiseFactory;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Promise.lazy以及PromiseFactory.lazy的测试<br>
+ * function只在第一个消费者出现时执行, 并且最多执行一次
+ */
+public class PromiseLazyTest extends Harness {
+
+	private static final AtomicInteger RUNS = new AtomicInteger();
+
+	private static final DirectFunction<Integer> COUNT = new DirectFunction<Integer>() {
+		@Override
+		public void run(Locker<Integer> locker) {
+			locker.resolve(RUNS.incrementAndGet());
+		}
+	};
+
+	private static final SimpleResolver<Integer, Integer> IDENTITY = new SimpleResolver<Integer, Integer>() {
+		@Override
+		public Integer resolve(Integer newValue) {
+			return newValue;
+		}
+	};
+
+	public static void main(String... args) throws Exception {
+		run("lazy-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				startsOnFirstConsumer(scheduler);
+				cancelledNeverRuns(scheduler);
+				combinatorStarts(scheduler);
+				factoryLazy(scheduler);
+				noSchedulerOnCurrentThread();
+				System.out.println("PromiseLazyTest passed");
+			}
+		});
+	}
+
+	private static void startsOnFirstConsumer(PromiseScheduler scheduler) throws Exception {
+		RUNS.set(0);
+		Promise<Integer> p = Promise.lazy(COUNT, scheduler);
+		Thread.sleep(20);
+		check(RUNS.get() == 0, "no consumer, no run");
+		Promise<Integer> a = p.then(IDENTITY);
+		Promise<Integer> b = p.then(IDENTITY);
+		check(a.await(1, TimeUnit.SECONDS) == 1 && b.await(1, TimeUnit.SECONDS) == 1,
+				"both consumers should see the single run");
+		check(RUNS.get() == 1, "the function should run once: " + RUNS.get());
+	}
+
+	private static void cancelledNeverRuns(PromiseScheduler scheduler) throws Exception {
+		RUNS.set(0);
+		Promise<Integer> p = Promise.lazy(COUNT, scheduler);
+		p.cancel();
+		p.then(IDENTITY);
+		Thread.sleep(20);
+		check(RUNS.get() == 0, "a lazy promise cancelled before its first consumer should never run");
+	}
+
+	private static void combinatorStarts(PromiseScheduler scheduler) throws Exception {
+		RUNS.set(0);
+		Promise.all(Arrays.asList(Promise.lazy(COUNT, scheduler), Promise.lazy(COUNT, scheduler)),
+				scheduler).await(1, TimeUnit.SECONDS);
+		check(RUNS.get() == 2, "all should start every lazy promise: " + RUNS.get());
+	}
+
+	private static void factoryLazy(PromiseScheduler scheduler) throws Exception {
+		RUNS.set(0);
+		Promise<Integer> p = PromiseFactory.create(COUNT).lazy(scheduler);
+		Thread.sleep(20);
+		check(RUNS.get() == 0, "factory lazy should not run without a consumer");
+		check(p.await(1, TimeUnit.SECONDS) == 1, "await should start the factory");
+	}
+
+	private static void noSchedulerOnCurrentThread() {
+		check(PromiseScheduler.current() == null, "the main thread should have no scheduler");
+		try {
+			PromiseFactory.create(COUNT).lazy();
+			check(false, "lazy() should need a scheduler");
+		} catch (IllegalStateException expected) {
+			// like Promise.lazy without a scheduler
+		}
+	}
+}
@@ -0,0 +1,259 @@
+package me.tangye.utils.async.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.Condition;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.PromiseFactory;
+import me.tangye.utils.async.resolver.PromiseResolver;
+import me.tangye.utils.async.resolver.SimplePromiseResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Promise.loop以及repeatUntil的测试, 在受限的堆中运行<br>
+ * 百万次的循环只占用常量的内存和栈, 不会阻塞调度器上的其他任务, 取消时停止循环并释放正在等待的一步
+ */
+public class PromiseLoopTest extends Harness {
+
+	private static final int HEAP_MB = 24;
+	private static final int STEPS = 1000000;
+	private static final String CHILD = "promise.test.child";
+
+	public static void main(String... args) throws Exception {
+		if (System.getProperty(CHILD) == null) {
+			relaunch();
+			return;
+		}
+		run("loop-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				settledSteps(scheduler);
+				pendingSteps(scheduler);
+				yieldsToOtherTasks(scheduler);
+				conditionFalseAtStart(scheduler);
+				stepFailure(scheduler);
+				cancelDuringStep(scheduler);
+				repeatUntilMatch(scheduler);
+				repeatUntilFailure(scheduler);
+				cancelDuringDelay(scheduler);
+				System.out.println("PromiseLoopTest passed in a " + HEAP_MB + "MB heap");
+			}
+		});
+	}
+
+	private static void settledSteps(final PromiseScheduler scheduler) throws Exception {
+		int result = Promise.loop(0, below(STEPS), new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				return Promise.resolve(newValue + 1, scheduler);
+			}
+		}, scheduler).await(60, TimeUnit.SECONDS);
+		check(result == STEPS, "the loop should run every step: " + result);
+	}
+
+	private static void pendingSteps(final PromiseScheduler scheduler) throws Exception {
+		int result = Promise.loop(0, below(STEPS / 4), new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(final Integer newValue) {
+				return Promise.make(new DirectFunction<Integer>() {
+					@Override
+					public void run(final Locker<Integer> locker) {
+						locker.post(new Runnable() {
+							@Override
+							public void run() {
+								locker.resolve(newValue + 1);
+							}
+						});
+					}
+				}, scheduler);
+			}
+		}, scheduler).await(60, TimeUnit.SECONDS);
+		check(result == STEPS / 4, "the loop should wait for every pending step: " + result);
+	}
+
+	private static void yieldsToOtherTasks(final PromiseScheduler scheduler) throws Exception {
+		final AtomicInteger reached = new AtomicInteger();
+		final AtomicInteger seen = new AtomicInteger(-1);
+		Promise<Integer> loop = Promise.loop(0, below(STEPS), new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				reached.set(newValue);
+				return Promise.resolve(newValue + 1, scheduler);
+			}
+		}, scheduler);
+		// posted right behind the loop, it should not wait for every settled step
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				seen.set(reached.get());
+			}
+		});
+		check(loop.await(60, TimeUnit.SECONDS) == STEPS, "the loop should run every step");
+		check(seen.get() >= 0 && seen.get() < STEPS / 2,
+				"a task posted alongside should run within the drain budget: " + seen.get());
+	}
+
+	private static void conditionFalseAtStart(PromiseScheduler scheduler) throws Exception {
+		final AtomicInteger steps = new AtomicInteger();
+		int result = Promise.loop(7, below(0), new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				steps.incrementAndGet();
+				return null;
+			}
+		}, scheduler).await(1, TimeUnit.SECONDS);
+		check(result == 7 && steps.get() == 0, "a false condition should resolve the seed without a step");
+	}
+
+	private static void stepFailure(final PromiseScheduler scheduler) throws Exception {
+		try {
+			Promise.loop(0, below(10), new SimplePromiseResolver<Integer, Integer>() {
+				@Override
+				public Promise<Integer> resolve(Integer newValue) {
+					return Promise.reject(new IOException("step"), scheduler);
+				}
+			}, scheduler).await(1, TimeUnit.SECONDS);
+			check(false, "a failed step should fail the loop");
+		} catch (IOException expected) {
+			// SimplePromiseResolver passes the failure on
+		}
+		// a step resolver with reject recovers and the loop goes on
+		int result = Promise.loop(0, below(4), new PromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				return newValue == 1 ? Promise.<Integer>reject(new IOException("once"), scheduler)
+						: Promise.resolve(newValue + 1, scheduler);
+			}
+
+			@Override
+			public Promise<Integer> reject(Exception exception) {
+				return Promise.resolve(2, scheduler);
+			}
+		}, scheduler).await(1, TimeUnit.SECONDS);
+		check(result == 4, "reject should provide the next value: " + result);
+	}
+
+	private static void cancelDuringStep(final PromiseScheduler scheduler) throws Exception {
+		final AtomicReference<Locker<Integer>> stuck = new AtomicReference<>();
+		final AtomicInteger steps = new AtomicInteger();
+		Promise<Integer> loop = Promise.loop(0, below(10), new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				steps.incrementAndGet();
+				return Promise.make(new DirectFunction<Integer>() {
+					@Override
+					public void run(Locker<Integer> locker) {
+						stuck.set(locker);
+					}
+				}, scheduler);
+			}
+		}, scheduler);
+		waitFor(stuck);
+		check(loop.cancel(), "the loop should be cancelled");
+		Thread.sleep(20);
+		check(stuck.get().isCancelled(), "the step being waited for should be released and cancelled");
+		stuck.get().resolve(1);
+		Thread.sleep(20);
+		check(steps.get() == 1, "no step should run after cancel: " + steps.get());
+		try {
+			loop.await();
+			check(false, "the loop should stay cancelled");
+		} catch (CancellationException expected) {
+			// cancelled by the caller
+		}
+	}
+
+	private static void repeatUntilMatch(PromiseScheduler scheduler) throws Exception {
+		Counter counter = new Counter(null);
+		long start = System.nanoTime();
+		int result = Promise.repeatUntil(counter, atLeast(3), 10, scheduler).await(1, TimeUnit.SECONDS);
+		check(result == 3 && counter.calls.get() == 3, "repeatUntil should stop at the first match");
+		check(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20), "attempts should wait for the delay");
+		Counter immediate = new Counter(null);
+		check(Promise.repeatUntil(immediate, atLeast(1000), 0, scheduler).await(10, TimeUnit.SECONDS) == 1000,
+				"a zero delay should repeat at once");
+	}
+
+	private static void repeatUntilFailure(PromiseScheduler scheduler) throws Exception {
+		Counter counter = new Counter(new IOException("attempt"));
+		try {
+			Promise.repeatUntil(counter, atLeast(3), 0, scheduler).await(1, TimeUnit.SECONDS);
+			check(false, "a failed attempt should fail repeatUntil");
+		} catch (IOException expected) {
+			check(counter.calls.get() == 1, "a failure should not be retried");
+		}
+	}
+
+	private static void cancelDuringDelay(PromiseScheduler scheduler) throws Exception {
+		Counter counter = new Counter(null);
+		Promise<Integer> repeat = Promise.repeatUntil(counter, atLeast(100), 100, scheduler);
+		Thread.sleep(30);
+		check(counter.calls.get() == 1, "the second attempt should wait for the delay");
+		check(repeat.cancel(), "repeatUntil should be cancelled");
+		Thread.sleep(200);
+		check(counter.calls.get() == 1, "the delayed attempt should be removed on cancel: " + counter.calls.get());
+	}
+
+	/* a settled attempt returning the call count, or failing */
+	private static final class Counter extends PromiseFactory<Integer> {
+		final AtomicInteger calls = new AtomicInteger();
+		final Exception failure;
+
+		Counter(Exception failure) {
+			this.failure = failure;
+		}
+
+		@Override
+		public void run(Locker<Integer> locker) {
+			int n = calls.incrementAndGet();
+			if (failure != null) {
+				locker.reject(failure);
+			} else {
+				locker.resolve(n);
+			}
+		}
+	}
+
+	private static Condition<Integer> below(final int limit) {
+		return new Condition<Integer>() {
+			@Override
+			public boolean test(Integer value) {
+				return value < limit;
+			}
+		};
+	}
+
+	private static Condition<Integer> atLeast(final int limit) {
+		return new Condition<Integer>() {
+			@Override
+			public boolean test(Integer value) {
+				return value >= limit;
+			}
+		};
+	}
+
+	private static void waitFor(AtomicReference<?> ref) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (ref.get() == null) {
+			check(System.nanoTime() < deadline, "the step should start");
+			Thread.sleep(1);
+		}
+	}
+
+	/* the heap bound is part of the check, so run in a child jvm with a small heap */
+	private static void relaunch() throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-Xmx" + HEAP_MB + "m", "-D" + CHILD + "=true",
+				"-cp", System.getProperty("java.class.path"), PromiseLoopTest.class.getName())
+				.inheritIO().start();
+		check(process.waitFor() == 0, "the loop failed in a " + HEAP_MB + "MB heap");
+	}
+}
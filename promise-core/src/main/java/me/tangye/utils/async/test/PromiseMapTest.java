@@ -0,0 +1,137 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.tangye.utils.async.CompositeException;
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.resolver.SimplePromiseResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Promise.map的测试: 并发上限, 顺序, 失败策略以及取消
+ */
+public class PromiseMapTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("map-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				orderedWithinParallelism(scheduler);
+				failFast(scheduler);
+				collectErrors(scheduler);
+				emptyItems(scheduler);
+				cancelStopsPulling(scheduler);
+				System.out.println("PromiseMapTest passed");
+			}
+		});
+	}
+
+	private static void orderedWithinParallelism(final PromiseScheduler scheduler) throws Exception {
+		final AtomicInteger active = new AtomicInteger();
+		final AtomicInteger peak = new AtomicInteger();
+		List<Integer> items = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			items.add(i);
+		}
+		List<Integer> result = Promise.map(items, new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(final Integer newValue) {
+				peak.set(Math.max(peak.get(), active.incrementAndGet()));
+				// later items settle first, the result must keep the input order
+				return Promise.timeout(50 - newValue, null, scheduler)
+						.then(new SimplePromiseResolver<Void, Integer>() {
+							@Override
+							public Promise<Integer> resolve(Void v) {
+								active.decrementAndGet();
+								return Promise.resolve(newValue * 2, scheduler);
+							}
+						});
+			}
+		}, 4, true, true, scheduler).await(10, TimeUnit.SECONDS);
+		for (int i = 0; i < 50; i++) {
+			check(result.get(i) == i * 2, "element " + i + " out of order: " + result.get(i));
+		}
+		check(peak.get() <= 4, "parallelism exceeded: " + peak.get());
+	}
+
+	private static void failFast(PromiseScheduler scheduler) throws Exception {
+		try {
+			Promise.map(Arrays.asList(1, 2, 3, 4), failing(scheduler), 1, true, true, scheduler).await();
+			check(false, "map should fail fast");
+		} catch (IOException expected) {
+			check("2".equals(expected.getMessage()), "the first failure should win: " + expected.getMessage());
+		}
+	}
+
+	private static void collectErrors(PromiseScheduler scheduler) throws Exception {
+		try {
+			Promise.map(Arrays.asList(1, 2, 3, 4), failing(scheduler), 2, true, false, scheduler).await();
+			check(false, "map should fail with all errors");
+		} catch (CompositeException expected) {
+			check(expected.getExceptions().size() == 2, "both failures should be collected");
+		}
+	}
+
+	private static void emptyItems(PromiseScheduler scheduler) throws Exception {
+		List<Integer> result = Promise.map(new ArrayList<Integer>(), failing(scheduler), 2,
+				true, true, scheduler).await();
+		check(result.isEmpty(), "empty input should map to an empty list");
+	}
+
+	private static void cancelStopsPulling(final PromiseScheduler scheduler) throws Exception {
+		final List<Integer> called = new CopyOnWriteArrayList<>();
+		final List<Locker<Integer>> lockers = new CopyOnWriteArrayList<>();
+		List<Integer> items = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			items.add(i);
+		}
+		Promise<List<Integer>> result = Promise.map(items, new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				called.add(newValue);
+				// never settled by the producer
+				return Promise.make(new DirectFunction<Integer>() {
+					@Override
+					public void run(Locker<Integer> locker) {
+						lockers.add(locker);
+					}
+				}, scheduler);
+			}
+		}, 2, true, true, scheduler);
+		waitFor(lockers, 2);
+		result.cancel();
+		// a late settlement must not pull the next item
+		lockers.get(0).resolve(0);
+		Thread.sleep(50);
+		check(called.size() == 2, "mapper called after cancel: " + called);
+		check(lockers.get(1).isCancelled(), "in-flight mapper promises should be cancelled");
+		try {
+			result.await();
+			check(false, "the result should be cancelled");
+		} catch (CancellationException expected) {
+			// cancelled by the caller
+		}
+	}
+
+	private static SimplePromiseResolver<Integer, Integer> failing(final PromiseScheduler scheduler) {
+		return new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				if (newValue % 2 == 0) {
+					return Promise.reject(new IOException(String.valueOf(newValue)), scheduler);
+				}
+				return Promise.resolve(newValue, scheduler);
+			}
+		};
+	}
+}
@@ -0,0 +1,118 @@
+package me.tangye.utils.async.test;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.resolver.SimplePromiseResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 递归返回Promise的链条的测试, 在受限的堆中运行<br>
+ * 同一个调度器上的Promise被链接而不是转发, 百万层的递归只保留最外层的Promise, 不会耗尽内存或者栈
+ */
+public class PromiseRecursionTest extends Harness {
+
+	/* the recursion used to run out of memory well below a million levels in this heap */
+	private static final int HEAP_MB = 24;
+	private static final int DEPTH = 1000000;
+	private static final String CHILD = "promise.test.child";
+
+	public static void main(String... args) throws Exception {
+		if (System.getProperty(CHILD) == null) {
+			relaunch();
+			return;
+		}
+		EventLoopScheduler scheduler = new EventLoopScheduler("recursion-test");
+		EventLoopScheduler inline = new EventLoopScheduler("recursion-inline-test");
+		inline.setInlineContinuations(true);
+		try {
+			settledSteps(scheduler);
+			settledSteps(inline);
+			pendingSteps(scheduler);
+			cancelReachesPendingStep(scheduler);
+			System.out.println("PromiseRecursionTest passed in a " + HEAP_MB + "MB heap");
+		} finally {
+			scheduler.shutdown();
+			inline.shutdown();
+		}
+	}
+
+	private static void settledSteps(PromiseScheduler scheduler) throws Exception {
+		check(countDown(DEPTH, scheduler).await(60, TimeUnit.SECONDS) == 0, "the recursion should reach 0");
+	}
+
+	private static void pendingSteps(final PromiseScheduler scheduler) throws Exception {
+		check(countDownLater(DEPTH / 4, scheduler).await(60, TimeUnit.SECONDS) == 0,
+				"the recursion through pending steps should reach 0");
+	}
+
+	private static void cancelReachesPendingStep(final PromiseScheduler scheduler) throws Exception {
+		final AtomicReference<Locker<Integer>> stuck = new AtomicReference<>();
+		Promise<Integer> outer = Promise.resolve(3, scheduler).then(new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				// linked into outer, it has no consumer of its own
+				return Promise.make(new DirectFunction<Integer>() {
+					@Override
+					public void run(Locker<Integer> locker) {
+						stuck.set(locker);
+					}
+				}, scheduler);
+			}
+		});
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (stuck.get() == null) {
+			check(System.nanoTime() < deadline, "the inner step should start");
+			Thread.sleep(1);
+		}
+		check(outer.cancel(), "the outer promise should be cancelled");
+		check(stuck.get().isCancelled(), "the linked inner step should see the cancel");
+	}
+
+	/* each level resolves with the next level, the settled value is copied on the way */
+	private static Promise<Integer> countDown(final int n, final PromiseScheduler scheduler) {
+		if (n == 0) {
+			return Promise.resolve(0, scheduler);
+		}
+		return Promise.resolve(n - 1, scheduler).then(new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				return countDown(newValue, scheduler);
+			}
+		});
+	}
+
+	/* each level is still pending when returned, so it is linked instead of copied */
+	private static Promise<Integer> countDownLater(final int n, final PromiseScheduler scheduler) {
+		return Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(final Locker<Integer> locker) {
+				locker.post(new Runnable() {
+					@Override
+					public void run() {
+						locker.resolve(n);
+					}
+				});
+			}
+		}, scheduler).then(new SimplePromiseResolver<Integer, Integer>() {
+			@Override
+			public Promise<Integer> resolve(Integer newValue) {
+				return newValue == 0 ? Promise.resolve(0, scheduler) : countDownLater(newValue - 1, scheduler);
+			}
+		});
+	}
+
+	/* the heap bound is part of the check, so run in a child jvm with a small heap */
+	private static void relaunch() throws Exception {
+		String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		Process process = new ProcessBuilder(java, "-Xmx" + HEAP_MB + "m", "-D" + CHILD + "=true",
+				"-cp", System.getProperty("java.class.path"), PromiseRecursionTest.class.getName())
+				.inheritIO().start();
+		check(process.waitFor() == 0, "the recursion failed in a " + HEAP_MB + "MB heap");
+	}
+}
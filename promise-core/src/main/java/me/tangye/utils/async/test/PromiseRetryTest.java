@@ -0,0 +1,135 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.PromiseFactory;
+import me.tangye.utils.async.RetryBudget;
+import me.tangye.utils.async.RetryPolicy;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * RetryPolicy的测试: 退避重试, 放弃的条件以及取消
+ */
+public class PromiseRetryTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("retry-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				retryUntilSuccess(scheduler);
+				giveUpAfterMaxAttempts(scheduler);
+				retryOnlyMatchingTypes(scheduler);
+				budgetLimitsRetries(scheduler);
+				cancelRunningAttempt(scheduler);
+				cancelDuringBackoff(scheduler);
+				noSchedulerOnCurrentThread();
+				System.out.println("PromiseRetryTest passed");
+			}
+		});
+	}
+
+	private static void retryUntilSuccess(PromiseScheduler scheduler) throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		String result = flaky(calls, 2, new IOException("io"))
+				.make(RetryPolicy.exponential(5, 100).maxAttempts(5), scheduler)
+				.await(5, TimeUnit.SECONDS);
+		check("ok3".equals(result), "the third attempt should succeed: " + result);
+	}
+
+	private static void giveUpAfterMaxAttempts(PromiseScheduler scheduler) throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		try {
+			flaky(calls, 10, new IOException("io"))
+					.make(RetryPolicy.exponential(1, 10).maxAttempts(3), scheduler)
+					.await(5, TimeUnit.SECONDS);
+			check(false, "the policy should give up");
+		} catch (IOException expected) {
+			check(calls.get() == 3, "attempts should stop at maxAttempts: " + calls.get());
+		}
+	}
+
+	private static void retryOnlyMatchingTypes(PromiseScheduler scheduler) throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		try {
+			flaky(calls, 10, new IllegalStateException("fatal"))
+					.make(RetryPolicy.exponential(1, 10).retryOn(IOException.class), scheduler)
+					.await(5, TimeUnit.SECONDS);
+			check(false, "a non matching failure should not be retried");
+		} catch (IllegalStateException expected) {
+			check(calls.get() == 1, "only one attempt expected: " + calls.get());
+		}
+	}
+
+	private static void budgetLimitsRetries(PromiseScheduler scheduler) throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		RetryBudget budget = new RetryBudget(2, 0);
+		try {
+			flaky(calls, 100, new IOException("io"))
+					.make(RetryPolicy.exponential(1, 1).maxAttempts(100).budget(budget), scheduler)
+					.await(5, TimeUnit.SECONDS);
+			check(false, "an empty budget should stop retrying");
+		} catch (IOException expected) {
+			check(calls.get() == 3, "two retries allowed by the budget: " + calls.get());
+		}
+	}
+
+	private static void cancelRunningAttempt(PromiseScheduler scheduler) throws Exception {
+		final List<Locker<String>> attempts = new CopyOnWriteArrayList<>();
+		Promise<String> result = PromiseFactory.create(new DirectFunction<String>() {
+			@Override
+			public void run(Locker<String> locker) {
+				// never settled, the attempt is still running when cancelled
+				attempts.add(locker);
+			}
+		}).make(RetryPolicy.exponential(1, 10), scheduler);
+		waitFor(attempts, 1);
+		check(result.cancel(), "the result should be cancelled");
+		Thread.sleep(20);
+		check(attempts.get(0).isCancelled(), "cancel should reach the running attempt");
+		check(attempts.size() == 1, "no attempt after cancel: " + attempts.size());
+	}
+
+	private static void cancelDuringBackoff(PromiseScheduler scheduler) throws Exception {
+		AtomicInteger calls = new AtomicInteger();
+		Promise<String> result = flaky(calls, 10, new IOException("io"))
+				.make(RetryPolicy.exponential(100, 100).maxAttempts(10), scheduler);
+		Thread.sleep(30);
+		result.cancel();
+		Thread.sleep(200);
+		check(calls.get() == 1, "the waiting retry should be removed: " + calls.get());
+	}
+
+	private static void noSchedulerOnCurrentThread() {
+		check(PromiseScheduler.current() == null, "the main thread should have no scheduler");
+		try {
+			flaky(new AtomicInteger(), 0, null).make(RetryPolicy.exponential(1, 10));
+			check(false, "make(policy) should need a scheduler");
+		} catch (IllegalStateException expected) {
+			// like Promise.make without a scheduler
+		}
+	}
+
+	/* fails the first failures attempts, then succeeds with the attempt count */
+	private static PromiseFactory<String> flaky(final AtomicInteger calls, final int failures,
+												final Exception e) {
+		return PromiseFactory.create(new DirectFunction<String>() {
+			@Override
+			public void run(Locker<String> locker) {
+				int n = calls.incrementAndGet();
+				if (n <= failures) {
+					locker.reject(e);
+				} else {
+					locker.resolve("ok" + n);
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,123 @@
+package me.tangye.utils.async.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseEventLoopGroup;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 调度器的测试: 任务抛出的异常以及Error交给UncaughtExceptionHandler, 循环继续执行
+ */
+public class PromiseSchedulerTest extends Harness {
+
+	private static final List<Throwable> UNCAUGHT = new CopyOnWriteArrayList<>();
+
+	public static void main(String... args) throws Exception {
+		Thread.UncaughtExceptionHandler previous = collectUncaught(UNCAUGHT);
+		EventLoopScheduler loop = new EventLoopScheduler("scheduler-test");
+		ExecutorService pool = Executors.newFixedThreadPool(2);
+		PromiseEventLoopGroup group = new PromiseEventLoopGroup("group-test", 4);
+		try {
+			survivesThrowingTask(loop);
+			survivesThrowingTask(PromiseScheduler.from(pool));
+			survivesVirtualMachineError(PromiseScheduler.from(pool));
+			survivesThrowingTask(group.get(0));
+			forKeyAffinity(group);
+			System.out.println("PromiseSchedulerTest passed");
+		} finally {
+			loop.shutdown();
+			pool.shutdownNow();
+			group.shutdown();
+			Thread.setDefaultUncaughtExceptionHandler(previous);
+		}
+	}
+
+	private static void survivesThrowingTask(PromiseScheduler scheduler) throws Exception {
+		UNCAUGHT.clear();
+		final CountDownLatch after = new CountDownLatch(1);
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				throw new IllegalStateException("task");
+			}
+		});
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				throw new AssertionError("error");
+			}
+		});
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				after.countDown();
+			}
+		});
+		check(after.await(1, TimeUnit.SECONDS), "the loop should keep running after an Error");
+		check(UNCAUGHT.size() == 2, "both failures should be reported: " + UNCAUGHT);
+		check(UNCAUGHT.get(0) instanceof IllegalStateException, "the exception should be reported");
+		check(UNCAUGHT.get(1) instanceof AssertionError, "the Error should be reported");
+	}
+
+	private static void survivesVirtualMachineError(PromiseScheduler scheduler) throws Exception {
+		UNCAUGHT.clear();
+		final CountDownLatch queued = new CountDownLatch(1);
+		final CountDownLatch later = new CountDownLatch(1);
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				throw new StackOverflowError("resolver");
+			}
+		});
+		// queued behind the error, the drain must be resumed for it
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				queued.countDown();
+			}
+		});
+		check(queued.await(1, TimeUnit.SECONDS), "tasks queued behind a StackOverflowError should run");
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				later.countDown();
+			}
+		});
+		check(later.await(1, TimeUnit.SECONDS), "the scheduler should accept tasks after a StackOverflowError");
+		// the dying worker reports the error on its own time, after the tasks above may have run elsewhere
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (UNCAUGHT.isEmpty() && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		check(UNCAUGHT.size() == 1 && UNCAUGHT.get(0) instanceof StackOverflowError,
+				"the StackOverflowError should reach the executor thread: " + UNCAUGHT);
+	}
+
+	private static void forKeyAffinity(PromiseEventLoopGroup group) throws Exception {
+		for (int key = 0; key < 100; key++) {
+			check(group.forKey(key) == group.forKey(Integer.valueOf(key)), "the same key should map to one loop");
+		}
+		final List<Thread> threads = new CopyOnWriteArrayList<>();
+		final CountDownLatch done = new CountDownLatch(10);
+		PromiseScheduler loop = group.forKey("user");
+		for (int i = 0; i < 10; i++) {
+			loop.schedule(new Runnable() {
+				@Override
+				public void run() {
+					threads.add(Thread.currentThread());
+					done.countDown();
+				}
+			}, i % 3);
+		}
+		check(done.await(1, TimeUnit.SECONDS), "all tasks of the key should run");
+		for (Thread t : threads) {
+			check(t == group.forKey("user").getThread(), "tasks of a key should run on its loop thread");
+		}
+	}
+}
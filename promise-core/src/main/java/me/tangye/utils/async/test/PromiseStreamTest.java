@@ -0,0 +1,213 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.PromiseStream;
+import me.tangye.utils.async.PromiseStream.Subscriber;
+import me.tangye.utils.async.PromiseStream.Subscription;
+import me.tangye.utils.async.resolver.SimplePromiseResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * PromiseStream的测试: 操作符, 背压, 取消以及异常
+ */
+public class PromiseStreamTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("stream-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				pipeline(scheduler);
+				backpressure(scheduler);
+				cancelStopsPulling(scheduler);
+				nullPredicate(scheduler);
+				mapError(scheduler);
+				illegalRequest(scheduler);
+				illegalRequestBehindDrain(scheduler);
+				System.out.println("PromiseStreamTest passed");
+			}
+		});
+	}
+
+	private static void pipeline(final PromiseScheduler scheduler) throws Exception {
+		List<Integer> result = PromiseStream.of(range(10), scheduler)
+				.map(new SimplePromiseResolver<Integer, Integer>() {
+					@Override
+					public Promise<Integer> resolve(Integer newValue) {
+						return Promise.resolve(newValue * 2, scheduler);
+					}
+				})
+				.filter(new SimplePromiseResolver<Integer, Boolean>() {
+					@Override
+					public Promise<Boolean> resolve(Integer newValue) {
+						return Promise.resolve(newValue % 4 == 0, scheduler);
+					}
+				})
+				.flatMap(new SimplePromiseResolver<Integer, PromiseStream<Integer>>() {
+					@Override
+					public Promise<PromiseStream<Integer>> resolve(Integer newValue) {
+						return Promise.resolve(PromiseStream.of(Arrays.asList(newValue, newValue + 1), scheduler),
+								scheduler);
+					}
+				})
+				.toList().await(5, TimeUnit.SECONDS);
+		check(result.equals(Arrays.asList(4, 5, 8, 9, 12, 13, 16, 17, 20, 21)), "pipeline: " + result);
+	}
+
+	private static void backpressure(PromiseScheduler scheduler) throws Exception {
+		AtomicInteger pulls = new AtomicInteger();
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		Subscription subscription = subscribe(counting(pulls, 100, scheduler), received, null);
+		subscription.request(2);
+		Thread.sleep(50);
+		check(received.size() == 2 && pulls.get() == 2, "pulled beyond demand: " + received + ", " + pulls);
+		subscription.request(3);
+		Thread.sleep(50);
+		check(received.size() == 5 && pulls.get() == 5, "more demand: " + received + ", " + pulls);
+	}
+
+	private static void cancelStopsPulling(PromiseScheduler scheduler) throws Exception {
+		AtomicInteger pulls = new AtomicInteger();
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		Subscription subscription = subscribe(counting(pulls, 100, scheduler), received, null);
+		subscription.request(3);
+		Thread.sleep(50);
+		subscription.cancel();
+		subscription.request(10);
+		Thread.sleep(50);
+		check(received.size() == 3 && pulls.get() == 3, "pulled after cancel: " + received + ", " + pulls);
+	}
+
+	private static void nullPredicate(final PromiseScheduler scheduler) throws Exception {
+		List<Integer> result = PromiseStream.of(range(6), scheduler)
+				.filter(new SimplePromiseResolver<Integer, Boolean>() {
+					@Override
+					public Promise<Boolean> resolve(Integer newValue) {
+						if (newValue % 2 == 0) {
+							return null;
+						}
+						return Promise.resolve(newValue == 3 ? null : Boolean.TRUE, scheduler);
+					}
+				})
+				.toList().await(1, TimeUnit.SECONDS);
+		check(result.equals(Arrays.asList(1, 5)), "null predicate results should be dropped: " + result);
+	}
+
+	private static void mapError(final PromiseScheduler scheduler) throws Exception {
+		try {
+			PromiseStream.of(range(10), scheduler).map(new SimplePromiseResolver<Integer, Integer>() {
+				@Override
+				public Promise<Integer> resolve(Integer newValue) {
+					if (newValue == 3) {
+						throw Promise.newException(new IOException("map"));
+					}
+					return Promise.resolve(newValue, scheduler);
+				}
+			}).toList().await(1, TimeUnit.SECONDS);
+			check(false, "a mapper exception should end the stream");
+		} catch (IOException expected) {
+			// the original exception
+		}
+	}
+
+	private static void illegalRequest(PromiseScheduler scheduler) throws Exception {
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		subscribe(PromiseStream.of(range(3), scheduler), received, error).request(0);
+		waitForError(error);
+		check(error.get() instanceof IllegalArgumentException, "request(0) should signal onError: " + error.get());
+		check(received.isEmpty(), "nothing delivered after request(0)");
+	}
+
+	private static void illegalRequestBehindDrain(PromiseScheduler scheduler) throws Exception {
+		AtomicReference<Throwable> error = new AtomicReference<>();
+		List<Integer> received = new CopyOnWriteArrayList<>();
+		final CountDownLatch blocked = new CountDownLatch(1);
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		// the drain of request(1) is queued before request(0), and runs first
+		Subscription subscription = subscribe(PromiseStream.of(range(3), scheduler), received, error);
+		subscription.request(1);
+		subscription.request(0);
+		blocked.countDown();
+		waitForError(error);
+		check(error.get() instanceof IllegalArgumentException,
+				"request(0) behind a queued drain should signal onError: " + error.get());
+		check(received.isEmpty(), "nothing delivered after request(0)");
+	}
+
+	/* signalled from a task on the scheduler, which may still be busy with the previous stream */
+	private static void waitForError(AtomicReference<Throwable> error) throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (error.get() == null && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+	}
+
+	/* emits 1..count, counting how many times the source is pulled */
+	private static PromiseStream<Integer> counting(final AtomicInteger pulls, final int count,
+												   final PromiseScheduler scheduler) {
+		return PromiseStream.create(new PromiseStream.Source<Integer>() {
+			@Override
+			public Promise<Integer> next() {
+				int n = pulls.incrementAndGet();
+				return n > count ? null : Promise.resolve(n, scheduler);
+			}
+		}, scheduler);
+	}
+
+	private static Subscription subscribe(PromiseStream<Integer> stream, final List<Integer> received,
+										  final AtomicReference<Throwable> error) {
+		final AtomicReference<Subscription> subscription = new AtomicReference<>();
+		stream.subscribe(new Subscriber<Integer>() {
+			@Override
+			public void onSubscribe(Subscription s) {
+				subscription.set(s);
+			}
+
+			@Override
+			public void onNext(Integer item) {
+				received.add(item);
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				if (error != null) {
+					error.set(throwable);
+				}
+			}
+
+			@Override
+			public void onComplete() {
+			}
+		});
+		// onSubscribe is called before subscribe returns
+		return subscription.get();
+	}
+
+	private static List<Integer> range(int size) {
+		List<Integer> items = new ArrayList<>();
+		for (int i = 1; i <= size; i++) {
+			items.add(i);
+		}
+		return items;
+	}
+}
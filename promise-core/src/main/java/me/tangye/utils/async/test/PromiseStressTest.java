@@ -0,0 +1,124 @@
+package me.tangye.utils.async.test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 并发压力测试, 多个线程同时注册then以及完成Promise<br>
+ * 每个continuation必须恰好执行一次, 并且看到同一个结果
+ */
+public class PromiseStressTest extends Harness {
+
+	private static final int THREADS = 8;
+	private static final int LISTENERS = 64;
+	private static final int ROUNDS = 2000;
+
+	public static void main(String... args) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(THREADS + 2);
+		PromiseScheduler scheduler = PromiseScheduler.from(pool);
+		try {
+			for (int round = 0; round < ROUNDS; round++) {
+				runRound(pool, scheduler, round);
+			}
+			System.out.println("PromiseStressTest passed " + ROUNDS + " rounds");
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static void runRound(ExecutorService pool, PromiseScheduler scheduler,
+								 final int round) throws Exception {
+		final AtomicReference<Locker<Integer>> lockerRef = new AtomicReference<>();
+		final CountDownLatch started = new CountDownLatch(1);
+		final Promise<Integer> promise = Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> locker) {
+				lockerRef.set(locker);
+				started.countDown();
+			}
+		}, scheduler);
+		check(started.await(5, TimeUnit.SECONDS), "function never ran");
+
+		final int total = THREADS * LISTENERS;
+		final AtomicIntegerArray calls = new AtomicIntegerArray(total);
+		final AtomicInteger mismatches = new AtomicInteger();
+		final CountDownLatch fired = new CountDownLatch(total);
+		final CyclicBarrier barrier = new CyclicBarrier(THREADS + 2);
+
+		for (int t = 0; t < THREADS; t++) {
+			final int base = t * LISTENERS;
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					await(barrier);
+					for (int i = 0; i < LISTENERS; i++) {
+						final int index = base + i;
+						promise.then(new DirectResolver<Integer, Void>() {
+							@Override
+							public Void resolve(Integer newValue) {
+								if (newValue == null || newValue != round) {
+									mismatches.incrementAndGet();
+								}
+								calls.incrementAndGet(index);
+								fired.countDown();
+								return null;
+							}
+
+							@Override
+							public Void reject(Exception exception) {
+								mismatches.incrementAndGet();
+								calls.incrementAndGet(index);
+								fired.countDown();
+								return null;
+							}
+						});
+					}
+				}
+			});
+		}
+		// two completers race each other, only the first one should win
+		for (int c = 0; c < 2; c++) {
+			final boolean reject = c == 1;
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					await(barrier);
+					if (reject) {
+						lockerRef.get().reject(new IllegalStateException("lost"));
+					} else {
+						lockerRef.get().resolve(round);
+					}
+				}
+			});
+		}
+
+		check(fired.await(10, TimeUnit.SECONDS), "round " + round + " lost continuations: "
+				+ fired.getCount());
+		for (int i = 0; i < total; i++) {
+			check(calls.get(i) == 1, "continuation " + i + " ran " + calls.get(i) + " times");
+		}
+		// both outcomes are legal, but all listeners must see the same one
+		int m = mismatches.get();
+		check(m == 0 || m == total, "listeners saw different outcomes: " + m);
+	}
+
+	private static void await(CyclicBarrier barrier) {
+		try {
+			barrier.await();
+		} catch (Exception e) {
+			throw Promise.newException(e);
+		}
+	}
+}
@@ -2,6 +2,7 @@ package me.tangye.utils.async.test;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.concurrent.TimeoutException;
 
 import me.tangye.utils.async.Promise;
@@ -15,10 +16,14 @@ import me.tangye.utils.async.resolver.ExceptionResolver;
 import me.tangye.utils.async.resolver.PromiseDeferred;
 import me.tangye.utils.async.resolver.SimplePromiseResolver;
 import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
 
 public class PromiseTest {
 	
-	public static void main(String...args) {		
+	public static void main(String...args) throws Exception {
+		// promise-core has no main looper, every promise is bound to this scheduler
+		final EventLoopScheduler scheduler = new EventLoopScheduler("promise-test");
+
 		Promise<Integer> p1 = Promise.make(new DirectFunction<Integer>() {
 
 			@Override
@@ -37,7 +42,7 @@ public class PromiseTest {
 				}.start();
 			}
 			
-		});
+		}, scheduler);
 
 
 		Promise<Object> px = Promise.make(new DirectFunction<Object>() {
@@ -45,7 +50,7 @@ public class PromiseTest {
 			public void run(Locker<Object> locker) {
 				locker.reject(new TimeoutException("timeout"));
 			}
-		}).exception(new ExceptionResolver<Object, TimeoutException>() {
+		}, scheduler).exception(new ExceptionResolver<Object, TimeoutException>() {
 			@Override
 			public Object onCatch(TimeoutException exception) {
 				exception.printStackTrace();
@@ -78,14 +83,14 @@ public class PromiseTest {
 					}
 				}.start();
 			}
-		});
+		}, scheduler);
 		
 		ArrayList<Promise<?>> list = new ArrayList<Promise<?>>();
 		list.add(p1);
 		list.add(p1p);
 		list.add(p2);
 		
-		Promise.race(list).then(new DirectResolver<Object, Void>() {
+		Promise.race(list, scheduler).then(new DirectResolver<Object, Void>() {
 
 			@Override
 			public Void resolve(Object newValue) {
@@ -99,7 +104,7 @@ public class PromiseTest {
 			}
 		});		
 		
-		p1.then(new DirectResolver<Integer, String>() {
+		Promise<Integer> chain = p1.then(new DirectResolver<Integer, String>() {
 
 			@Override
 			public String resolve(Integer newValue) {
@@ -132,7 +137,7 @@ public class PromiseTest {
 						}.start();
 					}
 					
-				});
+				}, scheduler);
 			}
 			
 		}).then(new SimpleResolver<Integer, Integer>() {
@@ -150,9 +155,9 @@ public class PromiseTest {
 		});
 
 		// making a deferred, then use defer to propagate a promise
-		final PromiseDeferred<Integer> defer = PromiseDeferred.make();
+		final PromiseDeferred<Integer> defer = PromiseDeferred.make(scheduler);
 
-		final PromiseDeferred<String> defer2 = PromiseDeferred.make();
+		final PromiseDeferred<String> defer2 = PromiseDeferred.make(scheduler);
 
 
 
@@ -212,15 +217,19 @@ public class PromiseTest {
 			public void run(Locker<String> locker) {
 				locker.resolve("444");
 			}
-		}).make().then(defer2);
-
-		Promise<Integer> intPromise = Promise.resolve(5);
-		Promise<Integer> exPromise = Promise.reject(new Exception());
-		Promise<Integer> clonePromise = Promise.resolve(th);
+		}).make(scheduler).then(defer2);
 
-		Promise.all(intPromise, exPromise, clonePromise);
+		Promise<Integer> intPromise = Promise.resolve(5, scheduler);
+		Promise<Integer> exPromise = Promise.reject(new Exception(), scheduler);
+		Promise<Integer> clonePromise = Promise.resolve(th, scheduler);
 
+		Promise.all(Arrays.<Object>asList(intPromise, exPromise, clonePromise), scheduler);
 
+		try {
+			chain.await();
+		} finally {
+			scheduler.shutdown();
+		}
 	}
 
 }
@@ -0,0 +1,119 @@
+package me.tangye.utils.async.test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.Thenable;
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.resolver.PromiseResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 在调度器以外的线程上, 使用Thenable完成Promise的测试<br>
+ * Promise直接链接, 其他的Thenable在调度器上展开
+ */
+public class PromiseThenableTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("thenable-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				foreignThenableOnScheduler(scheduler);
+				foreignThenableFails(scheduler);
+				promiseFromOtherThread(scheduler);
+				System.out.println("PromiseThenableTest passed");
+			}
+		});
+	}
+
+	private static void foreignThenableOnScheduler(final PromiseScheduler scheduler) throws Exception {
+		final AtomicBoolean getThenOnLoop = new AtomicBoolean();
+		final AtomicBoolean runOnLoop = new AtomicBoolean();
+		AtomicReference<Locker<Object>> locker = new AtomicReference<>();
+		Promise<Object> p = never(scheduler, locker);
+		locker.get().resolve(new Foreign<Integer>() {
+			@Override
+			public DirectFunction<Integer> getThen() {
+				getThenOnLoop.set(scheduler.inEventLoop());
+				return new DirectFunction<Integer>() {
+					@Override
+					public void run(Locker<Integer> l) {
+						runOnLoop.set(scheduler.inEventLoop());
+						l.resolve(7);
+					}
+				};
+			}
+		});
+		check(Integer.valueOf(7).equals(p.await(1, TimeUnit.SECONDS)), "the thenable result should be adopted");
+		check(getThenOnLoop.get(), "getThen should be called on the scheduler");
+		check(runOnLoop.get(), "the thenable function should run on the scheduler");
+	}
+
+	private static void foreignThenableFails(PromiseScheduler scheduler) throws Exception {
+		AtomicReference<Locker<Object>> locker = new AtomicReference<>();
+		Promise<Object> p = never(scheduler, locker);
+		locker.get().resolve(new Foreign<Integer>() {
+			@Override
+			public DirectFunction<Integer> getThen() {
+				throw new IllegalStateException("broken thenable");
+			}
+		});
+		try {
+			p.await(1, TimeUnit.SECONDS);
+			check(false, "a failing getThen should reject the promise");
+		} catch (IllegalStateException expected) {
+			// the exception from getThen
+		}
+	}
+
+	private static void promiseFromOtherThread(PromiseScheduler scheduler) throws Exception {
+		AtomicReference<Locker<Object>> locker = new AtomicReference<>();
+		Promise<Object> p = never(scheduler, locker);
+		locker.get().resolve(Promise.resolve(3, scheduler));
+		check(Integer.valueOf(3).equals(p.await(1, TimeUnit.SECONDS)), "a promise result should be adopted");
+	}
+
+	/* a promise which is never settled by its producer, the locker is settled by the test thread */
+	private static Promise<Object> never(PromiseScheduler scheduler, final AtomicReference<Locker<Object>> ref)
+			throws Exception {
+		Promise<Object> p = Promise.make(new DirectFunction<Object>() {
+			@Override
+			public void run(Locker<Object> locker) {
+				ref.set(locker);
+			}
+		}, scheduler);
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (ref.get() == null) {
+			check(System.nanoTime() < deadline, "function never ran");
+			Thread.sleep(1);
+		}
+		return p;
+	}
+
+	/* a Thenable which is not a Promise, only getThen is used */
+	private static abstract class Foreign<D> implements Thenable<D> {
+		@Override
+		public abstract DirectFunction<D> getThen();
+
+		@Override
+		public <D1> Thenable<D1> then(DirectResolver<? super D, ? extends D1> resolver) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public <D1> Thenable<D1> then(PromiseResolver<? super D, ? extends D1> resolver) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <D1> Thenable<D1> cast() {
+			return (Thenable<D1>) this;
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package me.tangye.utils.async.test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Promise.timeout以及withTimeout的测试<br>
+ * 超时以TimeoutException失败, 但与取消一样终止生产者
+ */
+public class PromiseTimeoutTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("timeout-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				timeoutPromise(scheduler);
+				deadlineAbortsProducer(scheduler);
+				deadlineReleasesUpstream(scheduler);
+				settledBeforeDeadline(scheduler);
+				System.out.println("PromiseTimeoutTest passed");
+			}
+		});
+	}
+
+	private static void timeoutPromise(PromiseScheduler scheduler) throws Exception {
+		long start = System.nanoTime();
+		Promise.timeout(30, null, scheduler).await(1, TimeUnit.SECONDS);
+		check(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(20), "timeout settled too early");
+		try {
+			Promise.timeout(10, new IllegalStateException("late"), scheduler).await(1, TimeUnit.SECONDS);
+			check(false, "timeout should fail with the given exception");
+		} catch (IllegalStateException expected) {
+			// the given exception
+		}
+	}
+
+	private static void deadlineAbortsProducer(PromiseScheduler scheduler) throws Exception {
+		final AtomicReference<Locker<Integer>> locker = new AtomicReference<>();
+		final AtomicBoolean delayedRan = new AtomicBoolean();
+		final AtomicBoolean hooked = new AtomicBoolean();
+		Promise<Integer> p = Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> l) {
+				locker.set(l);
+				l.postDelayed(new Runnable() {
+					@Override
+					public void run() {
+						delayedRan.set(true);
+					}
+				}, 200);
+				l.onCancel(new Runnable() {
+					@Override
+					public void run() {
+						hooked.set(true);
+					}
+				});
+			}
+		}, scheduler).withTimeout(20);
+		try {
+			p.await(1, TimeUnit.SECONDS);
+			check(false, "withTimeout should fail the promise");
+		} catch (TimeoutException expected) {
+			// a TimeoutException, not a CancellationException
+		}
+		check(!p.isCancelled(), "a timed out promise is not cancelled");
+		check(locker.get().isCancelled(), "the producer should see the deadline");
+		Thread.sleep(300);
+		// the hook may run after the waiter is woken up
+		check(hooked.get(), "onCancel should run on the deadline");
+		check(!delayedRan.get(), "postDelayed runnables should be removed on the deadline");
+	}
+
+	private static void deadlineReleasesUpstream(PromiseScheduler scheduler) throws Exception {
+		final AtomicReference<Locker<Integer>> locker = new AtomicReference<>();
+		Promise<Integer> upstream = Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> l) {
+				locker.set(l);
+			}
+		}, scheduler);
+		Promise<Integer> child = upstream.then(new SimpleResolver<Integer, Integer>() {
+			@Override
+			public Integer resolve(Integer newValue) {
+				return newValue;
+			}
+		}).withTimeout(20);
+		try {
+			child.await(1, TimeUnit.SECONDS);
+			check(false, "withTimeout should fail the child");
+		} catch (TimeoutException expected) {
+			// the child only
+		}
+		check(upstream.isCancelled(), "the last consumer timed out, upstream should be cancelled");
+		check(locker.get().isCancelled(), "the upstream producer should see the cancellation");
+	}
+
+	private static void settledBeforeDeadline(PromiseScheduler scheduler) throws Exception {
+		Promise<Integer> p = Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> l) {
+				l.resolve(1);
+			}
+		}, scheduler).withTimeout(20);
+		check(p.await(1, TimeUnit.SECONDS) == 1, "a promise settled in time keeps its value");
+		Thread.sleep(50);
+		check(p.await() == 1, "the deadline should not override a settled promise");
+	}
+}
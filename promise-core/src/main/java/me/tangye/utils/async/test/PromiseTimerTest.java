@@ -0,0 +1,101 @@
+package me.tangye.utils.async.test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import me.tangye.utils.async.scheduler.HashedWheelTimer;
+import me.tangye.utils.async.scheduler.HashedWheelTimer.Timeout;
+
+/**
+ * HashedWheelTimer的测试: 到期, 多圈, 取消以及抛出异常的任务
+ */
+public class PromiseTimerTest extends Harness {
+
+	private static final List<Throwable> UNCAUGHT = new CopyOnWriteArrayList<>();
+
+	public static void main(String... args) throws Exception {
+		Thread.UncaughtExceptionHandler previous = collectUncaught(UNCAUGHT);
+		// 8 slots of 5ms, one round is 40ms
+		HashedWheelTimer timer = new HashedWheelTimer("timer-test", 5, 8);
+		try {
+			expires(timer);
+			expiresAfterRounds(timer);
+			cancelled(timer);
+			survivesThrowingTask(timer);
+			stopped();
+			System.out.println("PromiseTimerTest passed");
+		} finally {
+			timer.stop();
+			Thread.setDefaultUncaughtExceptionHandler(previous);
+		}
+	}
+
+	private static void expires(HashedWheelTimer timer) throws Exception {
+		long start = System.nanoTime();
+		CountDownLatch fired = new CountDownLatch(1);
+		Timeout timeout = timer.newTimeout(countDown(fired), 30);
+		check(fired.await(1, TimeUnit.SECONDS), "the timeout should expire");
+		check(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(30), "expired too early");
+		check(timeout.isExpired() && !timeout.cancel(), "an expired timeout cannot be cancelled");
+	}
+
+	private static void expiresAfterRounds(HashedWheelTimer timer) throws Exception {
+		long start = System.nanoTime();
+		CountDownLatch fired = new CountDownLatch(1);
+		timer.newTimeout(countDown(fired), 130);
+		check(fired.await(1, TimeUnit.SECONDS), "the timeout should expire");
+		check(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(130), "a later round expired too early");
+	}
+
+	private static void cancelled(HashedWheelTimer timer) throws Exception {
+		final AtomicBoolean fired = new AtomicBoolean();
+		Timeout timeout = timer.newTimeout(new Runnable() {
+			@Override
+			public void run() {
+				fired.set(true);
+			}
+		}, 200);
+		check(timer.pendingTimeouts() == 1, "one pending timeout: " + timer.pendingTimeouts());
+		check(timeout.cancel() && timeout.isCancelled(), "a pending timeout should be cancelled");
+		check(timer.pendingTimeouts() == 0, "no pending timeout after cancel: " + timer.pendingTimeouts());
+		Thread.sleep(250);
+		check(!fired.get(), "a cancelled timeout should never run");
+	}
+
+	private static void survivesThrowingTask(HashedWheelTimer timer) throws Exception {
+		UNCAUGHT.clear();
+		timer.newTimeout(new Runnable() {
+			@Override
+			public void run() {
+				throw new AssertionError("error");
+			}
+		}, 0);
+		CountDownLatch after = new CountDownLatch(1);
+		timer.newTimeout(countDown(after), 20);
+		check(after.await(1, TimeUnit.SECONDS), "the wheel should keep running after an Error");
+		check(UNCAUGHT.size() == 1 && UNCAUGHT.get(0) instanceof AssertionError, "the Error should be reported");
+	}
+
+	private static void stopped() {
+		HashedWheelTimer timer = new HashedWheelTimer("stopped-test", 10, 8);
+		timer.stop();
+		try {
+			timer.newTimeout(countDown(new CountDownLatch(1)), 10);
+			check(false, "a stopped timer should not accept timeouts");
+		} catch (IllegalStateException expected) {
+			// timer is stopped
+		}
+	}
+
+	private static Runnable countDown(final CountDownLatch latch) {
+		return new Runnable() {
+			@Override
+			public void run() {
+				latch.countDown();
+			}
+		};
+	}
+}
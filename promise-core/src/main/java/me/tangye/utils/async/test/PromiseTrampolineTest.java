@@ -0,0 +1,175 @@
+package me.tangye.utils.async.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 内联continuation的测试: 超过trampoline的深度后, 后续的resolver排队执行而不是继续递归,
+ * 栈的深度有上限, 执行顺序不变; resolver抛出Error时, 排队中剩余的resolver交还给调度器执行
+ */
+public class PromiseTrampolineTest extends Harness {
+
+	/* the trampoline's MAX_DEPTH */
+	private static final int MAX_DEPTH = 32;
+	private static final int LINKS = 100000;
+
+	private static final List<Throwable> UNCAUGHT = new CopyOnWriteArrayList<>();
+
+	public static void main(String... args) throws Exception {
+		Thread.UncaughtExceptionHandler previous = collectUncaught(UNCAUGHT);
+		try {
+			run("trampoline-test", new Body() {
+				@Override
+				public void run(EventLoopScheduler scheduler) throws Exception {
+					scheduler.setInlineContinuations(true);
+					deepChain(scheduler);
+					siblingsInOrder(scheduler);
+					errorPostsTheRest(scheduler);
+					System.out.println("PromiseTrampolineTest passed");
+				}
+			});
+		} finally {
+			Thread.setDefaultUncaughtExceptionHandler(previous);
+		}
+	}
+
+	private static void deepChain(PromiseScheduler scheduler) throws Exception {
+		final AtomicReference<Locker<Integer>> head = new AtomicReference<>();
+		final Recorder recorder = new Recorder();
+		Promise<Integer> p = pending(head, scheduler);
+		for (int i = 0; i < LINKS; i++) {
+			p = p.then(recorder.step(i));
+		}
+		settleOnLoop(head, scheduler);
+		check(p.await(30, TimeUnit.SECONDS) == LINKS, "every link should run");
+		check(recorder.inOrder(LINKS), "the links should run in order");
+		// without the fallback the stack would grow with every link
+		check(recorder.maxStack - recorder.minStack < MAX_DEPTH * 40,
+				"the stack should stay bounded: " + (recorder.maxStack - recorder.minStack));
+	}
+
+	private static void siblingsInOrder(PromiseScheduler scheduler) throws Exception {
+		final AtomicReference<Locker<Integer>> head = new AtomicReference<>();
+		final Recorder recorder = new Recorder();
+		Promise<Integer> p = pending(head, scheduler);
+		// the siblings hang below the depth limit, so they are queued
+		for (int i = 0; i < MAX_DEPTH + 8; i++) {
+			p = p.then(recorder.pass());
+		}
+		List<Promise<Integer>> siblings = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			siblings.add(p.then(recorder.step(i)));
+		}
+		settleOnLoop(head, scheduler);
+		for (Promise<Integer> s : siblings) {
+			s.await(1, TimeUnit.SECONDS);
+		}
+		check(recorder.inOrder(10), "queued siblings should run in registration order: " + recorder.order);
+	}
+
+	private static void errorPostsTheRest(PromiseScheduler scheduler) throws Exception {
+		UNCAUGHT.clear();
+		final AtomicReference<Locker<Integer>> head = new AtomicReference<>();
+		final Recorder recorder = new Recorder();
+		Promise<Integer> p = pending(head, scheduler);
+		for (int i = 0; i < MAX_DEPTH; i++) {
+			p = p.then(recorder.pass());
+		}
+		// queued at the depth limit: the first one throws, the rest are left in the trampoline
+		p.then(new SimpleResolver<Integer, Integer>() {
+			@Override
+			public Integer resolve(Integer newValue) {
+				throw new AssertionError("resolver");
+			}
+		});
+		List<Promise<Integer>> rest = new ArrayList<>();
+		for (int i = 0; i < 5; i++) {
+			rest.add(p.then(recorder.step(i)));
+		}
+		settleOnLoop(head, scheduler);
+		for (Promise<Integer> s : rest) {
+			s.await(1, TimeUnit.SECONDS);
+		}
+		check(recorder.inOrder(5), "the rest should be posted in order: " + recorder.order);
+		check(UNCAUGHT.size() == 1 && UNCAUGHT.get(0) instanceof AssertionError,
+				"the Error should reach the scheduler: " + UNCAUGHT);
+	}
+
+	/* records the order of steps and the stack depth they run at */
+	private static final class Recorder {
+		final List<Integer> order = new CopyOnWriteArrayList<>();
+		volatile int minStack = Integer.MAX_VALUE;
+		volatile int maxStack;
+
+		SimpleResolver<Integer, Integer> step(final int index) {
+			return new SimpleResolver<Integer, Integer>() {
+				@Override
+				public Integer resolve(Integer newValue) {
+					order.add(index);
+					if ((index & 1023) == 0) {
+						int depth = Thread.currentThread().getStackTrace().length;
+						minStack = Math.min(minStack, depth);
+						maxStack = Math.max(maxStack, depth);
+					}
+					return index + 1;
+				}
+			};
+		}
+
+		SimpleResolver<Integer, Integer> pass() {
+			return new SimpleResolver<Integer, Integer>() {
+				@Override
+				public Integer resolve(Integer newValue) {
+					return newValue;
+				}
+			};
+		}
+
+		boolean inOrder(int size) {
+			if (order.size() != size) {
+				return false;
+			}
+			for (int i = 0; i < size; i++) {
+				if (order.get(i) != i) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static Promise<Integer> pending(final AtomicReference<Locker<Integer>> head, PromiseScheduler scheduler) {
+		return Promise.make(new DirectFunction<Integer>() {
+			@Override
+			public void run(Locker<Integer> locker) {
+				head.set(locker);
+			}
+		}, scheduler);
+	}
+
+	/* settle the head from a plain task on the loop, so the continuations run inline from depth 0 */
+	private static void settleOnLoop(final AtomicReference<Locker<Integer>> head, PromiseScheduler scheduler)
+			throws InterruptedException {
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (head.get() == null) {
+			check(System.nanoTime() < deadline, "the head should start");
+			Thread.sleep(1);
+		}
+		scheduler.execute(new Runnable() {
+			@Override
+			public void run() {
+				head.get().resolve(0);
+			}
+		});
+	}
+}
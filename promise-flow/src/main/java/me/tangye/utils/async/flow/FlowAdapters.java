@@ -0,0 +1,81 @@
+package me.tangye.utils.async.flow;
+
+import java.util.concurrent.Flow;
+
+import me.tangye.utils.async.PromiseStream;
+
+/**
+ * PromiseStream与java.util.concurrent.Flow之间的转换<br>
+ * 需要java 9或者android API 30以上, 因此与promise-core分开, promise-core仍然保持java7字节码
+ * <pre>
+ *     Flow.Publisher&lt;Row&gt; publisher = FlowAdapters.toPublisher(stream);
+ * </pre>
+ *
+ * @author tangye
+ */
+public final class FlowAdapters {
+
+	private FlowAdapters() {
+	}
+
+	/**
+	 * 将流转换为Flow.Publisher, 每一次订阅都从头开始拉取元素<br>
+	 * request驱动流的拉取, 订阅者的所有回调都在流的调度器上执行
+	 *
+	 * @param stream 任意流
+	 * @return 对应的Publisher
+	 */
+	public static <T> Flow.Publisher<T> toPublisher(final PromiseStream<T> stream) {
+		if (stream == null) {
+			throw new IllegalArgumentException("stream should not be null");
+		}
+		return new Flow.Publisher<T>() {
+			@Override
+			public void subscribe(Flow.Subscriber<? super T> subscriber) {
+				if (subscriber == null) {
+					throw new NullPointerException("subscriber should not be null");
+				}
+				stream.subscribe(new SubscriberAdapter<>(subscriber));
+			}
+		};
+	}
+
+	/* forwards every signal, the subscription is wrapped once */
+	private static final class SubscriberAdapter<T> implements PromiseStream.Subscriber<T> {
+		final Flow.Subscriber<? super T> subscriber;
+
+		SubscriberAdapter(Flow.Subscriber<? super T> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void onSubscribe(final PromiseStream.Subscription subscription) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+					subscription.request(n);
+				}
+
+				@Override
+				public void cancel() {
+					subscription.cancel();
+				}
+			});
+		}
+
+		@Override
+		public void onNext(T item) {
+			subscriber.onNext(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			subscriber.onError(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			subscriber.onComplete();
+		}
+	}
+}
@@ -0,0 +1,170 @@
+package me.tangye.utils.async.interop;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.function.BiConsumer;
+
+import me.tangye.utils.async.ExecuteException;
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.resolver.DirectResolver;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Promise与CompletableFuture/CompletionStage之间的转换<br>
+ * 需要java 8或者android API 24以上, 因此与promise-core分开, promise-core仍然保持java7字节码
+ * <pre>
+ *     Promise&lt;User&gt; user = Futures.from(client.fetchUser(id), scheduler);
+ *     CompletableFuture&lt;User&gt; future = Futures.to(user);
+ * </pre>
+ *
+ * @author tangye
+ */
+public final class Futures {
+
+	private Futures() {
+	}
+
+	/**
+	 * 将一个CompletionStage转换为Promise, 在当前线程的调度器上运行
+	 *
+	 * @param stage 任意CompletionStage, 比如CompletableFuture
+	 * @return 对应的Promise
+	 * @throws IllegalStateException 当前线程没有调度器时抛出
+	 * @see #from(CompletionStage, PromiseScheduler)
+	 */
+	public static <D> Promise<D> from(CompletionStage<? extends D> stage) {
+		PromiseScheduler scheduler = PromiseScheduler.current();
+		if (scheduler == null) {
+			throw new IllegalStateException(
+					"No PromiseScheduler on current thread, please specify one");
+		}
+		return from(stage, scheduler);
+	}
+
+	/**
+	 * 将一个CompletionStage转换为Promise<br>
+	 * 在调度器线程上调用时立即注册, stage完成时直接在完成的线程上完成Promise, 不会额外post一次,
+	 * 之后的then仍然在调度器上执行<br>
+	 * CompletionException会被解包, 非Exception的Throwable包装为 {@link ExecuteException},
+	 * stage被取消时Promise也被取消, Promise被取消时也会取消stage
+	 *
+	 * @param stage 任意CompletionStage, 比如CompletableFuture
+	 * @param scheduler Promise执行所在调度器
+	 * @return 对应的Promise
+	 */
+	public static <D> Promise<D> from(final CompletionStage<? extends D> stage, PromiseScheduler scheduler) {
+		if (stage == null) {
+			throw new IllegalArgumentException("stage should not be null");
+		}
+		return Promise.make(new Promise.DirectFunction<D>() {
+			@Override
+			public void run(Promise.Locker<D> locker) {
+				stage.whenComplete(new StageListener<>(locker));
+				locker.onCancel(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							stage.toCompletableFuture().cancel(false);
+						} catch (UnsupportedOperationException ignored) {
+							// the stage can not be cancelled from outside
+						}
+					}
+				});
+			}
+		}, scheduler);
+	}
+
+	/**
+	 * 将Promise转换为一个CompletableFuture<br>
+	 * future作为Promise的一个消费者, 在完成Promise的线程上直接完成, 不会额外post一次,
+	 * 已经完成的Promise在调用时就完成future;
+	 * Promise失败时future以原始异常失败, 包装了非Exception的Throwable的 {@link ExecuteException} 被解包<br>
+	 * 取消future相当于取消一个消费者, Promise没有其他消费者时也会被取消
+	 *
+	 * @param promise 任意Promise
+	 * @return 对应的CompletableFuture
+	 * @see Promise#onSettled(DirectResolver)
+	 */
+	public static <D> CompletableFuture<D> to(Promise<D> promise) {
+		if (promise == null) {
+			throw new IllegalArgumentException("promise should not be null");
+		}
+		final PromiseFuture<D> future = new PromiseFuture<>();
+		future.attach(promise.onSettled(new DirectResolver<D, Void>() {
+			@Override
+			public Void resolve(D newValue) {
+				future.complete(newValue);
+				return null;
+			}
+
+			@Override
+			public Void reject(Exception exception) {
+				future.completeExceptionally(unwrap(exception));
+				return null;
+			}
+		}));
+		return future;
+	}
+
+	/* the reverse of StageListener, an Error wrapped by from() fails the future as itself */
+	private static Throwable unwrap(Exception exception) {
+		Throwable cause = exception.getCause();
+		if (exception instanceof ExecuteException && cause != null && !(cause instanceof Exception)) {
+			return cause;
+		}
+		return exception;
+	}
+
+	/* settles the locker on the thread completing the stage */
+	private static final class StageListener<D> implements BiConsumer<Object, Throwable> {
+		final Promise.Locker<D> locker;
+
+		StageListener(Promise.Locker<D> locker) {
+			this.locker = locker;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void accept(Object value, Throwable t) {
+			if (t == null) {
+				locker.resolve((D) value);
+				return;
+			}
+			while ((t instanceof CompletionException || t instanceof ExecutionException)
+					&& t.getCause() != null) {
+				t = t.getCause();
+			}
+			if (t instanceof Exception) {
+				// a CancellationException cancels the promise as well
+				locker.reject((Exception) t);
+			} else {
+				locker.reject(new ExecuteException(t));
+			}
+		}
+	}
+
+	/* cancelling the future cancels its then() child, which releases the promise as a consumer */
+	private static final class PromiseFuture<D> extends CompletableFuture<D> {
+		volatile Promise<Void> tail;
+
+		/* a cancel racing with to() finds no tail yet, so check again once it is set */
+		void attach(Promise<Void> tail) {
+			this.tail = tail;
+			if (isCancelled()) {
+				tail.cancel();
+			}
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			Promise<Void> t = tail;
+			if (cancelled && t != null) {
+				t.cancel();
+			}
+			return cancelled;
+		}
+	}
+}
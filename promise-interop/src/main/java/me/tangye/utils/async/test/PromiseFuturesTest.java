@@ -0,0 +1,163 @@
+package me.tangye.utils.async.test;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BiConsumer;
+import java.util.function.Supplier;
+
+import me.tangye.utils.async.ExecuteException;
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.Locker;
+import me.tangye.utils.async.interop.Futures;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Futures的测试: 值, 异常, Error以及取消在from与to两个方向上的转换
+ */
+public class PromiseFuturesTest extends Harness {
+
+	public static void main(String... args) throws Exception {
+		run("futures-test", new Body() {
+			@Override
+			public void run(EventLoopScheduler scheduler) throws Exception {
+				values(scheduler);
+				exceptions(scheduler);
+				errors(scheduler);
+				cancelStage(scheduler);
+				cancelPromise(scheduler);
+				cancelFuture(scheduler);
+				zeroHop(scheduler);
+				System.out.println("PromiseFuturesTest passed");
+			}
+		});
+	}
+
+	private static void values(PromiseScheduler scheduler) throws Exception {
+		CompletableFuture<String> stage = new CompletableFuture<>();
+		Promise<String> promise = Futures.from(stage, scheduler);
+		CompletableFuture<String> back = Futures.to(promise);
+		stage.complete("value");
+		check("value".equals(promise.await(1, TimeUnit.SECONDS)), "from should resolve with the value");
+		check("value".equals(back.get(1, TimeUnit.SECONDS)), "to should complete with the value");
+		check(Futures.to(Promise.resolve((String) null, scheduler)).get(1, TimeUnit.SECONDS) == null,
+				"a null value should round trip");
+	}
+
+	private static void exceptions(PromiseScheduler scheduler) throws Exception {
+		CompletableFuture<String> stage = new CompletableFuture<>();
+		CompletableFuture<String> back = Futures.to(Futures.from(stage, scheduler));
+		stage.completeExceptionally(new CompletionException(new IOException("io")));
+		check(causeOf(back) instanceof IOException, "the CompletionException should be unwrapped");
+
+		Promise<String> failed = Futures.from(CompletableFuture.supplyAsync(new Supplier<String>() {
+			@Override
+			public String get() {
+				throw new IllegalStateException("supplier");
+			}
+		}), scheduler);
+		try {
+			failed.await(1, TimeUnit.SECONDS);
+			check(false, "from should reject");
+		} catch (IllegalStateException expected) {
+			// the supplier's exception, not a CompletionException
+		}
+	}
+
+	private static void errors(PromiseScheduler scheduler) throws Exception {
+		CompletableFuture<String> stage = new CompletableFuture<>();
+		Promise<String> promise = Futures.from(stage, scheduler);
+		CompletableFuture<String> back = Futures.to(promise);
+		stage.completeExceptionally(new AssertionError("error"));
+		try {
+			promise.await(1, TimeUnit.SECONDS);
+			check(false, "from should reject");
+		} catch (ExecuteException expected) {
+			check(expected.getCause() instanceof AssertionError, "an Error should be wrapped in ExecuteException");
+		}
+		check(causeOf(back) instanceof AssertionError, "to should fail with the Error itself: " + causeOf(back));
+	}
+
+	private static void cancelStage(PromiseScheduler scheduler) throws Exception {
+		CompletableFuture<String> stage = new CompletableFuture<>();
+		Promise<String> promise = Futures.from(stage, scheduler);
+		CompletableFuture<String> back = Futures.to(promise);
+		stage.cancel(false);
+		try {
+			promise.await(1, TimeUnit.SECONDS);
+			check(false, "a cancelled stage should cancel the promise");
+		} catch (CancellationException expected) {
+			check(promise.isCancelled(), "the promise should be cancelled");
+		}
+		check(causeOf(back) instanceof CancellationException, "to should fail with the cancellation");
+	}
+
+	private static void cancelPromise(PromiseScheduler scheduler) throws Exception {
+		CompletableFuture<String> stage = new CompletableFuture<>();
+		Promise<String> promise = Futures.from(stage, scheduler);
+		// the function registers the cancel hook on the scheduler
+		Thread.sleep(20);
+		check(promise.cancel(), "the promise should be cancelled");
+		check(stage.isCancelled(), "cancelling the promise should cancel the stage");
+	}
+
+	private static void cancelFuture(PromiseScheduler scheduler) throws Exception {
+		final Locker<?>[] locker = new Locker<?>[1];
+		Promise<String> promise = Promise.make(new DirectFunction<String>() {
+			@Override
+			public void run(Locker<String> l) {
+				locker[0] = l;
+			}
+		}, scheduler);
+		CompletableFuture<String> future = Futures.to(promise);
+		Thread.sleep(20);
+		check(future.cancel(false), "the future should be cancelled");
+		check(promise.isCancelled(), "the only consumer is gone, the promise should be cancelled");
+		check(locker[0].isCancelled(), "the producer should see the cancel");
+	}
+
+	private static void zeroHop(PromiseScheduler scheduler) throws Exception {
+		check(Futures.to(Promise.resolve("settled", scheduler)).isDone(),
+				"a settled promise should complete the future before to() returns");
+		final AtomicReference<Locker<String>> locker = new AtomicReference<>();
+		Promise<String> promise = Promise.make(new DirectFunction<String>() {
+			@Override
+			public void run(Locker<String> l) {
+				locker.set(l);
+			}
+		}, scheduler);
+		final AtomicReference<Thread> completer = new AtomicReference<>();
+		CompletableFuture<String> future = Futures.to(promise);
+		future.whenComplete(new BiConsumer<String, Throwable>() {
+			@Override
+			public void accept(String value, Throwable t) {
+				completer.set(Thread.currentThread());
+			}
+		});
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+		while (locker.get() == null && System.nanoTime() < deadline) {
+			Thread.sleep(1);
+		}
+		locker.get().resolve("later");
+		check(future.isDone() && "later".equals(future.getNow(null)),
+				"the future should be completed by the thread settling the promise");
+		check(completer.get() == Thread.currentThread(), "no post to the scheduler: " + completer.get());
+	}
+
+	private static Throwable causeOf(CompletableFuture<?> future) throws Exception {
+		try {
+			future.get(1, TimeUnit.SECONDS);
+			throw new AssertionError("the future should fail");
+		} catch (ExecutionException e) {
+			return e.getCause();
+		} catch (CancellationException e) {
+			return e;
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package me.tangye.utils.async.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.PromiseChain;
+import me.tangye.utils.async.resolver.SimpleResolver;
+
+/**
+ * Promise.make 以及不同深度的then链
+ */
+@State(Scope.Thread)
+public class ChainBenchmark {
+
+	@Param({"0", "1", "5", "15"})
+	public int depth;
+
+	private static final SimpleResolver<Integer, Integer> INCREMENT = new SimpleResolver<Integer, Integer>() {
+		@Override
+		public Integer resolve(Integer newValue) {
+			return newValue + 1;
+		}
+	};
+
+	private static final Promise.DirectFunction<Integer> ZERO = new Promise.DirectFunction<Integer>() {
+		@Override
+		public void run(Promise.Locker<Integer> locker) {
+			locker.resolve(0);
+		}
+	};
+
+	@Benchmark
+	public Integer makeThen(SchedulerState state) throws Exception {
+		Promise<Integer> p = Promise.make(ZERO, state.scheduler);
+		for (int i = 0; i < depth; i++) {
+			p = p.then(INCREMENT);
+		}
+		return SchedulerState.await(p);
+	}
+
+	@Benchmark
+	public Integer fusedThen(SchedulerState state) throws Exception {
+		Promise<Integer> p = Promise.make(ZERO, state.scheduler);
+		if (depth > 0) {
+			PromiseChain<Integer> chain = p.fuse();
+			for (int i = 0; i < depth; i++) {
+				chain = chain.then(INCREMENT);
+			}
+			p = chain.promise();
+		}
+		return SchedulerState.await(p);
+	}
+}
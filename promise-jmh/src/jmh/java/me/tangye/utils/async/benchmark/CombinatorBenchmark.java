@@ -0,0 +1,66 @@
+package me.tangye.utils.async.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.Settlement;
+
+/**
+ * all/allOf/allSettled/race的扇入宽度, 以及series的长度
+ */
+@State(Scope.Thread)
+public class CombinatorBenchmark {
+
+	@Param({"1", "10", "100", "1000"})
+	public int width;
+
+	private static final Promise.DirectFunction<Integer> ONE = new Promise.DirectFunction<Integer>() {
+		@Override
+		public void run(Promise.Locker<Integer> locker) {
+			locker.resolve(1);
+		}
+	};
+
+	private List<Promise<Integer>> promises(SchedulerState state) {
+		List<Promise<Integer>> list = new ArrayList<>(width);
+		for (int i = 0; i < width; i++) {
+			list.add(Promise.make(ONE, state.scheduler));
+		}
+		return list;
+	}
+
+	@Benchmark
+	public Object[] all(SchedulerState state) throws Exception {
+		return SchedulerState.await(Promise.all(promises(state), state.scheduler));
+	}
+
+	@Benchmark
+	public List<Integer> allOf(SchedulerState state) throws Exception {
+		return SchedulerState.await(Promise.allOf(promises(state), state.scheduler));
+	}
+
+	@Benchmark
+	public List<Settlement<Integer>> allSettled(SchedulerState state) throws Exception {
+		return SchedulerState.await(Promise.allSettled(promises(state), state.scheduler));
+	}
+
+	@Benchmark
+	public Object race(SchedulerState state) throws Exception {
+		return SchedulerState.await(Promise.race(promises(state), state.scheduler));
+	}
+
+	@Benchmark
+	public Object[] series(SchedulerState state) throws Exception {
+		List<Promise.DirectFunction<?>> functions = new ArrayList<>(width);
+		for (int i = 0; i < width; i++) {
+			functions.add(ONE);
+		}
+		return SchedulerState.await(Promise.series(functions, state.scheduler));
+	}
+}
@@ -0,0 +1,20 @@
+package me.tangye.utils.async.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.resolver.PromiseDeferred;
+
+/**
+ * 在benchmark线程上resolve一个PromiseDeferred, 结果在事件循环线程上传递
+ */
+public class DeferredBenchmark {
+
+	@Benchmark
+	public Integer crossThreadResolve(SchedulerState state) throws Exception {
+		PromiseDeferred<Integer> deferred = PromiseDeferred.make(state.scheduler);
+		Promise<Integer> promise = deferred.promise();
+		deferred.resolve(1);
+		return SchedulerState.await(promise);
+	}
+}
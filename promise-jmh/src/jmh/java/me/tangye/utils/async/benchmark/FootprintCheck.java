@@ -0,0 +1,120 @@
+package me.tangye.utils.async.benchmark;
+
+import org.openjdk.jol.info.ClassLayout;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.resolver.PromiseDeferred;
+import me.tangye.utils.async.resolver.SimpleResolver;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * Promise内存占用的回归检查, 使用JOL测量, 超过预算时以非0退出<br>
+ * <ul>
+ *     <li>shallow: 一个Promise对象本身的大小</li>
+ *     <li>pending stage: 等待中的then链每增加一级所保留的内存, 包括Promise以及它的Completion</li>
+ *     <li>settled stage: 已经完成的then链每一级所保留的内存</li>
+ * </ul>
+ * 预算以引用的个数表示, 因此在开启或关闭压缩指针时都成立
+ * <pre>
+ *     ./gradlew :promise-jmh:footprint
+ * </pre>
+ */
+public class FootprintCheck {
+
+	/* state, upstream, site, scheduler and the consumers int */
+	private static final int SHALLOW_REFS = 5;
+
+	/* the completion of a pending stage: next, resolver, next promise and source */
+	private static final int COMPLETION_REFS = 4;
+
+	private static final int DEPTH = 1000;
+
+	/* returns the same value, so the values are not counted */
+	private static final SimpleResolver<Integer, Integer> IDENTITY = new SimpleResolver<Integer, Integer>() {
+		@Override
+		public Integer resolve(Integer newValue) {
+			return newValue;
+		}
+	};
+
+	/* runs everything inline on the trampoline, so the graph holds no queue or thread */
+	private static final PromiseScheduler INLINE = new PromiseScheduler() {
+		@Override
+		public boolean inEventLoop() {
+			return true;
+		}
+
+		@Override
+		public void execute(Runnable runnable) {
+			runnable.run();
+		}
+
+		@Override
+		public void schedule(Runnable runnable, long delay) {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void cancel(Runnable runnable) {
+		}
+	};
+
+	public static void main(String[] args) throws Exception {
+		INLINE.setInlineContinuations(true);
+		System.out.println(VM.current().details());
+		long ref = VM.current().sizeOfField("java.lang.Object");
+		long header = VM.current().objectHeaderSize();
+		boolean ok = true;
+
+		long shallow = ClassLayout.parseClass(Promise.class).instanceSize();
+		System.out.println(ClassLayout.parseClass(Promise.class).toPrintable());
+		long promise = align(header + SHALLOW_REFS * ref);
+		ok &= check("shallow", shallow, promise);
+
+		ok &= check("pending stage", perStage(false), promise + align(header + COMPLETION_REFS * ref));
+		// only the promise itself is left once settled
+		ok &= check("settled stage", perStage(true), promise);
+
+		if (!ok) {
+			System.exit(1);
+		}
+	}
+
+	/* difference of two fresh chains, everything shared by them cancels out */
+	private static long perStage(boolean settled) throws Exception {
+		return (retained(2 * DEPTH, settled) - retained(DEPTH, settled)) / DEPTH;
+	}
+
+	/* memory retained by every stage of a then chain, the stages are roots so the array is not counted */
+	private static long retained(int depth, boolean settled) throws Exception {
+		PromiseDeferred<Integer> deferred = PromiseDeferred.make(INLINE);
+		Object[] stages = new Object[depth + 1];
+		Promise<Integer> p = deferred.promise();
+		stages[0] = p;
+		for (int i = 1; i <= depth; i++) {
+			p = p.then(IDENTITY);
+			stages[i] = p;
+		}
+		if (settled) {
+			deferred.resolve(1);
+			// settled already, await returns at once
+			if (!Integer.valueOf(1).equals(p.await())) {
+				throw new AssertionError("chain did not settle");
+			}
+		}
+		return GraphLayout.parseInstance(stages).totalSize();
+	}
+
+	private static long align(long size) {
+		long a = VM.current().objectAlignment();
+		return (size + a - 1) / a * a;
+	}
+
+	private static boolean check(String name, long actual, long budget) {
+		boolean ok = actual <= budget;
+		System.out.println((ok ? "ok   " : "FAIL ") + name + ": " + actual + " bytes, budget " + budget);
+		return ok;
+	}
+}
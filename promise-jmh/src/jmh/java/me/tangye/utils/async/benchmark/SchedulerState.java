@@ -0,0 +1,39 @@
+package me.tangye.utils.async.benchmark;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+import me.tangye.utils.async.Promise;
+import me.tangye.utils.async.scheduler.EventLoopScheduler;
+
+/**
+ * 所有benchmark共用的事件循环, benchmark线程把任务提交到该循环上并等待结果
+ */
+@State(Scope.Benchmark)
+public class SchedulerState {
+
+	public EventLoopScheduler scheduler;
+
+	@Setup
+	public void setup() {
+		scheduler = new EventLoopScheduler("promise-jmh");
+	}
+
+	@TearDown
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	/**
+	 * 阻塞等待Promise的结果
+	 * @param promise 要等待的Promise
+	 * @return resolve的结果
+	 */
+	public static <T> T await(Promise<T> promise) throws Exception {
+		return promise.await(10, TimeUnit.SECONDS);
+	}
+}
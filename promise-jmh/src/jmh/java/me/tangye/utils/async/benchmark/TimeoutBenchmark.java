@@ -0,0 +1,20 @@
+package me.tangye.utils.async.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+
+import java.util.concurrent.TimeoutException;
+
+import me.tangye.utils.async.Promise;
+
+/**
+ * Promise.timeout的创建开销, 超时时间很短, 以免未触发的定时器在事件循环中堆积
+ */
+public class TimeoutBenchmark {
+
+	private static final TimeoutException TIMEOUT = new TimeoutException("benchmark");
+
+	@Benchmark
+	public Promise<Void> createTimeout(SchedulerState state) {
+		return Promise.timeout(1, TIMEOUT, state.scheduler);
+	}
+}
@@ -0,0 +1,132 @@
+package me.tangye.utils.async;
+
+import android.os.Looper;
+
+import me.tangye.utils.async.Promise.DirectFunction;
+import me.tangye.utils.async.Promise.PromiseFunction;
+import me.tangye.utils.async.resolver.PromiseDeferred;
+import me.tangye.utils.async.scheduler.LooperScheduler;
+import me.tangye.utils.async.scheduler.PromiseScheduler;
+
+/**
+ * 1.0版本中带Looper参数的方法<br>
+ * Promise, PromiseFactory以及PromiseDeferred已经移到不依赖android的promise-core中, 不能再带有Looper的重载,
+ * 这里保留原来的参数, 实例方法的对象作为第一个参数, 全部通过 {@link LooperScheduler#of(Looper)} 转发
+ * <pre>
+ *     Promise.resolve(value, looper)  =&gt;  LooperPromises.resolve(value, looper)
+ *     promise.clone(looper)           =&gt;  LooperPromises.clone(promise, looper)
+ * </pre>
+ *
+ * @deprecated 请使用带 {@link PromiseScheduler} 参数的方法, 传入 LooperScheduler.of(looper)
+ * @author tangye
+ */
+@Deprecated
+public final class LooperPromises {
+
+	private LooperPromises() {
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#make(DirectFunction, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<D> make(DirectFunction<D> function, Looper looper) {
+		return Promise.make(function, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#make(PromiseFunction, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<D> make(PromiseFunction<D> function, Looper looper) {
+		return Promise.make(function, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#clone(PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<D> clone(Promise<D> promise, Looper looper) {
+		return promise.clone(LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#resolve(Thenable, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<D> resolve(Thenable<D> thenable, Looper looper) {
+		return Promise.resolve(thenable, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#resolve(DirectFunction, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<D> resolve(DirectFunction<D> function, Looper looper) {
+		return Promise.resolve(function, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#resolve(Object, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<D> resolve(D value, Looper looper) {
+		return Promise.resolve(value, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#resolve(Object, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<?> resolveValue(D value, Looper looper) {
+		return Promise.resolveValue(value, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#resolve(Object, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<D> resolveNonPromiseValue(D value, Looper looper) {
+		return Promise.resolveNonPromiseValue(value, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#reject(Exception, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static Promise<Void> rejectException(Exception e, Looper looper) {
+		return Promise.rejectException(e, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#reject(Exception, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> Promise<D> reject(Exception e, Looper looper) {
+		return Promise.reject(e, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link Promise#timeout(long, Exception, PromiseScheduler)}
+	 */
+	@Deprecated
+	public static Promise<Void> timeout(long timeout, Exception exception, Looper looper) {
+		return Promise.timeout(timeout, exception, LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link PromiseFactory#make(PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <T> Promise<T> make(PromiseFactory<T> factory, Looper looper) {
+		return factory.make(LooperScheduler.of(looper));
+	}
+
+	/**
+	 * @deprecated 请使用 {@link PromiseDeferred#make(PromiseScheduler)}
+	 */
+	@Deprecated
+	public static <D> PromiseDeferred<D> deferred(Looper looper) {
+		return PromiseDeferred.make(LooperScheduler.of(looper));
+	}
+}
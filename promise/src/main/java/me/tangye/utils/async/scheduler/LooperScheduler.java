@@ -0,0 +1,94 @@
+package me.tangye.utils.async.scheduler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * 基于android Looper的调度器, 所有任务通过Handler提交到Looper线程<br>
+ * 每个Looper只有一个调度器, {@link #of(Looper)} 与Looper线程上默认的调度器是同一个对象,
+ * 因此在其上的设置对 Promise.make() 等默认调度器同样有效
+ *
+ * @author tangye
+ */
+public final class LooperScheduler extends PromiseScheduler {
+
+	/* one scheduler per looper, shared by of() and Provider, lives as long as the looper is used */
+	private static final ConcurrentMap<Looper, LooperScheduler> SCHEDULERS = new ConcurrentHashMap<>();
+
+	private final Handler handler;
+
+	/**
+	 * 获取一个Looper对应的调度器
+	 * @param looper 指定的looper, 不能为null
+	 * @return 该looper唯一的调度器
+	 */
+	public static LooperScheduler of(Looper looper) {
+		if (looper == null) {
+			throw new IllegalArgumentException("looper should not be null");
+		}
+		LooperScheduler scheduler = SCHEDULERS.get(looper);
+		if (scheduler == null) {
+			scheduler = new LooperScheduler(looper);
+			LooperScheduler existing = SCHEDULERS.putIfAbsent(looper, scheduler);
+			if (existing != null) {
+				scheduler = existing;
+			}
+		}
+		return scheduler;
+	}
+
+	/**
+	 * 主线程调度器
+	 * @return 主线程Looper对应的调度器
+	 */
+	public static LooperScheduler main() {
+		return of(Looper.getMainLooper());
+	}
+
+	private LooperScheduler(Looper looper) {
+		handler = new Handler(looper);
+	}
+
+	/**
+	 * 获取调度器对应的Looper
+	 * @return looper
+	 */
+	public Looper getLooper() {
+		return handler.getLooper();
+	}
+
+	@Override
+	public boolean inEventLoop() {
+		return handler.getLooper() == Looper.myLooper();
+	}
+
+	@Override
+	public void execute(Runnable runnable) {
+		handler.post(runnable);
+	}
+
+	@Override
+	public void schedule(Runnable runnable, long delay) {
+		handler.postDelayed(runnable, delay);
+	}
+
+	@Override
+	public void cancel(Runnable runnable) {
+		handler.removeCallbacks(runnable);
+	}
+
+	/**
+	 * 为含有Looper的线程提供默认调度器, 通过 META-INF/services 注册
+	 */
+	public static final class Provider implements SchedulerProvider {
+
+		@Override
+		public PromiseScheduler current() {
+			Looper looper = Looper.myLooper();
+			return looper == null ? null : of(looper);
+		}
+	}
+}